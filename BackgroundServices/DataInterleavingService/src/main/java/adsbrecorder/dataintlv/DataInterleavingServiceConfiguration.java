@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -16,6 +17,8 @@ import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 
 import com.mongodb.MongoClient;
 
+import adsbrecorder.common.utils.StripedExecutor;
+import adsbrecorder.dataintlv.task.StreamingInterleavingTask;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.kafka.TrackingRecordDeserializer;
 
@@ -26,6 +29,24 @@ public class DataInterleavingServiceConfiguration {
     @Value(value = "${kafka.bootstrapAddress}")
     private String bootstrapAddress;
 
+    @Value(value = "${kafka.partitions:1}")
+    private int partitions;
+
+    @Value(value = "${kafka.batch.max_records:500}")
+    private int batchMaxRecords;
+
+    @Value(value = "${kafka.batch.min_bytes:65536}")
+    private int batchMinBytes;
+
+    @Value(value = "${kafka.batch.max_wait:1000}")
+    private int batchMaxWait;
+
+    @Value(value = "${adsbrecorder.interleaving.stream.max_wait:100}")
+    private int streamMaxWait;
+
+    @Value(value = "${adsbrecorder.interleaving.workers:4}")
+    private int interleavingWorkers;
+
     @Value(value = "${mongodb.address}")
     private String mongodbAddress;
 
@@ -45,6 +66,11 @@ public class DataInterleavingServiceConfiguration {
         return new MongoTemplate(mongo(), mongodbCollectionName);
     }
 
+    @Bean(destroyMethod = "close")
+    public StripedExecutor interleavingWorkers() {
+        return new StripedExecutor("interleaving", interleavingWorkers);
+    }
+
     @Bean
     public ConsumerFactory<String, TrackingRecord> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
@@ -52,6 +78,9 @@ public class DataInterleavingServiceConfiguration {
         props.put(ConsumerConfig.GROUP_ID_CONFIG, 1);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, TrackingRecordDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchMaxWait);
         return new DefaultKafkaConsumerFactory<>(props);
     }
  
@@ -59,6 +88,33 @@ public class DataInterleavingServiceConfiguration {
     public ConcurrentKafkaListenerContainerFactory<String, TrackingRecord> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, TrackingRecord> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(partitions);
+        factory.setBatchListener(true);
+        return factory;
+    }
+
+    @Bean
+    public ConsumerFactory<String, Object> streamConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, InterleavingStreamDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, streamMaxWait);
+        // the range assignor gives a consumer the same partition numbers of both topics,
+        // so records and velocity updates of an aircraft meet in one consumer
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> streamListenerContainerFactory(
+            StreamingInterleavingTask streamingInterleavingTask) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(streamConsumerFactory());
+        factory.setConcurrency(partitions);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(streamingInterleavingTask);
         return factory;
     }
 }
@@ -0,0 +1,43 @@
+package adsbrecorder.dataintlv;
+
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.TrackingRecordDeserializer;
+import adsbrecorder.receiver.kafka.VelocityUpdateDeserializer;
+
+/**
+ * Values of the streaming interleaving consumer, velocity updates from the velocity topic and tracking records
+ * from everything else
+ */
+public class InterleavingStreamDeserializer implements Deserializer<Object>, ListOfTopics {
+
+    private final TrackingRecordDeserializer trackingRecordDeserializer;
+    private final VelocityUpdateDeserializer velocityUpdateDeserializer;
+
+    public InterleavingStreamDeserializer() {
+        this.trackingRecordDeserializer = new TrackingRecordDeserializer();
+        this.velocityUpdateDeserializer = new VelocityUpdateDeserializer();
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        trackingRecordDeserializer.configure(configs, isKey);
+        velocityUpdateDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (VELOCITY_DATA.equals(topic))
+            return velocityUpdateDeserializer.deserialize(topic, data);
+        return trackingRecordDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        trackingRecordDeserializer.close();
+        velocityUpdateDeserializer.close();
+    }
+}
@@ -0,0 +1,58 @@
+package adsbrecorder.dataintlv.entity;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Records up to and including lastRecordId have their callsign resolved or marked as unresolvable
+ */
+@Document
+public class CallsignWatermark {
+
+    @Id
+    private String id;
+
+    private ObjectId lastRecordId;
+
+    private Date updated;
+
+    public CallsignWatermark() {
+    }
+
+    public CallsignWatermark(String id, ObjectId lastRecordId) {
+        this.id = id;
+        this.lastRecordId = lastRecordId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public ObjectId getLastRecordId() {
+        return lastRecordId;
+    }
+
+    public void setLastRecordId(ObjectId lastRecordId) {
+        this.lastRecordId = lastRecordId;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Date updated) {
+        this.updated = updated;
+    }
+
+    @Override
+    public String toString() {
+        return "CallsignWatermark [id=" + id + ", lastRecordId=" + lastRecordId + ", updated=" + updated + "]";
+    }
+}
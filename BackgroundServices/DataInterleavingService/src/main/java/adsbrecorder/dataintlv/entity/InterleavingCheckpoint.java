@@ -0,0 +1,80 @@
+package adsbrecorder.dataintlv.entity;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Progress of one historical re-interleaving run, aircraft are done in ICAO order
+ */
+@Document
+public class InterleavingCheckpoint {
+
+    // the date range of the run
+    @Id
+    private String id;
+
+    // every aircraft up to this one is written, -1 before the first
+    private int lastAddressICAO;
+
+    private long recordsFilled;
+
+    private boolean completed;
+
+    private Date updated;
+
+    public InterleavingCheckpoint() {
+    }
+
+    public InterleavingCheckpoint(String id) {
+        this.id = id;
+        this.lastAddressICAO = -1;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getLastAddressICAO() {
+        return lastAddressICAO;
+    }
+
+    public void setLastAddressICAO(int lastAddressICAO) {
+        this.lastAddressICAO = lastAddressICAO;
+    }
+
+    public long getRecordsFilled() {
+        return recordsFilled;
+    }
+
+    public void setRecordsFilled(long recordsFilled) {
+        this.recordsFilled = recordsFilled;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Date updated) {
+        this.updated = updated;
+    }
+
+    @Override
+    public String toString() {
+        return "InterleavingCheckpoint [id=" + id + ", lastAddressICAO=" + lastAddressICAO + ", recordsFilled="
+                + recordsFilled + ", completed=" + completed + ", updated=" + updated + "]";
+    }
+}
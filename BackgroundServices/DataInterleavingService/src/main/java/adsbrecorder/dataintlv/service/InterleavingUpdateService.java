@@ -0,0 +1,16 @@
+package adsbrecorder.dataintlv.service;
+
+import java.util.Collection;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public interface InterleavingUpdateService {
+
+    /**
+     * Write back the outcome of interleaving field by field, the rest of the documents is left untouched
+     * @param filled records whose velocity, heading and vertical rate are set
+     * @param applied velocity updates to flag as applied
+     */
+    void update(Collection<TrackingRecord> filled, Collection<VelocityUpdate> applied);
+}
@@ -0,0 +1,83 @@
+package adsbrecorder.dataintlv.service.impl;
+
+import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import adsbrecorder.dataintlv.service.InterleavingUpdateService;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Service
+public class InterleavingUpdateServiceImpl implements InterleavingUpdateService {
+
+    private MongoTemplate mongoTemplate;
+    private Counter recordsWrittenCounter;
+    private Counter velocityUpdatesWrittenCounter;
+    private Counter modifiedCounter;
+    private Counter requestsCounter;
+
+    @Autowired
+    public InterleavingUpdateServiceImpl(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.recordsWrittenCounter = Counter.builder("adsbrecorder.interleaving.records.written")
+            .description("Tracking records whose velocity, heading and vertical rate were set")
+            .register(requireNonNull(meterRegistry));
+        this.velocityUpdatesWrittenCounter = Counter.builder("adsbrecorder.interleaving.velocity_updates.written")
+            .description("Velocity updates flagged as applied")
+            .register(meterRegistry);
+        this.modifiedCounter = Counter.builder("adsbrecorder.interleaving.modified")
+            .description("Documents reported modified by the database")
+            .register(meterRegistry);
+        this.requestsCounter = Counter.builder("adsbrecorder.interleaving.write_requests")
+            .description("Write requests sent to the database")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void update(Collection<TrackingRecord> filled, Collection<VelocityUpdate> applied) {
+        List<TrackingRecord> records = filled.stream()
+                .filter(record -> record.getId() != null)
+                .collect(Collectors.toList());
+        if (!records.isEmpty()) {
+            // each record has its own values, the order of the writes does not matter
+            BulkOperations ops = mongoTemplate.bulkOps(BulkMode.UNORDERED, TrackingRecord.class);
+            records.forEach(record -> ops.updateOne(Query.query(where("_id").is(record.getId())),
+                    new Update().set("velocity", record.getVelocity())
+                        .set("heading", record.getHeading())
+                        .set("verticalRate", record.getVerticalRate())));
+            BulkWriteResult result = ops.execute();
+            recordsWrittenCounter.increment(records.size());
+            modifiedCounter.increment(result.getModifiedCount());
+            requestsCounter.increment();
+        }
+        List<BigInteger> ids = applied.stream()
+                .map(VelocityUpdate::getId)
+                .filter(id -> id != null)
+                .collect(Collectors.toList());
+        if (!ids.isEmpty()) {
+            UpdateResult result = mongoTemplate.updateMulti(Query.query(where("_id").in(ids)),
+                    Update.update("applied", true), VelocityUpdate.class);
+            velocityUpdatesWrittenCounter.increment(ids.size());
+            modifiedCounter.increment(result.getModifiedCount());
+            requestsCounter.increment();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package adsbrecorder.dataintlv.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+
+/**
+ * Callsigns seen per aircraft in time order. Consecutive records with the same callsign form one segment,
+ * a record without callsign takes the callsign of the latest segment starting before it, or at the start
+ * of a flight, of the first segment starting no more than maxGap after it.
+ */
+public class CallsignIndex {
+
+    public static class Segment {
+        private final String callsign;
+        private long firstTime;
+        private long lastTime;
+
+        Segment(String callsign, long time) {
+            this.callsign = callsign;
+            this.firstTime = time;
+            this.lastTime = time;
+        }
+
+        public String getCallsign() {
+            return callsign;
+        }
+
+        public long getFirstTime() {
+            return firstTime;
+        }
+
+        public long getLastTime() {
+            return lastTime;
+        }
+    }
+
+    private static class History {
+        final List<Segment> segments = new ArrayList<Segment>(4);
+        // the database was asked for the callsign before the first segment
+        boolean seeded;
+        // latest record time of the aircraft
+        long lastTime;
+    }
+
+    private final int maxSegments;
+    private final long maxGap;
+    private final ConcurrentIntObjectMap<History> histories;
+
+    public CallsignIndex(int maxSegments, long maxGap) {
+        this.maxSegments = Math.max(1, maxSegments);
+        this.maxGap = maxGap;
+        this.histories = new ConcurrentIntObjectMap<History>(4096);
+    }
+
+    public void add(int icao, long time, String callsign) {
+        History history = histories.computeIfAbsent(icao, key -> new History());
+        synchronized (history) {
+            history.lastTime = Math.max(history.lastTime, time);
+            List<Segment> segments = history.segments;
+            int i = segments.size();
+            while (i > 0 && segments.get(i - 1).firstTime > time)
+                i--;
+            if (i > 0 && segments.get(i - 1).callsign.equals(callsign)) {
+                Segment segment = segments.get(i - 1);
+                segment.lastTime = Math.max(segment.lastTime, time);
+            } else if (i < segments.size() && segments.get(i).callsign.equals(callsign)) {
+                segments.get(i).firstTime = time;
+            } else {
+                segments.add(i, new Segment(callsign, time));
+                if (segments.size() > maxSegments)
+                    segments.remove(0);
+            }
+        }
+    }
+
+    /**
+     * @return the segment whose callsign the record takes, or null
+     */
+    public Segment find(int icao, long time) {
+        History history = histories.get(icao);
+        if (history == null)
+            return null;
+        synchronized (history) {
+            List<Segment> segments = history.segments;
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                if (segments.get(i).firstTime < time)
+                    return segments.get(i);
+            }
+            if (!segments.isEmpty() && segments.get(0).firstTime - time <= maxGap)
+                return segments.get(0);
+            return null;
+        }
+    }
+
+    public boolean isSeeded(int icao) {
+        History history = histories.get(icao);
+        return history != null && history.seeded;
+    }
+
+    public void setSeeded(int icao, long time) {
+        History history = histories.computeIfAbsent(icao, key -> new History());
+        synchronized (history) {
+            history.seeded = true;
+            history.lastTime = Math.max(history.lastTime, time);
+        }
+    }
+
+    /**
+     * Forget aircraft not seen since the given time
+     */
+    public void expire(long before) {
+        histories.removeIf(history -> {
+            synchronized (history) {
+                return history.lastTime < before;
+            }
+        });
+    }
+
+    public int size() {
+        return histories.size();
+    }
+}
@@ -1,31 +1,193 @@
 package adsbrecorder.dataintlv.task;
 
 import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import adsbrecorder.dataintlv.entity.CallsignWatermark;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.repo.TrackingRecordRepository;
 
+/**
+ * Fills in the flight of records written without one. New records are read once, in _id order past a watermark:
+ * records with a callsign feed a {@link CallsignIndex}, records without wait until the index resolves them.
+ * Resolved records are written with one update per aircraft and callsign over the time range they cover,
+ * records still unresolved after the grace period are marked with {@link TrackingRecordRepository#NO_CALLSIGN}.
+ * The watermark is saved behind the oldest waiting record, so a restart reads them again.
+ * The very first run starts behind the oldest record without a flight, a run reads at most until
+ * max_pending records wait, so a long backlog is worked off over several runs.
+ */
 @Component
 public class CallsignUpdateTask {
 
+    private final static String WATERMARK_ID = "callsign";
+
     private TrackingRecordRepository trackingRecordRepository;
+    private MongoTemplate mongoTemplate;
+    private CallsignIndex callsignIndex;
+    // records without a flight in _id order
+    private List<TrackingRecord> pending;
+    private ObjectId lastScannedId;
+    private ObjectId savedWatermark;
+
+    @Value("${adsbrecorder.callsign.batch_size:10000}")
+    private int batchSize;
+
+    // records younger than this may still be inserted out of _id order
+    @Value("${adsbrecorder.callsign.settle_time:5000}")
+    private long settleTime;
+
+    @Value("${adsbrecorder.callsign.grace_period:600000}")
+    private long gracePeriod;
+
+    @Value("${adsbrecorder.callsign.max_pending:100000}")
+    private int maxPending;
+
+    @Value("${adsbrecorder.callsign.retention:3600000}")
+    private long retention;
+
+    // where the very first run starts when no record is without a flight
+    @Value("${adsbrecorder.callsign.initial_lookback:3600000}")
+    private long initialLookback;
 
     @Autowired
-    public CallsignUpdateTask(TrackingRecordRepository trackingRecordRepository) {
+    public CallsignUpdateTask(TrackingRecordRepository trackingRecordRepository,
+            MongoTemplate mongoTemplate,
+            @Value("${adsbrecorder.callsign.max_segments:8}") int maxSegments,
+            @Value("${adsbrecorder.callsign.max_gap:60000}") long maxGap) {
         this.trackingRecordRepository = requireNonNull(trackingRecordRepository);
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.callsignIndex = new CallsignIndex(maxSegments, maxGap);
+        this.pending = new ArrayList<TrackingRecord>();
     }
 
-    @Scheduled(fixedDelay = 10000)
+    @Scheduled(fixedDelayString = "${adsbrecorder.callsign.interval:10000}")
     public void updateNullCallsigns() {
-        List<TrackingRecord> nullCallsigns = trackingRecordRepository.findAllNullCallsign();
-        nullCallsigns.forEach(tr -> tr.setFlight(
-                trackingRecordRepository.findCallsign(tr.getAddressICAO(), tr.getLastTimeSeen())));
-        trackingRecordRepository.saveAll(nullCallsigns);
+        final long now = System.currentTimeMillis();
+        if (lastScannedId == null)
+            lastScannedId = savedWatermark = loadWatermark(now);
+        scan(smallestId(now - settleTime));
+        resolve(now);
+        callsignIndex.expire(now - retention);
+    }
+
+    private ObjectId loadWatermark(long now) {
+        CallsignWatermark watermark = mongoTemplate.findById(WATERMARK_ID, CallsignWatermark.class);
+        if (watermark != null && watermark.getLastRecordId() != null)
+            return watermark.getLastRecordId();
+        Query oldest = Query.query(where("flight").is(null)).with(Sort.by("_id"));
+        oldest.fields().include("_id");
+        TrackingRecord first = mongoTemplate.findOne(oldest, TrackingRecord.class);
+        if (first != null)
+            return toObjectId(first.getId().subtract(BigInteger.ONE));
+        return smallestId(now - initialLookback);
+    }
+
+    private void scan(ObjectId settled) {
+        while (true) {
+            Query query = Query.query(where("_id").gt(lastScannedId).lt(settled))
+                    .with(Sort.by("_id"))
+                    .limit(batchSize);
+            query.fields().include("addressICAO").include("lastTimeSeen").include("flight");
+            List<TrackingRecord> batch = mongoTemplate.find(query, TrackingRecord.class);
+            for (TrackingRecord tr : batch) {
+                if (tr.getFlight() == null) {
+                    pending.add(tr);
+                } else if (!TrackingRecordRepository.NO_CALLSIGN.equals(tr.getFlight())) {
+                    callsignIndex.add(tr.getAddressICAO(), tr.getLastTimeSeen(), tr.getFlight());
+                }
+            }
+            if (!batch.isEmpty())
+                lastScannedId = toObjectId(batch.get(batch.size() - 1).getId());
+            if (batch.size() < batchSize || pending.size() >= maxPending)
+                return;
+        }
+    }
+
+    private void resolve(long now) {
+        Map<CallsignIndex.Segment, List<TrackingRecord>> resolved = new IdentityHashMap<CallsignIndex.Segment, List<TrackingRecord>>();
+        List<BigInteger> unresolved = new ArrayList<BigInteger>();
+        List<TrackingRecord> stillPending = new ArrayList<TrackingRecord>();
+        final int overflow = pending.size() - maxPending;
+        for (int i = 0; i < pending.size(); i++) {
+            TrackingRecord tr = pending.get(i);
+            CallsignIndex.Segment segment = callsignIndex.find(tr.getAddressICAO(), tr.getLastTimeSeen());
+            if (segment == null && !callsignIndex.isSeeded(tr.getAddressICAO())) {
+                seed(tr.getAddressICAO(), tr.getLastTimeSeen());
+                segment = callsignIndex.find(tr.getAddressICAO(), tr.getLastTimeSeen());
+            }
+            if (segment != null) {
+                resolved.computeIfAbsent(segment, key -> new ArrayList<TrackingRecord>()).add(tr);
+            } else if (i < overflow || now - tr.getLastTimeSeen() > gracePeriod) {
+                unresolved.add(tr.getId());
+            } else {
+                stillPending.add(tr);
+            }
+        }
+        pending = stillPending;
+        if (!resolved.isEmpty() || !unresolved.isEmpty()) {
+            // flight: null in every filter, a record resolved in between is never overwritten
+            BulkOperations ops = mongoTemplate.bulkOps(BulkMode.UNORDERED, TrackingRecord.class);
+            resolved.forEach((segment, trs) -> {
+                long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+                for (TrackingRecord tr : trs) {
+                    first = Math.min(first, tr.getLastTimeSeen());
+                    last = Math.max(last, tr.getLastTimeSeen());
+                }
+                ops.updateMulti(Query.query(where("addressICAO").is(trs.get(0).getAddressICAO())
+                        .and("lastTimeSeen").gte(first).lte(last)
+                        .and("flight").is(null)),
+                    Update.update("flight", segment.getCallsign()));
+            });
+            if (!unresolved.isEmpty())
+                ops.updateMulti(Query.query(where("_id").in(unresolved).and("flight").is(null)),
+                        Update.update("flight", TrackingRecordRepository.NO_CALLSIGN));
+            ops.execute();
+        }
+        ObjectId watermark = pending.isEmpty()
+                ? lastScannedId
+                : toObjectId(pending.get(0).getId().subtract(BigInteger.ONE));
+        if (!watermark.equals(savedWatermark)) {
+            CallsignWatermark saved = new CallsignWatermark(WATERMARK_ID, watermark);
+            saved.setUpdated(new Date(now));
+            mongoTemplate.save(saved);
+            savedWatermark = watermark;
+        }
+    }
+
+    // the latest callsign before the first record the index knows nothing about
+    private void seed(int icao, long time) {
+        trackingRecordRepository.findLatestTrackingRecords(icao, time,
+                PageRequest.of(0, 1, new Sort(Sort.Direction.DESC, "lastTimeSeen")))
+            .forEach(tr -> callsignIndex.add(icao, tr.getLastTimeSeen(), tr.getFlight()));
+        callsignIndex.setSeeded(icao, time);
+    }
+
+    // the first id created in the second of the given time
+    private static ObjectId smallestId(long time) {
+        return new ObjectId(String.format("%08x%016x", time / 1000L, 0L));
+    }
+
+    private static ObjectId toObjectId(BigInteger id) {
+        return new ObjectId(String.format("%024x", id));
     }
 }
@@ -0,0 +1,141 @@
+package adsbrecorder.dataintlv.task;
+
+import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.dataintlv.entity.InterleavingCheckpoint;
+import adsbrecorder.dataintlv.service.InterleavingUpdateService;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Re-interleaves the records of a date range in one pass, for data the realtime expiry never saw.
+ * Records without a velocity and the velocity updates are read through two cursors sorted by aircraft and time
+ * and merge-joined, the filled fields are written in bulk. After each bulk write the last finished aircraft
+ * is checkpointed, a restarted run with the same range carries on from there.
+ * Runs at startup when adsbrecorder.interleaving.history.from is set.
+ */
+@Component
+public class HistoricalInterleavingJob implements CommandLineRunner {
+
+    private MongoTemplate mongoTemplate;
+    private InterleavingUpdateService interleavingUpdateService;
+
+    @Value("${adsbrecorder.data.date_range_expn:600000}")
+    private long dateRangeExpansion;
+
+    // first day, yyyy-MM-dd in UTC
+    @Value("${adsbrecorder.interleaving.history.from:}")
+    private String from;
+
+    // last day, inclusive, the first day when empty
+    @Value("${adsbrecorder.interleaving.history.to:}")
+    private String to;
+
+    @Value("${adsbrecorder.interleaving.history.batch_size:2000}")
+    private int batchSize;
+
+    @Value("${adsbrecorder.interleaving.stream.max_velocity_updates:16}")
+    private int maxVelocityUpdates;
+
+    @Value("${adsbrecorder.interleaving.stream.max_pending:256}")
+    private int maxPending;
+
+    @Autowired
+    public HistoricalInterleavingJob(MongoTemplate mongoTemplate, InterleavingUpdateService interleavingUpdateService) {
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.interleavingUpdateService = requireNonNull(interleavingUpdateService);
+    }
+
+    @Override
+    public void run(String... args) {
+        if (from == null || from.isBlank())
+            return;
+        LocalDate firstDay = LocalDate.parse(from.trim());
+        LocalDate lastDay = to == null || to.isBlank() ? firstDay : LocalDate.parse(to.trim());
+        reinterleave(firstDay.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(),
+                lastDay.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
+    }
+
+    /**
+     * @param startTime first lastTimeSeen of the records, inclusive
+     * @param endTime last lastTimeSeen of the records, exclusive
+     */
+    public void reinterleave(long startTime, long endTime) {
+        final String runId = startTime + "-" + endTime;
+        InterleavingCheckpoint checkpoint = mongoTemplate.findById(runId, InterleavingCheckpoint.class);
+        if (checkpoint == null)
+            checkpoint = new InterleavingCheckpoint(runId);
+        if (checkpoint.isCompleted()) {
+            System.err.println("Re-interleaving " + runId + " already completed: " + checkpoint);
+            return;
+        }
+        System.err.println("Re-interleaving " + runId + " from ICAO " + checkpoint.getLastAddressICAO());
+        // both cursors walk this index instead of sorting in memory
+        Index byAircraft = new Index().on("addressICAO", Sort.Direction.ASC).on("lastTimeSeen", Sort.Direction.ASC);
+        mongoTemplate.indexOps(TrackingRecord.class).ensureIndex(byAircraft);
+        mongoTemplate.indexOps(VelocityUpdate.class).ensureIndex(byAircraft);
+
+        Query records = Query.query(where("addressICAO").gt(checkpoint.getLastAddressICAO())
+                .and("lastTimeSeen").gte(startTime).lt(endTime)
+                .and("velocity").is(0));
+        Query updates = Query.query(where("addressICAO").gt(checkpoint.getLastAddressICAO())
+                .and("lastTimeSeen").gte(startTime - dateRangeExpansion).lt(endTime + dateRangeExpansion));
+        for (Query query : List.of(records, updates)) {
+            query.with(Sort.by("addressICAO", "lastTimeSeen"));
+            query.fields().include("addressICAO").include("lastTimeSeen")
+                .include("velocity").include("heading").include("verticalRate");
+        }
+        updates.fields().include("applied");
+
+        final InterleavingCheckpoint progress = checkpoint;
+        final int[] lastICAO = {checkpoint.getLastAddressICAO()};
+        final List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        final List<VelocityUpdate> applied = new ArrayList<VelocityUpdate>();
+        MergeJoinInterleaving interleaving = new MergeJoinInterleaving(maxVelocityUpdates, maxPending, dateRangeExpansion);
+        try (CloseableIterator<TrackingRecord> recordCursor = mongoTemplate.stream(records, TrackingRecord.class);
+                CloseableIterator<VelocityUpdate> updateCursor = mongoTemplate.stream(updates, VelocityUpdate.class)) {
+            interleaving.run(recordCursor, updateCursor, (icao, aircraftFilled, aircraftApplied) -> {
+                lastICAO[0] = icao;
+                filled.addAll(aircraftFilled);
+                applied.addAll(aircraftApplied);
+                // an aircraft is never split over two writes, so the checkpoint is always a finished one
+                if (filled.size() + applied.size() >= batchSize)
+                    write(progress, icao, filled, applied);
+            });
+        }
+        if (!filled.isEmpty() || !applied.isEmpty())
+            write(progress, lastICAO[0], filled, applied);
+        progress.setCompleted(true);
+        progress.setUpdated(new Date());
+        mongoTemplate.save(progress);
+        System.err.println("Re-interleaving " + runId + " completed: " + progress.getRecordsFilled() + " records filled, "
+                + interleaving.getDropped() + " without velocity data");
+    }
+
+    private void write(InterleavingCheckpoint checkpoint, int icao, List<TrackingRecord> filled, List<VelocityUpdate> applied) {
+        interleavingUpdateService.update(filled, applied);
+        checkpoint.setLastAddressICAO(Math.max(checkpoint.getLastAddressICAO(), icao));
+        checkpoint.setRecordsFilled(checkpoint.getRecordsFilled() + filled.size());
+        checkpoint.setUpdated(new Date());
+        mongoTemplate.save(checkpoint);
+        filled.clear();
+        applied.clear();
+    }
+}
@@ -0,0 +1,165 @@
+package adsbrecorder.dataintlv.task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Interleaving state of one aircraft in the streaming mode: the latest velocity updates in time order and
+ * the records without a velocity that wait for the next velocity update to close their bracket.
+ * Records inside a bracket get velocity, heading and vertical rate interpolated in time between the two
+ * velocity updates, records before the first or after the last velocity update get the nearest one
+ * if it is no further than maxGap away. A velocity update is done once a later one closes the bracket it opens,
+ * only the latest stays open until the window is flushed. Not thread safe.
+ */
+public class InterleavingWindow {
+
+    private final int maxVelocityUpdates;
+    private final int maxPending;
+    private final long maxGap;
+
+    private final List<VelocityUpdate> velocityUpdates;
+    private final List<TrackingRecord> pending;
+    private long lastActive;
+    private boolean closed;
+
+    public InterleavingWindow(int maxVelocityUpdates, int maxPending, long maxGap) {
+        this.maxVelocityUpdates = Math.max(2, maxVelocityUpdates);
+        this.maxPending = Math.max(1, maxPending);
+        this.maxGap = maxGap;
+        this.velocityUpdates = new ArrayList<VelocityUpdate>(this.maxVelocityUpdates + 1);
+        this.pending = new ArrayList<TrackingRecord>();
+    }
+
+    /**
+     * Close the bracket of the pending records that are not after the update. An update older than the latest
+     * only brackets records that arrive after it.
+     * @param filled receives the records whose velocity was set
+     * @param done receives the velocity updates whose bracket is closed, evicted ones have always been
+     * @return number of records given up on
+     */
+    public int addVelocityUpdate(VelocityUpdate update, List<TrackingRecord> filled, List<VelocityUpdate> done) {
+        final long time = update.getLastTimeSeen();
+        int i = velocityUpdates.size();
+        while (i > 0 && velocityUpdates.get(i - 1).getLastTimeSeen() > time)
+            i--;
+        velocityUpdates.add(i, update);
+        if (i < velocityUpdates.size() - 1)
+            done.add(update);
+        else if (i > 0)
+            done.add(velocityUpdates.get(i - 1));
+        if (velocityUpdates.size() > maxVelocityUpdates)
+            velocityUpdates.remove(0);
+        int dropped = 0;
+        Iterator<TrackingRecord> iter = pending.iterator();
+        while (iter.hasNext()) {
+            TrackingRecord record = iter.next();
+            if (record.getLastTimeSeen() <= time) {
+                iter.remove();
+                if (!fill(record, filled))
+                    dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Records that already carry a velocity need nothing and are not kept
+     * @param filled receives the record if its velocity was set right away
+     * @return number of records given up on
+     */
+    public int addTrackingRecord(TrackingRecord record, List<TrackingRecord> filled) {
+        if (record.getVelocity() != 0)
+            return 0;
+        if (!velocityUpdates.isEmpty() && record.getLastTimeSeen() <= latest().getLastTimeSeen())
+            return fill(record, filled) ? 0 : 1;
+        pending.add(record);
+        if (pending.size() > maxPending)
+            return fill(pending.remove(0), filled) ? 0 : 1;
+        return 0;
+    }
+
+    /**
+     * The aircraft is gone, pending records get the latest velocity update
+     * @param done receives the latest velocity update, the bracket it opened is given up
+     * @return number of records given up on
+     */
+    public int flush(List<TrackingRecord> filled, List<VelocityUpdate> done) {
+        int dropped = 0;
+        for (TrackingRecord record : pending) {
+            if (!fill(record, filled))
+                dropped++;
+        }
+        pending.clear();
+        if (!velocityUpdates.isEmpty())
+            done.add(latest());
+        return dropped;
+    }
+
+    private boolean fill(TrackingRecord record, List<TrackingRecord> filled) {
+        if (velocityUpdates.isEmpty())
+            return false;
+        final long time = record.getLastTimeSeen();
+        int i = velocityUpdates.size() - 1;
+        while (i >= 0 && velocityUpdates.get(i).getLastTimeSeen() > time)
+            i--;
+        if (i < 0) {
+            VelocityUpdate first = velocityUpdates.get(0);
+            if (first.getLastTimeSeen() - time > maxGap)
+                return false;
+            copy(first, record);
+        } else if (i == velocityUpdates.size() - 1) {
+            VelocityUpdate last = velocityUpdates.get(i);
+            if (time - last.getLastTimeSeen() > maxGap)
+                return false;
+            copy(last, record);
+        } else {
+            interpolate(velocityUpdates.get(i), velocityUpdates.get(i + 1), record);
+        }
+        filled.add(record);
+        return true;
+    }
+
+    private static void copy(VelocityUpdate update, TrackingRecord record) {
+        record.setVelocity(update.getVelocity());
+        record.setHeading(update.getHeading());
+        record.setVerticalRate(update.getVerticalRate());
+    }
+
+    // constant acceleration between the two updates, the heading turns the shorter way
+    private static void interpolate(VelocityUpdate start, VelocityUpdate end, TrackingRecord record) {
+        final double f = (double) (record.getLastTimeSeen() - start.getLastTimeSeen())
+                / (end.getLastTimeSeen() - start.getLastTimeSeen());
+        final int turn = Math.floorMod(end.getHeading() - start.getHeading() + 180, 360) - 180;
+        record.setVelocity((int) Math.round(start.getVelocity() + f * (end.getVelocity() - start.getVelocity())));
+        record.setVerticalRate((int) Math.round(start.getVerticalRate() + f * (end.getVerticalRate() - start.getVerticalRate())));
+        record.setHeading(Math.floorMod((int) Math.round(start.getHeading() + f * turn), 360));
+    }
+
+    private VelocityUpdate latest() {
+        return velocityUpdates.get(velocityUpdates.size() - 1);
+    }
+
+    public int pendingSize() {
+        return pending.size();
+    }
+
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    public void setLastActive(long lastActive) {
+        this.lastActive = lastActive;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        this.closed = true;
+    }
+}
@@ -0,0 +1,79 @@
+package adsbrecorder.dataintlv.task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * One pass interleaving of two streams sorted by (addressICAO, lastTimeSeen), the records without a velocity
+ * and the velocity updates. Each aircraft goes through an {@link InterleavingWindow} in time order,
+ * so memory is bounded by the window and not by the length of the streams.
+ */
+public class MergeJoinInterleaving {
+
+    @FunctionalInterface
+    public interface AircraftConsumer {
+        /**
+         * @param filled records of the aircraft whose velocity was set
+         * @param applied velocity updates of the aircraft that were not applied before
+         */
+        void accept(int icao, List<TrackingRecord> filled, List<VelocityUpdate> applied);
+    }
+
+    private final int maxVelocityUpdates;
+    private final int maxPending;
+    private final long maxGap;
+    private long dropped;
+
+    public MergeJoinInterleaving(int maxVelocityUpdates, int maxPending, long maxGap) {
+        this.maxVelocityUpdates = maxVelocityUpdates;
+        this.maxPending = maxPending;
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Aircraft without records are skipped, their velocity updates are read past and left as they are
+     */
+    public void run(Iterator<TrackingRecord> records, Iterator<VelocityUpdate> updates, AircraftConsumer consumer) {
+        TrackingRecord record = next(records);
+        VelocityUpdate update = next(updates);
+        while (record != null) {
+            final int icao = record.getAddressICAO();
+            while (update != null && update.getAddressICAO() < icao)
+                update = next(updates);
+            InterleavingWindow window = new InterleavingWindow(maxVelocityUpdates, maxPending, maxGap);
+            List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+            List<VelocityUpdate> done = new ArrayList<VelocityUpdate>();
+            while ((record != null && record.getAddressICAO() == icao)
+                    || (update != null && update.getAddressICAO() == icao)) {
+                boolean takeUpdate = update != null && update.getAddressICAO() == icao
+                        && (record == null || record.getAddressICAO() != icao
+                            || update.getLastTimeSeen() <= record.getLastTimeSeen());
+                if (takeUpdate) {
+                    dropped += window.addVelocityUpdate(update, filled, done);
+                    update = next(updates);
+                } else {
+                    dropped += window.addTrackingRecord(record, filled);
+                    record = next(records);
+                }
+            }
+            dropped += window.flush(filled, done);
+            done.removeIf(VelocityUpdate::isApplied);
+            consumer.accept(icao, filled, done);
+        }
+    }
+
+    /**
+     * @return records no velocity update was close enough for
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private static <T> T next(Iterator<T> iter) {
+        return iter.hasNext() ? iter.next() : null;
+    }
+}
@@ -0,0 +1,164 @@
+package adsbrecorder.dataintlv.task;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+import adsbrecorder.dataintlv.service.InterleavingUpdateService;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Streaming mode of the interleaving: records and velocity updates are followed as they are received,
+ * keeping a bounded window per aircraft, and only the fields filled in are written when a velocity bracket closes.
+ * Nothing is read back from the database. Replaces {@link TrackingRecordInterleavingTask} when enabled.
+ * A velocity update is flagged applied only once its bracket is closed, the windows of revoked partitions
+ * are flushed before their offsets are committed and all windows are flushed on shutdown.
+ * Windows lost otherwise leave their records and open velocity updates to the historical interleaving.
+ */
+@Component
+public class StreamingInterleavingTask implements ConsumerAwareRebalanceListener, ListOfTopics {
+
+    private InterleavingUpdateService interleavingUpdateService;
+    private ConcurrentIntObjectMap<InterleavingWindow> windows;
+    private Counter unchangedCounter;
+    private long dateRangeExpansion;
+    private int maxVelocityUpdates;
+    private int maxPending;
+    private long idleTimeout;
+
+    @Autowired
+    public StreamingInterleavingTask(InterleavingUpdateService interleavingUpdateService, MeterRegistry meterRegistry,
+            @Value("${adsbrecorder.data.date_range_expn:600000}") long dateRangeExpansion,
+            @Value("${adsbrecorder.interleaving.stream.max_velocity_updates:16}") int maxVelocityUpdates,
+            @Value("${adsbrecorder.interleaving.stream.max_pending:256}") int maxPending,
+            @Value("${adsbrecorder.interleaving.stream.idle_timeout:300000}") long idleTimeout) {
+        this.interleavingUpdateService = requireNonNull(interleavingUpdateService);
+        this.windows = new ConcurrentIntObjectMap<InterleavingWindow>(4096);
+        this.unchangedCounter = Counter.builder("adsbrecorder.interleaving.records.unchanged")
+            .description("Tracking records read for interleaving that needed no write")
+            .register(requireNonNull(meterRegistry));
+        this.dateRangeExpansion = dateRangeExpansion;
+        this.maxVelocityUpdates = maxVelocityUpdates;
+        this.maxPending = maxPending;
+        this.idleTimeout = idleTimeout;
+    }
+
+    @KafkaListener(topics = {REALTIME_DATA, VELOCITY_DATA},
+            groupId = "${adsbrecorder.interleaving.stream.group_id:interleaving}",
+            containerFactory = "streamListenerContainerFactory",
+            autoStartup = "${adsbrecorder.interleaving.stream.enabled:false}")
+    public void interleaveStream(List<Object> values) {
+        requireNonNull(values);
+        final long now = System.currentTimeMillis();
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> applied = new ArrayList<VelocityUpdate>();
+        int dropped = 0, unchanged = 0;
+        for (Object value : values) {
+            if (value instanceof VelocityUpdate) {
+                VelocityUpdate update = (VelocityUpdate) value;
+                dropped += accept(update.getAddressICAO(), now, window -> window.addVelocityUpdate(update, filled, applied));
+            } else if (value instanceof TrackingRecord) {
+                TrackingRecord record = (TrackingRecord) value;
+                if (record.getVelocity() == 0 && record.getId() != null)
+                    dropped += accept(record.getAddressICAO(), now, window -> window.addTrackingRecord(record, filled));
+                else
+                    unchanged++;
+            }
+        }
+        unchangedCounter.increment(unchanged);
+        if (dropped > 0)
+            System.err.println("Not enough velocity data: " + dropped + " records");
+        if (!filled.isEmpty() || !applied.isEmpty())
+            interleavingUpdateService.update(filled, applied);
+    }
+
+    @Scheduled(fixedDelayString = "${adsbrecorder.interleaving.stream.expiry_interval:60000}")
+    public void expireWindows() {
+        final long deadline = System.currentTimeMillis() - idleTimeout;
+        flushWindows((icao, window) -> window.getLastActive() <= deadline);
+    }
+
+    /**
+     * The aircraft of the revoked partitions are interleaved by the next owner from the committed offsets on,
+     * so their windows are written out here, before those offsets are committed
+     */
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // the range assignor hands out the same partition numbers of both topics
+        Set<Integer> revoked = partitions.stream()
+                .map(TopicPartition::partition)
+                .collect(Collectors.toSet());
+        if (revoked.isEmpty())
+            return;
+        final int partitionCount = consumer.partitionsFor(REALTIME_DATA).size();
+        flushWindows((icao, window) -> revoked.contains(PartitionKeys.partitionOf(icao, partitionCount)));
+    }
+
+    /**
+     * The listener containers are stopped by now, nothing is added to the windows any more
+     */
+    @PreDestroy
+    public void flushAll() {
+        flushWindows((icao, window) -> true);
+    }
+
+    private void flushWindows(BiPredicate<Integer, InterleavingWindow> selected) {
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> applied = new ArrayList<VelocityUpdate>();
+        int[] dropped = {0};
+        windows.forEach((icao, window) -> {
+            synchronized (window) {
+                if (window.isClosed() || !selected.test(icao, window))
+                    return;
+                dropped[0] += window.flush(filled, applied);
+                window.close();
+            }
+            windows.remove(icao, window);
+        });
+        if (dropped[0] > 0)
+            System.err.println("Not enough velocity data: " + dropped[0] + " records");
+        if (!filled.isEmpty() || !applied.isEmpty())
+            interleavingUpdateService.update(filled, applied);
+    }
+
+    private int accept(int icao, long now, WindowUpdate update) {
+        while (true) {
+            InterleavingWindow window = windows.computeIfAbsent(icao,
+                    key -> new InterleavingWindow(maxVelocityUpdates, maxPending, dateRangeExpansion));
+            synchronized (window) {
+                // expired and removed in between, start over with a new window
+                if (window.isClosed())
+                    continue;
+                window.setLastActive(now);
+                return update.apply(window);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface WindowUpdate {
+        int apply(InterleavingWindow window);
+    }
+}
@@ -1,52 +1,123 @@
 package adsbrecorder.dataintlv.task;
 
 import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import adsbrecorder.common.utils.StripedExecutor;
+import adsbrecorder.dataintlv.service.InterleavingUpdateService;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.entity.VelocityUpdate;
 import adsbrecorder.receiver.kafka.ListOfTopics;
-import adsbrecorder.receiver.repo.TrackingRecordRepository;
-import adsbrecorder.receiver.repo.VelocityUpdateRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Component
 public class TrackingRecordInterleavingTask implements ListOfTopics {
 
-    private VelocityUpdateRepository velocityUpdateRepository;
-    private TrackingRecordRepository trackingRecordRepository;
+    private MongoTemplate mongoTemplate;
+    private InterleavingUpdateService interleavingUpdateService;
+    private StripedExecutor interleavingWorkers;
+    private Counter unchangedCounter;
 
     @Value("${adsbrecorder.data.date_range_expn:600000}")
     private long dateRangeExpansion;
 
+    // unapplied velocity updates older than this before the last record of an aircraft are left to the historical job
+    @Value("${adsbrecorder.interleaving.max_lookback:43200000}")
+    private long maxLookback;
+
     @Autowired
-    public TrackingRecordInterleavingTask(VelocityUpdateRepository velocityUpdateRepository,
-            TrackingRecordRepository trackingRecordRepository) {
-        this.velocityUpdateRepository = requireNonNull(velocityUpdateRepository);
-        this.trackingRecordRepository = requireNonNull(trackingRecordRepository);
+    public TrackingRecordInterleavingTask(MongoTemplate mongoTemplate,
+            InterleavingUpdateService interleavingUpdateService,
+            StripedExecutor interleavingWorkers,
+            MeterRegistry meterRegistry) {
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.interleavingUpdateService = requireNonNull(interleavingUpdateService);
+        this.interleavingWorkers = requireNonNull(interleavingWorkers);
+        this.unchangedCounter = Counter.builder("adsbrecorder.interleaving.records.unchanged")
+            .description("Tracking records read for interleaving that needed no write")
+            .register(requireNonNull(meterRegistry));
+    }
+
+    /**
+     * Interleave a whole poll at once: velocity updates and tracking records of all aircraft
+     * in the batch are read with one query each, every aircraft over its own time range. Only the fields interleaving set are written back,
+     * records that already had a velocity are not written at all.
+     * The aircraft are split over the worker stripes by ICAO and the poll completes when every stripe is done,
+     * so an aircraft is never interleaved twice at the same time.
+     * Stays stopped while the streaming interleaving is enabled.
+     */
+    @KafkaListener(topics = INTERLEAVING_RECORDS, groupId = "1",
+            autoStartup = "#{!${adsbrecorder.interleaving.stream.enabled:false}}")
+    public void interleaveRecords(List<TrackingRecord> records) {
+        requireNonNull(records);
+        // an aircraft that expired more than once within the batch is interleaved once, up to its latest record
+        final Map<Integer, Long> lastTimes = new HashMap<Integer, Long>();
+        records.stream()
+                .filter(record -> record != null)
+                .forEach(record -> lastTimes.merge(record.getAddressICAO(), record.getLastTimeSeen(), Math::max));
+        if (lastTimes.isEmpty())
+            return;
+        System.err.println("Try to interleave: " + lastTimes.size() + " aircraft");
+        interleavingWorkers.invokeAll(lastTimes.keySet(), icaos -> interleaveAircraft(icaos, lastTimes));
     }
 
-    @KafkaListener(topics = INTERLEAVING_RECORDS, groupId = "1")
-    public void interleaveRecords(TrackingRecord record) {
-        record = requireNonNull(record);
-        System.err.println("Try to interleave: " + record);
-        List<VelocityUpdate> vus = velocityUpdateRepository.findAllActiveByAddressICAO(record.getAddressICAO(), record.getLastTimeSeen());
-        if (vus.size() > 1) {
-            long startTime = vus.get(vus.size() - 1).getLastTimeSeen() - this.dateRangeExpansion;
-            long endTime = vus.get(0).getLastTimeSeen() + this.dateRangeExpansion;
-            List<TrackingRecord> trs = trackingRecordRepository.llfindAllByICAOAddressAndLastSeenBetween(record.getAddressICAO(), startTime, endTime);
+    private void interleaveAircraft(Collection<Integer> icaos, Map<Integer, Long> lastTimes) {
+        // every aircraft is read over its own range only, lists keep the latest first order of the query
+        Map<Integer, List<VelocityUpdate>> velocities = mongoTemplate.find(latestFirst(where("applied").is(false)
+                .orOperator(icaos.stream()
+                    .map(icao -> where("addressICAO").is(icao).and("lastTimeSeen")
+                            .gte(lastTimes.get(icao) - this.maxLookback).lt(lastTimes.get(icao)))
+                    .toArray(Criteria[]::new))), VelocityUpdate.class).stream()
+                .collect(Collectors.groupingBy(VelocityUpdate::getAddressICAO));
+        velocities.values().removeIf(vus -> vus.size() < 2);
+        if (velocities.size() < icaos.size())
+            System.err.println("Not enough velocity data: " + (icaos.size() - velocities.size()) + " aircraft");
+        if (velocities.isEmpty())
+            return;
+        Map<Integer, List<TrackingRecord>> tracks = mongoTemplate.find(latestFirst(new Criteria()
+                .orOperator(velocities.entrySet().stream()
+                    .map(e -> where("addressICAO").is(e.getKey()).and("lastTimeSeen")
+                            .gt(e.getValue().get(e.getValue().size() - 1).getLastTimeSeen() - this.dateRangeExpansion)
+                            .lt(e.getValue().get(0).getLastTimeSeen() + this.dateRangeExpansion))
+                    .toArray(Criteria[]::new))), TrackingRecord.class).stream()
+                .collect(Collectors.groupingBy(TrackingRecord::getAddressICAO));
+        List<VelocityUpdate> applied = new ArrayList<VelocityUpdate>();
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        velocities.forEach((icao, vus) -> {
+            List<TrackingRecord> trs = tracks.getOrDefault(icao, List.of());
+            // most records are completed with a velocity at ingest, only the remaining gaps are written back
+            List<TrackingRecord> gaps = trs.stream()
+                    .filter(tr -> tr.getVelocity() == 0)
+                    .collect(Collectors.toList());
             interleave(vus, trs);
-            velocityUpdateRepository.saveAll(vus);
-            trackingRecordRepository.saveAll(trs);
-        } else {
-            System.err.println("Not enough velocity data: " + vus.size());
-        }
+            applied.addAll(vus);
+            gaps.stream()
+                    .filter(tr -> tr.getVelocity() != 0)
+                    .forEach(filled::add);
+            unchangedCounter.increment(trs.size() - gaps.size());
+        });
+        interleavingUpdateService.update(filled, applied);
+    }
+
+    private static Query latestFirst(Criteria criteria) {
+        return Query.query(criteria).with(new Sort(Sort.Direction.DESC, "lastTimeSeen"));
     }
 
     private void interleave(List<VelocityUpdate> vus, List<TrackingRecord> trs) {
@@ -0,0 +1,169 @@
+package adsbrecorder.dataintlv.test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import adsbrecorder.common.utils.StripedExecutor;
+import adsbrecorder.dataintlv.task.TrackingRecordInterleavingTask;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Drain rate of a synthetic InterleavingRecords backlog, in aircraft per second, for a number of worker stripes.
+ * The template answers from memory after a delay standing in for the database, a fixed round trip
+ * plus a cost per document, so the result shows how much of the database time the stripes overlap.
+ * Run the main method with the test classpath, e.g. java -cp ... org.openjdk.jmh.Main InterleavingDrainBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(InterleavingDrainBenchmark.AIRCRAFT)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterleavingDrainBenchmark {
+
+    // one poll of the backlog, kafka.batch.max_records
+    final static int AIRCRAFT = 500;
+    final static int VELOCITY_UPDATES = 6;
+    final static int RECORDS = 60;
+    final static long START = 1_560_000_000_000L;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"2000"})
+    private long roundTripMicros;
+
+    @Param({"5"})
+    private long documentMicros;
+
+    private StripedExecutor workers;
+    private TrackingRecordInterleavingTask task;
+    private List<TrackingRecord> poll;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // every filled record is logged
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        workers = new StripedExecutor("benchmark", parallelism);
+        task = new TrackingRecordInterleavingTask(mongoTemplate(),
+                (filled, applied) -> roundTrip(filled.size() + applied.size()), workers, new SimpleMeterRegistry());
+        poll = new ArrayList<TrackingRecord>(AIRCRAFT);
+        for (int i = 0; i < AIRCRAFT; i++) {
+            TrackingRecord expired = new TrackingRecord();
+            expired.setAddressICAO(0x400000 + i * 37);
+            expired.setLastTimeSeen(START + VELOCITY_UPDATES * 10000L);
+            poll.add(expired);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workers.close();
+    }
+
+    @Benchmark
+    public void drain() {
+        task.interleaveRecords(poll);
+    }
+
+    private void roundTrip(int documents) {
+        LockSupport.parkNanos((roundTripMicros + documentMicros * documents) * 1000L);
+    }
+
+    // the aircraft of the per aircraft clauses of a query
+    private MongoTemplate mongoTemplate() {
+        MongoDbFactory factory = (MongoDbFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MongoDbFactory.class}, (proxy, method, args) -> null);
+        return new MongoTemplate(factory) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> find(Query query, Class<T> entityClass) {
+                List<Integer> icaos = ((List<Document>) query.getQueryObject().get("$or")).stream()
+                        .map(clause -> clause.getInteger("addressICAO"))
+                        .collect(Collectors.toList());
+                if (entityClass == VelocityUpdate.class)
+                    return (List<T>) velocityUpdates(icaos);
+                if (entityClass == TrackingRecord.class)
+                    return (List<T>) trackingRecords(icaos);
+                throw new UnsupportedOperationException(entityClass.getName());
+            }
+        };
+    }
+
+    // latest first, as the query sorts them
+    private List<VelocityUpdate> velocityUpdates(Collection<Integer> icaos) {
+        List<VelocityUpdate> vus = new ArrayList<VelocityUpdate>();
+        for (int icao : icaos) {
+            for (int j = VELOCITY_UPDATES - 1; j >= 0; j--) {
+                VelocityUpdate vu = new VelocityUpdate();
+                vu.setId(BigInteger.valueOf(icao * 100L + j));
+                vu.setAddressICAO(icao);
+                vu.setLastTimeSeen(START + j * 10000L);
+                vu.setVelocity(400 + j * 5);
+                vu.setHeading((90 + j * 3) % 360);
+                vu.setVerticalRate(-j * 100);
+                vus.add(vu);
+            }
+        }
+        roundTrip(vus.size());
+        return vus;
+    }
+
+    // every third record was written without a velocity
+    private List<TrackingRecord> trackingRecords(Collection<Integer> icaos) {
+        final long step = (VELOCITY_UPDATES - 1) * 10000L / (RECORDS + 1);
+        List<TrackingRecord> trs = new ArrayList<TrackingRecord>();
+        for (int icao : icaos) {
+            for (int j = RECORDS; j >= 1; j--) {
+                TrackingRecord tr = new TrackingRecord();
+                tr.setId(BigInteger.valueOf(icao * 1000L + j));
+                tr.setAddressICAO(icao);
+                tr.setLastTimeSeen(START + j * step);
+                if (j % 3 != 0)
+                    tr.setVelocity(410);
+                trs.add(tr);
+            }
+        }
+        roundTrip(trs.size());
+        return trs;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InterleavingDrainBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
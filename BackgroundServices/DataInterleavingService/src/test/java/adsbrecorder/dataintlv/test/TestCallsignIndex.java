@@ -0,0 +1,70 @@
+package adsbrecorder.dataintlv.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.dataintlv.task.CallsignIndex;
+
+public class TestCallsignIndex {
+
+    private final static int ICAO = 0x7C6B2D;
+    private final static long MAX_GAP = 60000L;
+    private final static long START = 1_560_000_000_000L;
+
+    @Test
+    public void testSegments() {
+        CallsignIndex index = new CallsignIndex(8, MAX_GAP);
+        index.add(ICAO, START + 10000L, "QFA401");
+        index.add(ICAO, START + 20000L, "QFA401");
+        CallsignIndex.Segment first = index.find(ICAO, START + 15000L);
+        assertEquals("QFA401", first.getCallsign());
+        assertEquals(START + 10000L, first.getFirstTime());
+        assertEquals(START + 20000L, first.getLastTime());
+        // start of the flight, the callsign is not decoded yet
+        assertSame(first, index.find(ICAO, START));
+        assertNull(index.find(ICAO, START - MAX_GAP));
+        assertNull(index.find(0x7C6B2E, START + 15000L));
+
+        index.add(ICAO, START + 600000L, "QFA402");
+        assertEquals("QFA401", index.find(ICAO, START + 500000L).getCallsign());
+        assertEquals("QFA402", index.find(ICAO, START + 700000L).getCallsign());
+        // arrives late, moves the start of the second flight
+        index.add(ICAO, START + 400000L, "QFA402");
+        CallsignIndex.Segment second = index.find(ICAO, START + 500000L);
+        assertEquals("QFA402", second.getCallsign());
+        assertEquals(START + 400000L, second.getFirstTime());
+        assertEquals(START + 600000L, second.getLastTime());
+    }
+
+    @Test
+    public void testBounded() {
+        CallsignIndex index = new CallsignIndex(2, MAX_GAP);
+        index.add(ICAO, START, "VOZ801");
+        index.add(ICAO, START + 100000L, "VOZ802");
+        index.add(ICAO, START + 200000L, "VOZ803");
+        // the oldest segment is gone, the oldest kept one stands in only within maxGap
+        assertNull(index.find(ICAO, START + 10000L));
+        assertEquals("VOZ802", index.find(ICAO, START + 50000L).getCallsign());
+        assertEquals("VOZ803", index.find(ICAO, START + 250000L).getCallsign());
+    }
+
+    @Test
+    public void testSeededAndExpire() {
+        CallsignIndex index = new CallsignIndex(8, MAX_GAP);
+        assertFalse(index.isSeeded(ICAO));
+        index.setSeeded(ICAO, START);
+        assertTrue(index.isSeeded(ICAO));
+        assertNull(index.find(ICAO, START));
+        index.add(0x7C6B2E, START + 100000L, "JST501");
+        assertEquals(2, index.size());
+        index.expire(START + 50000L);
+        assertEquals(1, index.size());
+        assertFalse(index.isSeeded(ICAO));
+        assertEquals("JST501", index.find(0x7C6B2E, START + 100001L).getCallsign());
+    }
+}
@@ -0,0 +1,124 @@
+package adsbrecorder.dataintlv.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.dataintlv.task.InterleavingWindow;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public class TestInterleavingWindow {
+
+    private final static int ICAO = 0x7C6B2D;
+    private final static long MAX_GAP = 60000L;
+
+    @Test
+    public void testBracketClosedByVelocityUpdate() {
+        InterleavingWindow window = new InterleavingWindow(16, 256, MAX_GAP);
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> done = new ArrayList<VelocityUpdate>();
+        VelocityUpdate opening = velocityUpdate(1000L, 400, 350, 0);
+        assertEquals(0, window.addVelocityUpdate(opening, filled, done));
+        TrackingRecord quarter = trackingRecord(3000L);
+        TrackingRecord half = trackingRecord(5000L);
+        window.addTrackingRecord(quarter, filled);
+        window.addTrackingRecord(half, filled);
+        window.addTrackingRecord(withVelocity(trackingRecord(6000L), 420), filled);
+        assertTrue(filled.isEmpty());
+        assertEquals(2, window.pendingSize());
+        assertTrue(done.isEmpty());
+        VelocityUpdate closing = velocityUpdate(9000L, 480, 10, -800);
+        window.addVelocityUpdate(closing, filled, done);
+        assertEquals(List.of(quarter, half), filled);
+        // the closing update opens the next bracket, it is done once the window is flushed
+        assertEquals(List.of(opening), done);
+        window.flush(filled, done);
+        assertEquals(List.of(opening, closing), done);
+        assertEquals(0, window.pendingSize());
+        assertEquals(420, quarter.getVelocity());
+        assertEquals(355, quarter.getHeading());
+        assertEquals(-200, quarter.getVerticalRate());
+        assertEquals(440, half.getVelocity());
+        assertEquals(0, half.getHeading());
+        assertEquals(-400, half.getVerticalRate());
+    }
+
+    @Test
+    public void testLateRecordsAndEdges() {
+        InterleavingWindow window = new InterleavingWindow(16, 256, MAX_GAP);
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> done = new ArrayList<VelocityUpdate>();
+        TrackingRecord leading = trackingRecord(100000L);
+        TrackingRecord tooEarly = trackingRecord(1000L);
+        window.addTrackingRecord(leading, filled);
+        window.addTrackingRecord(tooEarly, filled);
+        assertEquals(1, window.addVelocityUpdate(velocityUpdate(120000L, 300, 90, 500), filled, done));
+        assertEquals(List.of(leading), filled);
+        assertEquals(300, leading.getVelocity());
+        window.addVelocityUpdate(velocityUpdate(140000L, 340, 110, 700), filled, done);
+        // arrives after its bracket closed
+        TrackingRecord late = trackingRecord(130000L);
+        assertEquals(0, window.addTrackingRecord(late, filled));
+        assertEquals(320, late.getVelocity());
+        assertEquals(100, late.getHeading());
+        assertEquals(600, late.getVerticalRate());
+        TrackingRecord trailing = trackingRecord(150000L);
+        TrackingRecord gone = trackingRecord(250000L);
+        window.addTrackingRecord(trailing, filled);
+        window.addTrackingRecord(gone, filled);
+        assertEquals(1, window.flush(filled, done));
+        assertEquals(List.of(leading, late, trailing), filled);
+        assertEquals(340, trailing.getVelocity());
+        assertEquals(0, gone.getVelocity());
+    }
+
+    @Test
+    public void testBounded() {
+        InterleavingWindow window = new InterleavingWindow(2, 3, MAX_GAP);
+        List<TrackingRecord> filled = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> done = new ArrayList<VelocityUpdate>();
+        window.addVelocityUpdate(velocityUpdate(0L, 200, 0, 0), filled, done);
+        window.addVelocityUpdate(velocityUpdate(10000L, 220, 0, 0), filled, done);
+        window.addVelocityUpdate(velocityUpdate(20000L, 240, 0, 0), filled, done);
+        assertEquals(2, done.size());
+        // the oldest update is gone, the oldest kept one stands in for it
+        TrackingRecord early = trackingRecord(5000L);
+        window.addTrackingRecord(early, filled);
+        assertEquals(220, early.getVelocity());
+        for (long t = 21000L; t <= 24000L; t += 1000L)
+            window.addTrackingRecord(trackingRecord(t), filled);
+        assertEquals(3, window.pendingSize());
+        assertEquals(2, filled.size());
+        assertEquals(21000L, filled.get(1).getLastTimeSeen());
+        assertEquals(240, filled.get(1).getVelocity());
+    }
+
+    private VelocityUpdate velocityUpdate(long time, int velocity, int heading, int verticalRate) {
+        VelocityUpdate vu = new VelocityUpdate();
+        vu.setAddressICAO(ICAO);
+        vu.setLastTimeSeen(time);
+        vu.setVelocity(velocity);
+        vu.setHeading(heading);
+        vu.setVerticalRate(verticalRate);
+        return vu;
+    }
+
+    private TrackingRecord trackingRecord(long time) {
+        TrackingRecord tr = new TrackingRecord();
+        tr.setId(BigInteger.valueOf(time));
+        tr.setAddressICAO(ICAO);
+        tr.setLastTimeSeen(time);
+        return tr;
+    }
+
+    private TrackingRecord withVelocity(TrackingRecord tr, int velocity) {
+        tr.setVelocity(velocity);
+        return tr;
+    }
+}
@@ -0,0 +1,63 @@
+package adsbrecorder.dataintlv.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.dataintlv.task.MergeJoinInterleaving;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public class TestMergeJoinInterleaving {
+
+    @Test
+    public void testOnePassOverSortedStreams() {
+        // sorted by (addressICAO, lastTimeSeen) as the cursors return them
+        List<TrackingRecord> records = List.of(
+                trackingRecord(10, 5000L),
+                trackingRecord(30, 1000L),
+                trackingRecord(30, 15000L),
+                trackingRecord(40, 1000L));
+        List<VelocityUpdate> updates = List.of(
+                velocityUpdate(10, 0L, 300, false),
+                velocityUpdate(10, 10000L, 400, true),
+                velocityUpdate(20, 0L, 500, false),
+                velocityUpdate(30, 10000L, 200, false),
+                velocityUpdate(30, 20000L, 300, false));
+        List<Integer> aircraft = new ArrayList<Integer>();
+        List<VelocityUpdate> applied = new ArrayList<VelocityUpdate>();
+        MergeJoinInterleaving interleaving = new MergeJoinInterleaving(16, 256, 60000L);
+        interleaving.run(records.iterator(), updates.iterator(), (icao, filled, aircraftApplied) -> {
+            aircraft.add(icao);
+            applied.addAll(aircraftApplied);
+        });
+        assertEquals(List.of(10, 30, 40), aircraft);
+        assertEquals(List.of(updates.get(0), updates.get(3), updates.get(4)), applied);
+        assertEquals(350, records.get(0).getVelocity());
+        assertEquals(200, records.get(1).getVelocity());
+        assertEquals(250, records.get(2).getVelocity());
+        assertEquals(0, records.get(3).getVelocity());
+        assertEquals(1L, interleaving.getDropped());
+    }
+
+    private VelocityUpdate velocityUpdate(int icao, long time, int velocity, boolean applied) {
+        VelocityUpdate vu = new VelocityUpdate();
+        vu.setAddressICAO(icao);
+        vu.setLastTimeSeen(time);
+        vu.setVelocity(velocity);
+        vu.setApplied(applied);
+        return vu;
+    }
+
+    private TrackingRecord trackingRecord(int icao, long time) {
+        TrackingRecord tr = new TrackingRecord();
+        tr.setId(BigInteger.valueOf(icao * 100000L + time));
+        tr.setAddressICAO(icao);
+        tr.setLastTimeSeen(time);
+        return tr;
+    }
+}
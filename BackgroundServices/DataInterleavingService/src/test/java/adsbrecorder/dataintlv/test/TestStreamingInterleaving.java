@@ -0,0 +1,117 @@
+package adsbrecorder.dataintlv.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.dataintlv.task.StreamingInterleavingTask;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestStreamingInterleaving implements ListOfTopics {
+
+    private final static int PARTITIONS = 4;
+    private final static long START = 1_560_000_000_000L;
+
+    private List<TrackingRecord> filled;
+    private List<VelocityUpdate> applied;
+    private StreamingInterleavingTask task;
+
+    @BeforeEach
+    public void setUp() {
+        filled = new ArrayList<TrackingRecord>();
+        applied = new ArrayList<VelocityUpdate>();
+        task = new StreamingInterleavingTask((trs, vus) -> {
+            filled.addAll(trs);
+            applied.addAll(vus);
+        }, new SimpleMeterRegistry(), 60000L, 16, 256, 300000L);
+    }
+
+    @Test
+    public void testAppliedOnceBracketClosed() {
+        final int icao = icaoInPartition(0);
+        VelocityUpdate opening = velocityUpdate(icao, START, 400);
+        VelocityUpdate closing = velocityUpdate(icao, START + 8000L, 480);
+        TrackingRecord record = trackingRecord(icao, START + 4000L);
+        task.interleaveStream(List.of(opening, record));
+        // still opening the bracket of the waiting record
+        assertTrue(applied.isEmpty());
+        assertTrue(filled.isEmpty());
+        task.interleaveStream(List.of(closing));
+        assertEquals(List.of(record), filled);
+        assertEquals(440, record.getVelocity());
+        assertEquals(List.of(opening), applied);
+    }
+
+    @Test
+    public void testFlushedOnRevokeAndShutdown() {
+        final int revokedICAO = icaoInPartition(1);
+        final int keptICAO = icaoInPartition(2);
+        VelocityUpdate revokedUpdate = velocityUpdate(revokedICAO, START, 400);
+        VelocityUpdate keptUpdate = velocityUpdate(keptICAO, START, 300);
+        TrackingRecord revokedRecord = trackingRecord(revokedICAO, START + 4000L);
+        TrackingRecord keptRecord = trackingRecord(keptICAO, START + 4000L);
+        task.interleaveStream(List.of(revokedUpdate, keptUpdate, revokedRecord, keptRecord));
+        assertTrue(filled.isEmpty());
+
+        task.onPartitionsRevokedBeforeCommit(consumer(), List.of(new TopicPartition(REALTIME_DATA, 1),
+                new TopicPartition(VELOCITY_DATA, 1)));
+        assertEquals(List.of(revokedRecord), filled);
+        assertEquals(400, revokedRecord.getVelocity());
+        assertEquals(List.of(revokedUpdate), applied);
+
+        task.flushAll();
+        assertEquals(List.of(revokedRecord, keptRecord), filled);
+        assertEquals(300, keptRecord.getVelocity());
+        assertEquals(List.of(revokedUpdate, keptUpdate), applied);
+    }
+
+    private Consumer<?, ?> consumer() {
+        return (Consumer<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Consumer.class},
+                (proxy, method, args) -> {
+            if (!method.getName().equals("partitionsFor"))
+                throw new UnsupportedOperationException(method.getName());
+            List<PartitionInfo> infos = new ArrayList<PartitionInfo>();
+            for (int i = 0; i < PARTITIONS; i++)
+                infos.add(new PartitionInfo((String) args[0], i, null, null, null));
+            return infos;
+        });
+    }
+
+    private static int icaoInPartition(int partition) {
+        int icao = 0x7C0000;
+        while (PartitionKeys.partitionOf(icao, PARTITIONS) != partition)
+            icao++;
+        return icao;
+    }
+
+    private static VelocityUpdate velocityUpdate(int icao, long time, int velocity) {
+        VelocityUpdate vu = new VelocityUpdate();
+        vu.setId(BigInteger.valueOf(time));
+        vu.setAddressICAO(icao);
+        vu.setLastTimeSeen(time);
+        vu.setVelocity(velocity);
+        return vu;
+    }
+
+    private static TrackingRecord trackingRecord(int icao, long time) {
+        TrackingRecord tr = new TrackingRecord();
+        tr.setId(BigInteger.valueOf(time));
+        tr.setAddressICAO(icao);
+        tr.setLastTimeSeen(time);
+        return tr;
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
         "adsbrecorder.user.entity"})
 @PropertySource(value = {
         "application.properties",
+        "kafka.properties",
         "mariadb.properties",
         "userauth.properties",
         "clientauth.properties",
@@ -11,6 +11,7 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -30,6 +31,7 @@ import adsbrecorder.common.aop.annotation.CheckOwnership;
 import adsbrecorder.common.aop.annotation.LoginUser;
 import adsbrecorder.common.aop.annotation.RequireLogin;
 import adsbrecorder.common.aop.annotation.RequireOwnership;
+import adsbrecorder.common.auth.PrincipalChangedEvent;
 import adsbrecorder.user.entity.User;
 import adsbrecorder.user.service.UserService;
 
@@ -38,11 +40,14 @@ public class ClientController implements ClientServiceMappings {
 
     private RemoteReceiverService receiverService;
     private UserService userService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ClientController(RemoteReceiverService receiverService, UserService userService) {
+    public ClientController(RemoteReceiverService receiverService, UserService userService,
+            ApplicationEventPublisher eventPublisher) {
         this.receiverService = requireNonNull(receiverService);
         this.userService = requireNonNull(userService);
+        this.eventPublisher = requireNonNull(eventPublisher);
     }
 
     @RequireLogin
@@ -78,6 +83,7 @@ public class ClientController implements ClientServiceMappings {
         RemoteReceiver receiver = receiverService.findRemoteReceiver(remoteReceiverID);
         receiver.setRemoteReceiverKey(UUID.randomUUID().toString());
         receiver = receiverService.updateRemoteReceiver(receiver);
+        receiverChanged(receiver);
         receiver.setOwner(null);  // reduce response size
         return ResponseEntity.status(HttpStatus.OK).body(receiver);
     }
@@ -111,6 +117,10 @@ public class ClientController implements ClientServiceMappings {
             @RequestBody RemoteReceiver receiver) {
         receiver.setRemoteReceiverKey(receiverName);
         receiverService.updateRemoteReceiver(receiver);
+        // a rename leaves principals cached under the old name
+        receiverChanged(receiverName);
+        if (receiver.getRemoteReceiverName() != null && !receiverName.equals(receiver.getRemoteReceiverName()))
+            receiverChanged(receiver);
         return receiver;
     }
 
@@ -131,6 +141,7 @@ public class ClientController implements ClientServiceMappings {
             @CheckOwnership(validator = RemoteReceiverOwnershipChecker.class) Long receiverID) {
         RemoteReceiver receiver = receiverService.findRemoteReceiver(receiverID);
         receiverService.removeRemoteReceiver(receiver);
+        receiverChanged(receiver);
         return ResponseEntity.status(HttpStatus.OK)
                 .body(Map.of("message", String.format("RemoteReceiver#%d has been removed", receiverID)));
     }
@@ -144,6 +155,15 @@ public class ClientController implements ClientServiceMappings {
         return ResponseEntity.status(HttpStatus.OK).body(receiver);
     }
 
+    private void receiverChanged(RemoteReceiver receiver) {
+        receiverChanged(receiver.getRemoteReceiverName());
+    }
+
+    private void receiverChanged(String remoteReceiverName) {
+        eventPublisher.publishEvent(new PrincipalChangedEvent(this,
+                PrincipalChangedEvent.REMOTE_RECEIVER, remoteReceiverName));
+    }
+
     private RemoteReceiver trimRemoteReceiver(RemoteReceiver receiver) {
         receiver.setOwner(null);
         String key = receiver.getRemoteReceiverKey();
@@ -180,6 +180,10 @@ public class TrackingRecord implements Serializable, GeoCoordinate {
         return sourceReceiverID;
     }
 
+    public void setSourceReceiverID(Long sourceReceiverID) {
+        this.sourceReceiverID = sourceReceiverID;
+    }
+
     public int getVerticalRate() {
         return verticalRate;
     }
@@ -112,6 +112,10 @@ public class VelocityUpdate implements Serializable {
         return sourceReceiverID;
     }
 
+    public void setSourceReceiverID(Long sourceReceiverID) {
+        this.sourceReceiverID = sourceReceiverID;
+    }
+
     public boolean isApplied() {
         return applied;
     }
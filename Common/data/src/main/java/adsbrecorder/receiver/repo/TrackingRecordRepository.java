@@ -15,6 +15,11 @@ import adsbrecorder.receiver.entity.TrackingRecord;
 
 public interface TrackingRecordRepository extends MongoRepository<TrackingRecord, BigInteger> {
 
+    /**
+     * Flight of records no callsign could be found for
+     */
+    String NO_CALLSIGN = "No Callsign";
+
     List<TrackingRecord> findAllByFlight(String flight);
     List<TrackingRecord> findAllByFlightAndRecordDateGreaterThan(String flight, Date startDate);
     List<TrackingRecord> findAllByFlightAndRecordDateLessThan(String flight, Date endDate);
@@ -45,7 +50,7 @@ public interface TrackingRecordRepository extends MongoRepository<TrackingRecord
         return llfindAllByICAOAddressAndLastSeenBetween(addr, startDate, endDate, page).getContent();
     }
 
-    @Query("{addressICAO: ?0, lastTimeSeen: {$lt: ?1}, flight: {$exists: true, $ne: null}}")
+    @Query("{addressICAO: ?0, lastTimeSeen: {$lt: ?1}, flight: {$exists: true, $nin: [null, 'No Callsign']}}")
     Page<TrackingRecord> findLatestTrackingRecords(int icao, long lastTime, Pageable pageable);
 
     default String findCallsign(int icao, long lastRecordTime) {
@@ -55,7 +60,7 @@ public interface TrackingRecordRepository extends MongoRepository<TrackingRecord
             TrackingRecord t = tr.getContent().get(0);
             return t.getFlight();
         } catch (Exception e) {
-            return "No Callsign";
+            return NO_CALLSIGN;
         }
     }
 
@@ -6,10 +6,12 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import adsbrecorder.client.entity.RemoteReceiver;
 import adsbrecorder.receiver.entity.TrackingRecord;
 
 public interface TrackingRecordService {
     List<TrackingRecord> batchCreateTrackingRecord(Collection<TrackingRecord> records, String sourceReceiverName, String sourceReceiverKey);
+    List<TrackingRecord> batchCreateTrackingRecord(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver);
     TrackingRecord findById(BigInteger id);
     List<TrackingRecord> findAllByFlightNumber(String flight, Date startDate, Date endDate);
     List<TrackingRecord> findAllByFlightNumber(String flight, long lastSeenStart, long lastSeenEnd);
@@ -3,10 +3,12 @@ package adsbrecorder.receiver.service;
 import java.util.Collection;
 import java.util.List;
 
+import adsbrecorder.client.entity.RemoteReceiver;
 import adsbrecorder.receiver.entity.VelocityUpdate;
 
 public interface VelocityUpdateService {
 
     VelocityUpdate addVelocityUpdate(VelocityUpdate update);
     List<VelocityUpdate> batchCreateVelocityUpdates(Collection<VelocityUpdate> updates, String sourceReceiverName, String sourceReceiverKey);
+    List<VelocityUpdate> batchCreateVelocityUpdates(Collection<VelocityUpdate> updates, RemoteReceiver sourceReceiver);
 }
@@ -46,12 +46,17 @@ public class TrackingRecordServiceImpl implements TrackingRecordService {
             String sourceReceiverKey) {
         Optional<RemoteReceiver> sourceReceiver = remoteReceiverRepository.findOneByRemoteReceiverNameAndKey(sourceReceiverName, sourceReceiverKey);
         if (sourceReceiver.isPresent()) {
-            records.forEach(record -> record.setSourceReceiver(sourceReceiver.get()));
-            return trackingRecordRepository.saveAll(records);
+            return batchCreateTrackingRecord(records, sourceReceiver.get());
         }
         return List.of();
     }
 
+    @Override
+    public List<TrackingRecord> batchCreateTrackingRecord(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        records.forEach(record -> record.setSourceReceiver(sourceReceiver));
+        return trackingRecordRepository.saveAll(records);
+    }
+
     @Override
     public TrackingRecord findById(BigInteger id) {
         Optional<TrackingRecord> tr = trackingRecordRepository.findById(id);
@@ -43,9 +43,14 @@ public class VelocityUpdateServiceImpl implements VelocityUpdateService {
             String sourceReceiverKey) {
         Optional<RemoteReceiver> sourceReceiver = remoteReceiverRepository.findOneByRemoteReceiverNameAndKey(sourceReceiverName, sourceReceiverKey);
         if (sourceReceiver.isPresent()) {
-            updates.forEach(update -> update.setSourceReceiver(sourceReceiver.get()));
-            return velocityUpdateRepository.saveAll(updates);
+            return batchCreateVelocityUpdates(updates, sourceReceiver.get());
         }
         return List.of();
     }
+
+    @Override
+    public List<VelocityUpdate> batchCreateVelocityUpdates(Collection<VelocityUpdate> updates, RemoteReceiver sourceReceiver) {
+        updates.forEach(update -> update.setSourceReceiver(sourceReceiver));
+        return velocityUpdateRepository.saveAll(updates);
+    }
 }
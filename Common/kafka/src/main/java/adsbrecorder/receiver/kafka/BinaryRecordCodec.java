@@ -0,0 +1,301 @@
+package adsbrecorder.receiver.kafka;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Versioned binary encoding of tracking records and velocity updates.
+ *
+ * Frame: magic, version, type, varint count, [callsign dictionary], records.
+ * A tracking record is written in a fixed field order: flags, ICAO (int32), latitude and
+ * longitude (int32 scaled by 1E7), zigzag varints for altitude, velocity, heading and
+ * vertical rate, varint lastTimeSeen and a callsign dictionary reference, followed by the
+ * optional recordDate (delta to lastTimeSeen), id and source receiver id.
+ */
+public class BinaryRecordCodec implements BinaryRecordFormat {
+
+    public BinaryRecordCodec() {
+    }
+
+    public byte[] encodeTrackingRecords(Collection<TrackingRecord> records) {
+        Writer out = new Writer(16 + records.size() * 40);
+        out.header(TYPE_TRACKING_RECORD, records.size());
+        Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        List<String> callsigns = new ArrayList<String>();
+        records.forEach(record -> {
+            String flight = record.getFlight();
+            if (flight != null && !dictionary.containsKey(flight)) {
+                dictionary.put(flight, callsigns.size());
+                callsigns.add(flight);
+            }
+        });
+        out.writeVarLong(callsigns.size());
+        callsigns.forEach(out::writeString);
+        for (TrackingRecord record : records) {
+            int flags = optionalFlags(record.getId(), record.getRecordDate(), record.getSourceReceiverID());
+            out.writeByte(flags);
+            out.writeInt(record.getAddressICAO());
+            out.writeInt(scaleLatLon(record.getLatitude()));
+            out.writeInt(scaleLatLon(record.getLongitude()));
+            out.writeZigZag(record.getAltitude());
+            out.writeZigZag(record.getVelocity());
+            out.writeZigZag(record.getHeading());
+            out.writeZigZag(record.getVerticalRate());
+            out.writeZigZag(record.getLastTimeSeen());
+            out.writeVarLong(record.getFlight() == null ? 0 : dictionary.get(record.getFlight()) + 1);
+            writeOptionalFields(out, flags, record.getLastTimeSeen(), record.getId(),
+                    record.getRecordDate(), record.getSourceReceiverID());
+        }
+        return out.toByteArray();
+    }
+
+    public List<TrackingRecord> decodeTrackingRecords(byte[] data) {
+        Reader in = new Reader(data);
+        int count = in.header(TYPE_TRACKING_RECORD);
+        String[] callsigns = new String[in.readCount()];
+        for (int i = 0; i < callsigns.length; i++) {
+            callsigns[i] = in.readString();
+        }
+        List<TrackingRecord> records = new ArrayList<TrackingRecord>(count);
+        for (int i = 0; i < count; i++) {
+            TrackingRecord record = new TrackingRecord();
+            int flags = in.readByte();
+            record.setAddressICAO(in.readInt());
+            record.setLatitude(unscaleLatLon(in.readInt()));
+            record.setLongitude(unscaleLatLon(in.readInt()));
+            record.setAltitude((int) in.readZigZag());
+            record.setVelocity((int) in.readZigZag());
+            record.setHeading((int) in.readZigZag());
+            record.setVerticalRate((int) in.readZigZag());
+            record.setLastTimeSeen(in.readZigZag());
+            int flight = in.readCount();
+            record.setFlight(flight == 0 ? null : callsigns[flight - 1]);
+            if ((flags & FLAG_RECORD_DATE) != 0)
+                record.setRecordDate(new Date(record.getLastTimeSeen() + in.readZigZag()));
+            if ((flags & FLAG_ID) != 0)
+                record.setId(in.readBigInteger());
+            record.setSourceReceiverID((flags & FLAG_SOURCE_RECEIVER_ID) != 0 ? in.readZigZag() : null);
+            records.add(record);
+        }
+        return records;
+    }
+
+    public byte[] encodeVelocityUpdates(Collection<VelocityUpdate> updates) {
+        Writer out = new Writer(16 + updates.size() * 32);
+        out.header(TYPE_VELOCITY_UPDATE, updates.size());
+        for (VelocityUpdate update : updates) {
+            int flags = optionalFlags(update.getId(), update.getRecordDate(), update.getSourceReceiverID());
+            if (update.isApplied())
+                flags |= FLAG_APPLIED;
+            out.writeByte(flags);
+            out.writeInt(update.getAddressICAO());
+            out.writeZigZag(update.getVelocity());
+            out.writeZigZag(update.getHeading());
+            out.writeZigZag(update.getVerticalRate());
+            out.writeZigZag(update.getLastTimeSeen());
+            writeOptionalFields(out, flags, update.getLastTimeSeen(), update.getId(),
+                    update.getRecordDate(), update.getSourceReceiverID());
+        }
+        return out.toByteArray();
+    }
+
+    public List<VelocityUpdate> decodeVelocityUpdates(byte[] data) {
+        Reader in = new Reader(data);
+        int count = in.header(TYPE_VELOCITY_UPDATE);
+        List<VelocityUpdate> updates = new ArrayList<VelocityUpdate>(count);
+        for (int i = 0; i < count; i++) {
+            VelocityUpdate update = new VelocityUpdate();
+            int flags = in.readByte();
+            update.setApplied((flags & FLAG_APPLIED) != 0);
+            update.setAddressICAO(in.readInt());
+            update.setVelocity((int) in.readZigZag());
+            update.setHeading((int) in.readZigZag());
+            update.setVerticalRate((int) in.readZigZag());
+            update.setLastTimeSeen(in.readZigZag());
+            if ((flags & FLAG_RECORD_DATE) != 0)
+                update.setRecordDate(new Date(update.getLastTimeSeen() + in.readZigZag()));
+            if ((flags & FLAG_ID) != 0)
+                update.setId(in.readBigInteger());
+            update.setSourceReceiverID((flags & FLAG_SOURCE_RECEIVER_ID) != 0 ? in.readZigZag() : null);
+            updates.add(update);
+        }
+        return updates;
+    }
+
+    private int optionalFlags(BigInteger id, Date recordDate, Long sourceReceiverID) {
+        int flags = 0;
+        if (id != null) flags |= FLAG_ID;
+        if (recordDate != null) flags |= FLAG_RECORD_DATE;
+        if (sourceReceiverID != null) flags |= FLAG_SOURCE_RECEIVER_ID;
+        return flags;
+    }
+
+    private void writeOptionalFields(Writer out, int flags, long lastTimeSeen, BigInteger id, Date recordDate, Long sourceReceiverID) {
+        if ((flags & FLAG_RECORD_DATE) != 0)
+            out.writeZigZag(recordDate.getTime() - lastTimeSeen);
+        if ((flags & FLAG_ID) != 0)
+            out.writeBytes(id.toByteArray());
+        if ((flags & FLAG_SOURCE_RECEIVER_ID) != 0)
+            out.writeZigZag(sourceReceiverID);
+    }
+
+    private static int scaleLatLon(double degree) {
+        return (int) Math.round(degree * LAT_LON_SCALE);
+    }
+
+    private static double unscaleLatLon(int scaled) {
+        return scaled / (double) LAT_LON_SCALE;
+    }
+
+    private static class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+            this.pos = 0;
+        }
+
+        void header(byte type, int count) {
+            writeByte(MAGIC);
+            writeByte(VERSION_1);
+            writeByte(type);
+            writeVarLong(count);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0L) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeZigZag(long v) {
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeString(String s) {
+            writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+            this.pos = 0;
+        }
+
+        int header(byte expectedType) {
+            if (readByte() != (MAGIC & 0xFF))
+                throw new IllegalArgumentException("Not a binary record frame");
+            int version = readByte();
+            if (version != VERSION_1)
+                throw new IllegalArgumentException(String.format("Unsupported binary record version: %d", version));
+            int type = readByte();
+            if (type != expectedType)
+                throw new IllegalArgumentException(String.format("Unexpected binary record type: %d", type));
+            return readCount();
+        }
+
+        int readByte() {
+            check(1);
+            return buf[pos++] & 0xFF;
+        }
+
+        int readInt() {
+            check(4);
+            int v = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16)
+                  | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+            pos += 4;
+            return v;
+        }
+
+        long readVarLong() {
+            long v = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readCount() {
+            long v = readVarLong();
+            if (v < 0 || v > buf.length)
+                throw new IllegalArgumentException(String.format("Invalid length: %d", v));
+            return (int) v;
+        }
+
+        long readZigZag() {
+            long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        BigInteger readBigInteger() {
+            int len = readCount();
+            check(len);
+            BigInteger v = new BigInteger(buf, pos, len);
+            pos += len;
+            return v;
+        }
+
+        String readString() {
+            int len = readCount();
+            check(len);
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        private void check(int n) {
+            if (pos + n > buf.length)
+                throw new IllegalArgumentException("Truncated binary record frame");
+        }
+    }
+}
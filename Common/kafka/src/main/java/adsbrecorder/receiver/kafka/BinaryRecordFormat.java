@@ -0,0 +1,29 @@
+package adsbrecorder.receiver.kafka;
+
+public interface BinaryRecordFormat {
+
+    String MEDIA_TYPE = "application/x-adsb-record";
+
+    /**
+     * Producer property listing the topics (comma separated) whose values are written in the binary format,
+     * topics not listed here keep the JSON format. Deserializers accept both formats.
+     */
+    String BINARY_TOPICS_CONFIG = "adsbrecorder.binary.topics";
+
+    byte MAGIC = (byte) 0xAB;
+    byte VERSION_1 = 1;
+
+    byte TYPE_TRACKING_RECORD = 1;
+    byte TYPE_VELOCITY_UPDATE = 2;
+
+    int LAT_LON_SCALE = 10000000;
+
+    int FLAG_ID = 1;
+    int FLAG_RECORD_DATE = 1 << 1;
+    int FLAG_SOURCE_RECEIVER_ID = 1 << 2;
+    int FLAG_APPLIED = 1 << 3;
+
+    static boolean isBinaryRecord(byte[] data) {
+        return data != null && data.length > 2 && data[0] == MAGIC;
+    }
+}
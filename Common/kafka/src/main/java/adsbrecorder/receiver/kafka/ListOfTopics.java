@@ -4,4 +4,6 @@ public interface ListOfTopics {
 
     String INTERLEAVING_RECORDS = "InterleavingRecords";
     String REALTIME_DATA = "RealtimeData";
+    String VELOCITY_DATA = "VelocityData";
+    String PRINCIPAL_INVALIDATION = "PrincipalInvalidation";
 }
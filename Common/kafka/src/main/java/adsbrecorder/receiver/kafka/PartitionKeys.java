@@ -0,0 +1,38 @@
+package adsbrecorder.receiver.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.utils.Utils;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Keys of the messages on the ICAO partitioned topics, all data of one aircraft goes to the same partition
+ * so it is consumed in order
+ */
+public final class PartitionKeys {
+
+    private PartitionKeys() {
+    }
+
+    public static String of(TrackingRecord record) {
+        return String.valueOf(record.getAddressICAO());
+    }
+
+    /**
+     * Same key as the records of the aircraft, with equal partition counts both topics put an aircraft
+     * on the same partition number
+     */
+    public static String of(VelocityUpdate update) {
+        return String.valueOf(update.getAddressICAO());
+    }
+
+    /**
+     * Partition of an aircraft as chosen by the default Kafka partitioner for its key
+     */
+    public static int partitionOf(int addressICAO, int partitions) {
+        byte[] key = String.valueOf(addressICAO).getBytes(StandardCharsets.UTF_8);
+        return Utils.toPositive(Utils.murmur2(key)) % partitions;
+    }
+}
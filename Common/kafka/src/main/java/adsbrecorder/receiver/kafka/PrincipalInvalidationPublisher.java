@@ -0,0 +1,26 @@
+package adsbrecorder.receiver.kafka;
+
+import static java.util.Objects.requireNonNull;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import adsbrecorder.common.auth.PrincipalChangedEvent;
+
+/**
+ * Forwards principal changes to the other services, the record key is the principal type and the value its name.
+ * Declare it as a bean in services that publish {@link PrincipalChangedEvent}.
+ */
+public class PrincipalInvalidationPublisher implements ListOfTopics {
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    public PrincipalInvalidationPublisher(KafkaTemplate<String, String> kafkaTemplate) {
+        this.kafkaTemplate = requireNonNull(kafkaTemplate);
+    }
+
+    @EventListener
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        kafkaTemplate.send(PRINCIPAL_INVALIDATION, event.getPrincipalType(), event.getPrincipalName());
+    }
+}
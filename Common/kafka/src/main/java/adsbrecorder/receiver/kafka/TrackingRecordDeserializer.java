@@ -1,5 +1,6 @@
 package adsbrecorder.receiver.kafka;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.common.serialization.Deserializer;
@@ -8,9 +9,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import adsbrecorder.receiver.entity.TrackingRecord;
 
-public class TrackingRecordDeserializer implements Deserializer<TrackingRecord> {
+public class TrackingRecordDeserializer implements Deserializer<TrackingRecord>, BinaryRecordFormat {
+
+    private final ObjectMapper objectMapper;
+    private final BinaryRecordCodec binaryRecordCodec;
 
     public TrackingRecordDeserializer() {
+        this.objectMapper = new ObjectMapper();
+        this.binaryRecordCodec = new BinaryRecordCodec();
     }
 
     @Override
@@ -19,9 +25,12 @@ public class TrackingRecordDeserializer implements Deserializer<TrackingRecord>
 
     @Override
     public TrackingRecord deserialize(String topic, byte[] data) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.readValue(data, TrackingRecord.class);
+            if (BinaryRecordFormat.isBinaryRecord(data)) {
+                List<TrackingRecord> records = binaryRecordCodec.decodeTrackingRecords(data);
+                return records.isEmpty() ? null : records.get(0);
+            }
+            return objectMapper.readValue(data, TrackingRecord.class);
         } catch (Exception e) {
             System.err.println("TrackingRecordDeserializer error: " + e.getMessage());
             e.printStackTrace();
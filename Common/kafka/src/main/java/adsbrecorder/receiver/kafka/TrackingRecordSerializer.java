@@ -1,6 +1,11 @@
 package adsbrecorder.receiver.kafka;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.kafka.common.serialization.Serializer;
 
@@ -8,21 +13,41 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import adsbrecorder.receiver.entity.TrackingRecord;
 
-public class TrackingRecordSerializer implements Serializer<TrackingRecord> {
+public class TrackingRecordSerializer implements Serializer<TrackingRecord>, BinaryRecordFormat {
+
+    private final ObjectMapper objectMapper;
+    private final BinaryRecordCodec binaryRecordCodec;
+    private Set<String> binaryTopics;
 
     public TrackingRecordSerializer() {
+        this.objectMapper = new ObjectMapper();
+        this.binaryRecordCodec = new BinaryRecordCodec();
+        this.binaryTopics = Set.of();
     }
 
     @Override
     public void configure(Map<String, ?> configs, boolean isKey) {
+        Object topics = configs.get(BINARY_TOPICS_CONFIG);
+        Stream<String> names = Stream.empty();
+        if (topics instanceof String) {
+            names = Stream.of(((String) topics).split(","));
+        } else if (topics instanceof Collection) {
+            names = ((Collection<?>) topics).stream().map(String::valueOf);
+        }
+        this.binaryTopics = names.map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     @Override
     public byte[] serialize(String topic, TrackingRecord data) {
         byte[] retVal = null;
-        ObjectMapper objectMapper = new ObjectMapper();
         try {
-            retVal = objectMapper.writeValueAsString(data).getBytes();
+            if (topic != null && binaryTopics.contains(topic)) {
+                retVal = binaryRecordCodec.encodeTrackingRecords(List.of(data));
+            } else {
+                retVal = objectMapper.writeValueAsBytes(data);
+            }
         } catch (Exception e) {
             System.err.println("TrackingRecordSerializer error: " + e.getMessage());
             e.printStackTrace();
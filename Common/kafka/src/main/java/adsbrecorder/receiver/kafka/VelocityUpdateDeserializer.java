@@ -0,0 +1,44 @@
+package adsbrecorder.receiver.kafka;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public class VelocityUpdateDeserializer implements Deserializer<VelocityUpdate>, BinaryRecordFormat {
+
+    private final ObjectMapper objectMapper;
+    private final BinaryRecordCodec binaryRecordCodec;
+
+    public VelocityUpdateDeserializer() {
+        this.objectMapper = new ObjectMapper();
+        this.binaryRecordCodec = new BinaryRecordCodec();
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public VelocityUpdate deserialize(String topic, byte[] data) {
+        try {
+            if (BinaryRecordFormat.isBinaryRecord(data)) {
+                List<VelocityUpdate> updates = binaryRecordCodec.decodeVelocityUpdates(data);
+                return updates.isEmpty() ? null : updates.get(0);
+            }
+            return objectMapper.readValue(data, VelocityUpdate.class);
+        } catch (Exception e) {
+            System.err.println("VelocityUpdateDeserializer error: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,158 @@
+package adsbrecorder.receiver.kafka.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.kafka.BinaryRecordCodec;
+import adsbrecorder.receiver.kafka.BinaryRecordFormat;
+import adsbrecorder.receiver.kafka.TrackingRecordDeserializer;
+import adsbrecorder.receiver.kafka.TrackingRecordSerializer;
+
+public class TestBinaryRecordCodec {
+
+    private Random random = new Random();
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private BinaryRecordCodec codec = new BinaryRecordCodec();
+
+    @Test
+    public void testCompatibleWithJson() throws Exception {
+        final String[] callsigns = {"QFA12", "VOZ842", null};
+        List<TrackingRecord> records = IntStream.range(0, 50)
+                .mapToObj(i -> testDataTrackingRecord(random.nextInt(0xFFFFFF), callsigns[i % callsigns.length]))
+                .collect(Collectors.toList());
+        byte[] json = objectMapper.writeValueAsBytes(records);
+        byte[] binary = codec.encodeTrackingRecords(records);
+        assertTrue(binary.length * 4 < json.length,
+                String.format("binary=%d bytes, json=%d bytes", binary.length, json.length));
+        List<TrackingRecord> restored = codec.decodeTrackingRecords(binary);
+        assertEquals(records.size(), restored.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquivalent(records.get(i), restored.get(i));
+            // the decoded record must produce the same JSON document, apart from lat/lon precision
+            Map<?, ?> expected = objectMapper.readValue(objectMapper.writeValueAsBytes(records.get(i)), Map.class);
+            Map<?, ?> actual = objectMapper.readValue(objectMapper.writeValueAsBytes(restored.get(i)), Map.class);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Object key : expected.keySet()) {
+                if ("latitude".equals(key) || "longitude".equals(key))
+                    continue;
+                assertEquals(expected.get(key), actual.get(key), String.valueOf(key));
+            }
+        }
+    }
+
+    @Test
+    public void testReceiverJsonPayload() throws Exception {
+        // shape of the payload posted by tools/ADSBClient
+        String json = "{\"recordID\": null, \"addressICAO\": 8129108, \"flight\": \"JST501\", \"latitude\": -37.659, "
+                + "\"longitude\": 144.8301, \"altitude\": 3025, \"velocity\": 182, \"heading\": 166, \"verticalRate\": 1408, "
+                + "\"lastTimeSeen\": 1564300800123, \"recordDate\": 1564300800123, \"sourceReceiver\": null, \"sourceReceiverID\": null}";
+        TrackingRecord record = objectMapper.copy()
+                .configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(json, TrackingRecord.class);
+        TrackingRecord restored = codec.decodeTrackingRecords(codec.encodeTrackingRecords(List.of(record))).get(0);
+        assertEquivalent(record, restored);
+        assertEquals(-37.659, restored.getLatitude());
+        assertEquals(144.8301, restored.getLongitude());
+        assertNull(restored.getId());
+        assertNull(restored.getSourceReceiverID());
+    }
+
+    @Test
+    public void testVelocityUpdates() {
+        List<VelocityUpdate> updates = IntStream.range(0, 20)
+                .mapToObj(i -> testDataVelocityUpdate(random.nextInt(0xFFFFFF)))
+                .collect(Collectors.toList());
+        List<VelocityUpdate> restored = codec.decodeVelocityUpdates(codec.encodeVelocityUpdates(updates));
+        assertEquals(updates, restored);
+    }
+
+    @Test
+    public void testSerializerPerTopic() {
+        final String binaryTopic = "BinaryTopic";
+        TrackingRecordSerializer serializer = new TrackingRecordSerializer();
+        serializer.configure(Map.of(BinaryRecordFormat.BINARY_TOPICS_CONFIG, " " + binaryTopic + " ,Other"), false);
+        TrackingRecordDeserializer deserializer = new TrackingRecordDeserializer();
+        TrackingRecord record = testDataTrackingRecord(0x7C1234, "QFA1");
+        byte[] binary = serializer.serialize(binaryTopic, record);
+        byte[] json = serializer.serialize("JsonTopic", record);
+        assertTrue(BinaryRecordFormat.isBinaryRecord(binary));
+        assertEquals('{', json[0]);
+        assertEquivalent(record, deserializer.deserialize(binaryTopic, binary));
+        assertEquals(record, deserializer.deserialize("JsonTopic", json));
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Test
+    public void testRejectMalformedFrames() {
+        byte[] binary = codec.encodeTrackingRecords(List.of(testDataTrackingRecord(1, "A")));
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeTrackingRecords(
+                java.util.Arrays.copyOf(binary, binary.length - 3)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeVelocityUpdates(binary));
+    }
+
+    private void assertEquivalent(TrackingRecord expected, TrackingRecord actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getAddressICAO(), actual.getAddressICAO());
+        assertEquals(expected.getFlight(), actual.getFlight());
+        assertEquals(expected.getLatitude(), actual.getLatitude(), 1E-7);
+        assertEquals(expected.getLongitude(), actual.getLongitude(), 1E-7);
+        assertEquals(expected.getAltitude(), actual.getAltitude());
+        assertEquals(expected.getVelocity(), actual.getVelocity());
+        assertEquals(expected.getHeading(), actual.getHeading());
+        assertEquals(expected.getVerticalRate(), actual.getVerticalRate());
+        assertEquals(expected.getLastTimeSeen(), actual.getLastTimeSeen());
+        assertEquals(expected.getRecordDate(), actual.getRecordDate());
+        assertEquals(expected.getSourceReceiverID(), actual.getSourceReceiverID());
+    }
+
+    private TrackingRecord testDataTrackingRecord(int icao, String callsign) {
+        TrackingRecord tr = new TrackingRecord();
+        tr.setAddressICAO(icao);
+        tr.setFlight(callsign);
+        tr.setId(new BigInteger(new ObjectId().toHexString(), 16));
+        tr.setAltitude(random.nextInt(40000));
+        tr.setHeading(random.nextInt(360));
+        tr.setVelocity(random.nextInt(500));
+        tr.setVerticalRate(random.nextInt(4000) - 2000);
+        tr.setLatitude(random.nextDouble() * 180.0 - 90.0);
+        tr.setLongitude(random.nextDouble() * 360.0 - 180.0);
+        long date = System.currentTimeMillis() - 1000 * 3600 * (random.nextInt(24) + 1);
+        tr.setLastTimeSeen(date);
+        tr.setRecordDate(new Date(date + random.nextInt(50)));
+        tr.setSourceReceiverID((long) random.nextInt(100));
+        return tr;
+    }
+
+    private VelocityUpdate testDataVelocityUpdate(int icao) {
+        VelocityUpdate vu = new VelocityUpdate();
+        vu.setAddressICAO(icao);
+        vu.setId(new BigInteger(new ObjectId().toHexString(), 16));
+        vu.setApplied(random.nextBoolean());
+        vu.setHeading(random.nextInt(360));
+        vu.setVelocity(random.nextInt(500));
+        vu.setVerticalRate(random.nextInt(4000) - 2000);
+        long date = System.currentTimeMillis() - random.nextInt(100000);
+        vu.setLastTimeSeen(date);
+        vu.setRecordDate(new Date(date));
+        vu.setSourceReceiverID(random.nextBoolean() ? null : (long) random.nextInt(100));
+        return vu;
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.math.BigInteger;
 import java.util.Date;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.IntStream;
 
@@ -11,8 +12,12 @@ import org.apache.commons.lang.RandomStringUtils;
 import org.junit.jupiter.api.Test;
 
 import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.kafka.BinaryRecordFormat;
 import adsbrecorder.receiver.kafka.TrackingRecordDeserializer;
 import adsbrecorder.receiver.kafka.TrackingRecordSerializer;
+import adsbrecorder.receiver.kafka.VelocityUpdateDeserializer;
+import adsbrecorder.receiver.kafka.VelocityUpdateSerializer;
 
 public class TestSerializer {
 
@@ -35,6 +40,27 @@ public class TestSerializer {
         deserializer.close();
     }
 
+    @Test
+    public void testVelocityUpdateSerializerDeSerializer() {
+        final VelocityUpdateSerializer serializer = new VelocityUpdateSerializer();
+        serializer.configure(Map.of(BinaryRecordFormat.BINARY_TOPICS_CONFIG, "binary"), false);
+        final VelocityUpdateDeserializer deserializer = new VelocityUpdateDeserializer();
+        IntStream.range(0, 10).forEach(i -> {
+            VelocityUpdate update = new VelocityUpdate();
+            update.setAddressICAO(Math.abs(random.nextInt()) + i);
+            update.setId(BigInteger.valueOf(random.nextLong()));
+            update.setHeading(random.nextInt(360));
+            update.setVelocity(random.nextInt(500));
+            update.setVerticalRate(random.nextInt(1000) - 500);
+            update.setLastTimeSeen(System.currentTimeMillis() - random.nextInt(3600000));
+            update.setApplied(random.nextBoolean());
+            assertEquals(update, deserializer.deserialize("json", serializer.serialize("json", update)));
+            assertEquals(update, deserializer.deserialize("binary", serializer.serialize("binary", update)));
+        });
+        serializer.close();
+        deserializer.close();
+    }
+
     private TrackingRecord testDataTrackingRecord(int icao, String callsign) {
         TrackingRecord tr = new TrackingRecord();
         tr.setAddressICAO(icao);
@@ -0,0 +1,206 @@
+package adsbrecorder.modes;
+
+import java.util.Arrays;
+
+/**
+ * Per-aircraft decoder state in parallel primitive arrays, open addressing with linear probing on the ICAO address.
+ * Not thread safe.
+ */
+class AircraftStateTable {
+
+    final static int NO_ALTITUDE = Integer.MIN_VALUE;
+
+    private final static int EMPTY = 0;
+
+    int mask;
+    int size;
+    int[] keys;
+    long[] lastSeen;
+    int[] evenLat, evenLon, oddLat, oddLon;
+    long[] evenTime, oddTime;
+    double[] latitude, longitude;
+    long[] positionTime;
+    int[] altitude, velocity, heading, verticalRate;
+    String[] callsign;
+
+    AircraftStateTable(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) * 2 - 1);
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        mask = capacity - 1;
+        keys = new int[capacity];
+        lastSeen = new long[capacity];
+        evenLat = new int[capacity];
+        evenLon = new int[capacity];
+        oddLat = new int[capacity];
+        oddLon = new int[capacity];
+        evenTime = new long[capacity];
+        oddTime = new long[capacity];
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        positionTime = new long[capacity];
+        altitude = new int[capacity];
+        velocity = new int[capacity];
+        heading = new int[capacity];
+        verticalRate = new int[capacity];
+        callsign = new String[capacity];
+    }
+
+    private static int hash(int icao) {
+        int h = icao * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return slot of the aircraft, a new slot is initialised if the aircraft is unknown
+     */
+    int slot(int icao, long now) {
+        final int key = icao + 1;
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                lastSeen[i] = now;
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            return slot(icao, now);
+        }
+        keys[i] = key;
+        lastSeen[i] = now;
+        clear(i);
+        size++;
+        return i;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Forget aircraft not seen within maxAge
+     */
+    void expire(long now, long maxAge) {
+        int i = 0;
+        while (i < keys.length) {
+            if (keys[i] != EMPTY && now - lastSeen[i] > maxAge) {
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private void clear(int i) {
+        evenTime[i] = 0L;
+        oddTime[i] = 0L;
+        positionTime[i] = 0L;
+        altitude[i] = NO_ALTITUDE;
+        velocity[i] = 0;
+        heading[i] = 0;
+        verticalRate[i] = 0;
+        callsign[i] = null;
+    }
+
+    // backward shift deletion keeps probe sequences intact without tombstones
+    private void remove(int i) {
+        size--;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY)
+                break;
+            int home = hash(keys[j]) & mask;
+            if (i <= j ? (i < home && home <= j) : (i < home || home <= j))
+                continue;
+            move(j, i);
+            i = j;
+        }
+        keys[i] = EMPTY;
+        callsign[i] = null;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        lastSeen[to] = lastSeen[from];
+        evenLat[to] = evenLat[from];
+        evenLon[to] = evenLon[from];
+        oddLat[to] = oddLat[from];
+        oddLon[to] = oddLon[from];
+        evenTime[to] = evenTime[from];
+        oddTime[to] = oddTime[from];
+        latitude[to] = latitude[from];
+        longitude[to] = longitude[from];
+        positionTime[to] = positionTime[from];
+        altitude[to] = altitude[from];
+        velocity[to] = velocity[from];
+        heading[to] = heading[from];
+        verticalRate[to] = verticalRate[from];
+        callsign[to] = callsign[from];
+    }
+
+    private void grow() {
+        AircraftStateTable old = new AircraftStateTable(0);
+        old.copyArraysFrom(this);
+        allocate(keys.length * 2);
+        size = 0;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] == EMPTY)
+                continue;
+            int to = hash(old.keys[i]) & mask;
+            while (keys[to] != EMPTY)
+                to = (to + 1) & mask;
+            keys[to] = old.keys[i];
+            copySlot(old, i, to);
+            size++;
+        }
+    }
+
+    private void copyArraysFrom(AircraftStateTable other) {
+        mask = other.mask;
+        keys = other.keys;
+        lastSeen = other.lastSeen;
+        evenLat = other.evenLat;
+        evenLon = other.evenLon;
+        oddLat = other.oddLat;
+        oddLon = other.oddLon;
+        evenTime = other.evenTime;
+        oddTime = other.oddTime;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        positionTime = other.positionTime;
+        altitude = other.altitude;
+        velocity = other.velocity;
+        heading = other.heading;
+        verticalRate = other.verticalRate;
+        callsign = other.callsign;
+    }
+
+    private void copySlot(AircraftStateTable from, int i, int to) {
+        lastSeen[to] = from.lastSeen[i];
+        evenLat[to] = from.evenLat[i];
+        evenLon[to] = from.evenLon[i];
+        oddLat[to] = from.oddLat[i];
+        oddLon[to] = from.oddLon[i];
+        evenTime[to] = from.evenTime[i];
+        oddTime[to] = from.oddTime[i];
+        latitude[to] = from.latitude[i];
+        longitude[to] = from.longitude[i];
+        positionTime[to] = from.positionTime[i];
+        altitude[to] = from.altitude[i];
+        velocity[to] = from.velocity[i];
+        heading[to] = from.heading[i];
+        verticalRate[to] = from.verticalRate[i];
+        callsign[to] = from.callsign[i];
+    }
+
+    void clearAll() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(callsign, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,74 @@
+package adsbrecorder.modes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Incremental parser for the Beast binary output format:
+ * 0x1A, type ('1' Mode A/C, '2' Mode S short, '3' Mode S long), 6 byte MLAT timestamp, 1 byte signal level, frame.
+ * 0x1A inside a message is escaped by doubling it. Bytes may arrive split at any position.
+ */
+public class BeastFrameReader {
+
+    private final static byte ESCAPE = 0x1A;
+    private final static int HEADER_BYTES = 7;
+
+    private final ModeSDecoder decoder;
+    private final byte[] message;
+    private int expected;
+    private int received;
+    private boolean escaped;
+
+    public BeastFrameReader(ModeSDecoder decoder) {
+        this.decoder = requireNonNull(decoder);
+        this.message = new byte[HEADER_BYTES + ModeSDecoder.LONG_FRAME_BYTES];
+        this.expected = 0;
+    }
+
+    /**
+     * @return number of Mode S long frames handed to the decoder
+     */
+    public int read(byte[] data, int offset, int length, long now) {
+        int frames = 0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final byte b = data[i];
+            if (b == ESCAPE && !escaped) {
+                escaped = true;
+                continue;
+            }
+            if (escaped) {
+                escaped = false;
+                if (b != ESCAPE) {
+                    // start of a new message, an unfinished one is dropped
+                    expected = frameLength(b);
+                    received = 0;
+                    continue;
+                }
+            }
+            if (expected == 0)
+                continue;
+            message[received++] = b;
+            if (received == expected) {
+                if (expected == message.length) {
+                    decoder.decodeFrame(message, HEADER_BYTES, ModeSDecoder.LONG_FRAME_BYTES, now);
+                    frames++;
+                }
+                expected = 0;
+            }
+        }
+        return frames;
+    }
+
+    private static int frameLength(byte type) {
+        switch (type) {
+        case '1':
+            return HEADER_BYTES + 2;
+        case '2':
+            return HEADER_BYTES + ModeSDecoder.SHORT_FRAME_BYTES;
+        case '3':
+            return HEADER_BYTES + ModeSDecoder.LONG_FRAME_BYTES;
+        default:
+            return 0;
+        }
+    }
+}
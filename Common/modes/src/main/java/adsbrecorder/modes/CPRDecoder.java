@@ -0,0 +1,103 @@
+package adsbrecorder.modes;
+
+/**
+ * Compact Position Reporting decoding for airborne position messages, see ICAO Doc 9871 C.2.6
+ */
+public final class CPRDecoder {
+
+    private final static int NZ = 15;
+    private final static double CPR_MAX = 131072.0;
+    private final static double D_LAT_EVEN = 360.0 / (4 * NZ);
+    private final static double D_LAT_ODD = 360.0 / (4 * NZ - 1);
+
+    /** NL_TRANSITIONS[n] is the lowest latitude at which NL drops below n */
+    private final static double[] NL_TRANSITIONS = new double[60];
+
+    static {
+        final double a = 1.0 - Math.cos(Math.PI / (2 * NZ));
+        for (int n = 2; n < 60; n++) {
+            NL_TRANSITIONS[n] = Math.toDegrees(Math.acos(Math.sqrt(a / (1.0 - Math.cos(2 * Math.PI / n)))));
+        }
+    }
+
+    private CPRDecoder() {
+    }
+
+    /**
+     * Number of longitude zones at the given latitude
+     */
+    public static int NL(double lat) {
+        lat = Math.abs(lat);
+        if (lat >= 87.0)
+            return 1;
+        int n = 59;
+        while (n > 1 && lat >= NL_TRANSITIONS[n])
+            n--;
+        return n;
+    }
+
+    /**
+     * Globally unambiguous decoding from an even and an odd message
+     * @param result result[0] = latitude, result[1] = longitude
+     * @param oddIsNewer whether the odd message is the most recent one
+     * @return false if the two messages are in different longitude zones
+     */
+    public static boolean decodeGlobal(int evenLat, int evenLon, int oddLat, int oddLon, boolean oddIsNewer, double[] result) {
+        final double latE = evenLat / CPR_MAX;
+        final double lonE = evenLon / CPR_MAX;
+        final double latO = oddLat / CPR_MAX;
+        final double lonO = oddLon / CPR_MAX;
+
+        final int j = (int) Math.floor(59 * latE - 60 * latO + 0.5);
+        double rlatE = D_LAT_EVEN * (mod(j, 60) + latE);
+        double rlatO = D_LAT_ODD * (mod(j, 59) + latO);
+        if (rlatE >= 270.0)
+            rlatE -= 360.0;
+        if (rlatO >= 270.0)
+            rlatO -= 360.0;
+        if (rlatE < -90.0 || rlatE > 90.0 || rlatO < -90.0 || rlatO > 90.0)
+            return false;
+        final int nl = NL(rlatE);
+        if (nl != NL(rlatO))
+            return false;
+
+        final double rlat = oddIsNewer ? rlatO : rlatE;
+        final int ni = Math.max(oddIsNewer ? nl - 1 : nl, 1);
+        final int m = (int) Math.floor(lonE * (nl - 1) - lonO * nl + 0.5);
+        double rlon = (360.0 / ni) * (mod(m, ni) + (oddIsNewer ? lonO : lonE));
+        if (rlon >= 180.0)
+            rlon -= 360.0;
+        result[0] = rlat;
+        result[1] = rlon;
+        return true;
+    }
+
+    /**
+     * Locally unambiguous decoding of a single message against a reference position within 180 NM
+     * @param result result[0] = latitude, result[1] = longitude
+     */
+    public static void decodeLocal(int cprLat, int cprLon, boolean odd, double refLat, double refLon, double[] result) {
+        final double latC = cprLat / CPR_MAX;
+        final double lonC = cprLon / CPR_MAX;
+        final double dLat = odd ? D_LAT_ODD : D_LAT_EVEN;
+        final double j = Math.floor(refLat / dLat) + Math.floor(modDouble(refLat, dLat) / dLat - latC + 0.5);
+        final double rlat = dLat * (j + latC);
+        final double dLon = 360.0 / Math.max(NL(rlat) - (odd ? 1 : 0), 1);
+        final double m = Math.floor(refLon / dLon) + Math.floor(modDouble(refLon, dLon) / dLon - lonC + 0.5);
+        double rlon = dLon * (m + lonC);
+        if (rlon >= 180.0)
+            rlon -= 360.0;
+        result[0] = rlat;
+        result[1] = rlon;
+    }
+
+    private static int mod(int a, int b) {
+        int r = a % b;
+        return r < 0 ? r + b : r;
+    }
+
+    private static double modDouble(double a, double b) {
+        double r = a % b;
+        return r < 0 ? r + b : r;
+    }
+}
@@ -0,0 +1,44 @@
+package adsbrecorder.modes;
+
+/**
+ * Table driven Mode S CRC-24, generator polynomial 0xFFF409
+ */
+public final class ModeSCRC {
+
+    private final static int POLYNOMIAL = 0xFFF409;
+    private final static int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 16;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x800000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFFFF;
+        }
+    }
+
+    private ModeSCRC() {
+    }
+
+    /**
+     * @return CRC of the first length - 3 bytes of the message
+     */
+    public static int checksum(byte[] msg, int offset, int length) {
+        int crc = 0;
+        final int end = offset + length - 3;
+        for (int i = offset; i < end; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 16) ^ msg[i]) & 0xFF]) & 0xFFFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * @return checksum XOR the parity field, 0 for an undamaged DF17/DF18 message
+     */
+    public static int residual(byte[] msg, int offset, int length) {
+        final int end = offset + length;
+        int parity = ((msg[end - 3] & 0xFF) << 16) | ((msg[end - 2] & 0xFF) << 8) | (msg[end - 1] & 0xFF);
+        return checksum(msg, offset, length) ^ parity;
+    }
+}
@@ -0,0 +1,291 @@
+package adsbrecorder.modes;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Date;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Decodes DF17/DF18 extended squitter frames into tracking records and velocity updates.
+ * Frames are decoded in place, the only allocations are the emitted records and changed callsigns.
+ * Not thread safe, use one decoder per receiver.
+ */
+public class ModeSDecoder {
+
+    public final static int SHORT_FRAME_BYTES = 7;
+    public final static int LONG_FRAME_BYTES = 14;
+
+    private final static String CALLSIGN_CHARSET =
+            "#ABCDEFGHIJKLMNOPQRSTUVWXYZ##### ###############0123456789######";
+    private final static long CPR_PAIR_MAX_AGE = 10000L;
+    private final static long LOCAL_DECODE_MAX_AGE = 30000L;
+    private final static double FEET_PER_METER = 3.28084;
+
+    private final ModeSListener listener;
+    private final AircraftStateTable aircraft;
+    private final byte[] frame;
+    private final char[] callsignBuffer;
+    private final double[] position;
+
+    private boolean hasReference;
+    private double referenceLatitude;
+    private double referenceLongitude;
+
+    private long frames;
+    private long crcErrors;
+    private long positions;
+    private long velocities;
+
+    public ModeSDecoder(ModeSListener listener) {
+        this.listener = requireNonNull(listener);
+        this.aircraft = new AircraftStateTable(256);
+        this.frame = new byte[LONG_FRAME_BYTES];
+        this.callsignBuffer = new char[8];
+        this.position = new double[2];
+        this.hasReference = false;
+    }
+
+    /**
+     * Receiver location, allows decoding a single position message of an aircraft within 180 NM
+     */
+    public void setReferencePosition(double latitude, double longitude) {
+        this.referenceLatitude = latitude;
+        this.referenceLongitude = longitude;
+        this.hasReference = true;
+    }
+
+    /**
+     * Decode one line of AVR text output, "*8D4840D6202CC371C32CE0576098;" or with a "@" and 12 digit timestamp prefix
+     * @return whether the frame was a valid extended squitter
+     */
+    public boolean decodeAVR(CharSequence line, long now) {
+        int start = 0;
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1)))
+            end--;
+        if (end > 0 && line.charAt(end - 1) == ';')
+            end--;
+        if (end == 0)
+            return false;
+        char prefix = line.charAt(0);
+        if (prefix == '*' || prefix == ':') {
+            start = 1;
+        } else if (prefix == '@') {
+            start = 13;
+        } else {
+            return false;
+        }
+        final int digits = end - start;
+        if (digits != LONG_FRAME_BYTES * 2) {
+            frames++;
+            return false;
+        }
+        for (int i = 0; i < LONG_FRAME_BYTES; i++) {
+            int hi = Character.digit(line.charAt(start + i * 2), 16);
+            int lo = Character.digit(line.charAt(start + i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                frames++;
+                return false;
+            }
+            frame[i] = (byte) ((hi << 4) | lo);
+        }
+        return decodeFrame(frame, 0, LONG_FRAME_BYTES, now);
+    }
+
+    /**
+     * Decode one binary Mode S frame
+     * @return whether the frame was a valid extended squitter
+     */
+    public boolean decodeFrame(byte[] msg, int offset, int length, long now) {
+        frames++;
+        if (length != LONG_FRAME_BYTES)
+            return false;
+        final int df = (msg[offset] & 0xFF) >>> 3;
+        if (df != 17 && !(df == 18 && (msg[offset] & 0x07) == 0))
+            return false;
+        if (ModeSCRC.residual(msg, offset, length) != 0) {
+            crcErrors++;
+            return false;
+        }
+        final int icao = ((msg[offset + 1] & 0xFF) << 16) | ((msg[offset + 2] & 0xFF) << 8) | (msg[offset + 3] & 0xFF);
+        long me = 0L;
+        for (int i = 4; i < 11; i++) {
+            me = (me << 8) | (msg[offset + i] & 0xFF);
+        }
+        final int tc = (int) field(me, 1, 5);
+        final int slot = aircraft.slot(icao, now);
+        if (tc >= 1 && tc <= 4) {
+            decodeIdentification(me, slot);
+        } else if ((tc >= 9 && tc <= 18) || (tc >= 20 && tc <= 22)) {
+            decodeAirbornePosition(me, tc, icao, slot, now);
+        } else if (tc == 19) {
+            decodeVelocity(me, icao, slot, now);
+        }
+        return true;
+    }
+
+    /**
+     * Forget aircraft not heard from within maxAge milliseconds
+     */
+    public void expire(long now, long maxAge) {
+        aircraft.expire(now, maxAge);
+    }
+
+    public int getAircraftCount() {
+        return aircraft.size();
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getCrcErrors() {
+        return crcErrors;
+    }
+
+    public long getPositions() {
+        return positions;
+    }
+
+    public long getVelocities() {
+        return velocities;
+    }
+
+    // ME bits are numbered 1 to 56 from the most significant bit
+    private static long field(long me, int first, int last) {
+        return (me >>> (56 - last)) & ((1L << (last - first + 1)) - 1);
+    }
+
+    private void decodeIdentification(long me, int slot) {
+        int length = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = CALLSIGN_CHARSET.charAt((int) field(me, 9 + i * 6, 14 + i * 6));
+            callsignBuffer[i] = c;
+            if (c != ' ' && c != '#')
+                length = i + 1;
+        }
+        if (length == 0)
+            return;
+        String known = aircraft.callsign[slot];
+        if (known != null && known.length() == length) {
+            boolean same = true;
+            for (int i = 0; i < length && same; i++)
+                same = known.charAt(i) == callsignBuffer[i];
+            if (same)
+                return;
+        }
+        aircraft.callsign[slot] = new String(callsignBuffer, 0, length);
+    }
+
+    private void decodeAirbornePosition(long me, int tc, int icao, int slot, long now) {
+        final int alt = (int) field(me, 9, 20);
+        if (tc <= 18) {
+            // only 25 ft encoding, Gillham coded altitudes are left undecoded
+            if ((alt & 0x10) != 0) {
+                int n = ((alt & 0xFE0) >>> 1) | (alt & 0x0F);
+                aircraft.altitude[slot] = n * 25 - 1000;
+            }
+        } else if (alt != 0) {
+            aircraft.altitude[slot] = (int) Math.round(alt * FEET_PER_METER);
+        }
+        final boolean odd = field(me, 22, 22) == 1;
+        final int cprLat = (int) field(me, 23, 39);
+        final int cprLon = (int) field(me, 40, 56);
+        if (odd) {
+            aircraft.oddLat[slot] = cprLat;
+            aircraft.oddLon[slot] = cprLon;
+            aircraft.oddTime[slot] = now;
+        } else {
+            aircraft.evenLat[slot] = cprLat;
+            aircraft.evenLon[slot] = cprLon;
+            aircraft.evenTime[slot] = now;
+        }
+
+        boolean decoded = false;
+        if (aircraft.positionTime[slot] != 0L && now - aircraft.positionTime[slot] <= LOCAL_DECODE_MAX_AGE) {
+            CPRDecoder.decodeLocal(cprLat, cprLon, odd,
+                    aircraft.latitude[slot], aircraft.longitude[slot], position);
+            decoded = true;
+        } else if (aircraft.evenTime[slot] != 0L && aircraft.oddTime[slot] != 0L
+                && Math.abs(aircraft.evenTime[slot] - aircraft.oddTime[slot]) <= CPR_PAIR_MAX_AGE) {
+            decoded = CPRDecoder.decodeGlobal(aircraft.evenLat[slot], aircraft.evenLon[slot],
+                    aircraft.oddLat[slot], aircraft.oddLon[slot], odd, position);
+        } else if (hasReference) {
+            CPRDecoder.decodeLocal(cprLat, cprLon, odd, referenceLatitude, referenceLongitude, position);
+            decoded = true;
+        }
+        if (!decoded || aircraft.altitude[slot] == AircraftStateTable.NO_ALTITUDE)
+            return;
+        aircraft.latitude[slot] = position[0];
+        aircraft.longitude[slot] = position[1];
+        aircraft.positionTime[slot] = now;
+        positions++;
+        listener.onTrackingRecord(toTrackingRecord(icao, slot, now));
+    }
+
+    private void decodeVelocity(long me, int icao, int slot, long now) {
+        final int subtype = (int) field(me, 6, 8);
+        final int multiplier = (subtype == 2 || subtype == 4) ? 4 : 1;
+        int speed;
+        double track;
+        if (subtype == 1 || subtype == 2) {
+            int vew = (int) field(me, 15, 24);
+            int vns = (int) field(me, 26, 35);
+            if (vew == 0 || vns == 0)
+                return;
+            int vx = (vew - 1) * multiplier * (field(me, 14, 14) == 1 ? -1 : 1);
+            int vy = (vns - 1) * multiplier * (field(me, 25, 25) == 1 ? -1 : 1);
+            speed = (int) Math.round(Math.sqrt(vx * vx + vy * vy));
+            track = Math.toDegrees(Math.atan2(vx, vy));
+            if (track < 0.0)
+                track += 360.0;
+        } else if (subtype == 3 || subtype == 4) {
+            int airspeed = (int) field(me, 26, 35);
+            if (field(me, 14, 14) == 0 || airspeed == 0)
+                return;
+            speed = (airspeed - 1) * multiplier;
+            track = field(me, 15, 24) * 360.0 / 1024.0;
+        } else {
+            return;
+        }
+        int verticalRate = 0;
+        int vr = (int) field(me, 38, 46);
+        if (vr != 0)
+            verticalRate = (vr - 1) * 64 * (field(me, 37, 37) == 1 ? -1 : 1);
+
+        aircraft.velocity[slot] = speed;
+        aircraft.heading[slot] = (int) Math.round(track) % 360;
+        aircraft.verticalRate[slot] = verticalRate;
+        velocities++;
+        listener.onVelocityUpdate(toVelocityUpdate(icao, slot, now));
+    }
+
+    private TrackingRecord toTrackingRecord(int icao, int slot, long now) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setFlight(aircraft.callsign[slot]);
+        record.setLatitude(aircraft.latitude[slot]);
+        record.setLongitude(aircraft.longitude[slot]);
+        record.setAltitude(aircraft.altitude[slot]);
+        record.setVelocity(aircraft.velocity[slot]);
+        record.setHeading(aircraft.heading[slot]);
+        record.setVerticalRate(aircraft.verticalRate[slot]);
+        record.setLastTimeSeen(now);
+        record.setRecordDate(new Date(now));
+        return record;
+    }
+
+    private VelocityUpdate toVelocityUpdate(int icao, int slot, long now) {
+        VelocityUpdate update = new VelocityUpdate();
+        update.setAddressICAO(icao);
+        update.setVelocity(aircraft.velocity[slot]);
+        update.setHeading(aircraft.heading[slot]);
+        update.setVerticalRate(aircraft.verticalRate[slot]);
+        update.setLastTimeSeen(now);
+        update.setRecordDate(new Date(now));
+        update.setApplied(false);
+        return update;
+    }
+}
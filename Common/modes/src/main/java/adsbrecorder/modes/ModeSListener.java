@@ -0,0 +1,12 @@
+package adsbrecorder.modes;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public interface ModeSListener {
+
+    void onTrackingRecord(TrackingRecord record);
+
+    default void onVelocityUpdate(VelocityUpdate update) {
+    }
+}
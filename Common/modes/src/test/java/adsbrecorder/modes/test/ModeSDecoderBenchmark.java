@@ -0,0 +1,96 @@
+package adsbrecorder.modes.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import adsbrecorder.modes.BeastFrameReader;
+import adsbrecorder.modes.ModeSDecoder;
+import adsbrecorder.modes.ModeSListener;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Decoding throughput over the recorded frames in frames.avr, reported as frames per second.
+ * Run the main method with the test classpath, e.g. java -cp ... org.openjdk.jmh.Main ModeSDecoderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ModeSDecoderBenchmark.FRAMES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModeSDecoderBenchmark {
+
+    final static int FRAMES = 9600;
+
+    private String[] lines;
+    private byte[] beast;
+    private ModeSDecoder decoder;
+    private BeastFrameReader beastReader;
+    private long now;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        List<String> frames = TestModeSDecoder.readFrames();
+        lines = frames.toArray(new String[FRAMES]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String line : lines) {
+            byte[] frame = new byte[ModeSDecoder.LONG_FRAME_BYTES];
+            for (int i = 0; i < frame.length; i++)
+                frame[i] = (byte) Integer.parseInt(line.substring(1 + i * 2, 3 + i * 2), 16);
+            TestModeSDecoder.writeBeast(out, frame, '3');
+        }
+        beast = out.toByteArray();
+        decoder = new ModeSDecoder(new ModeSListener() {
+            @Override
+            public void onTrackingRecord(TrackingRecord record) {
+                blackhole.consume(record);
+            }
+            @Override
+            public void onVelocityUpdate(VelocityUpdate update) {
+                blackhole.consume(update);
+            }
+        });
+        beastReader = new BeastFrameReader(decoder);
+    }
+
+    @Benchmark
+    public long decodeAVR() {
+        for (String line : lines) {
+            decoder.decodeAVR(line, now);
+            now += 3;
+        }
+        return decoder.getPositions();
+    }
+
+    @Benchmark
+    public int decodeBeast() {
+        now += 30000;
+        return beastReader.read(beast, 0, beast.length, now);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ModeSDecoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,188 @@
+package adsbrecorder.modes.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.modes.BeastFrameReader;
+import adsbrecorder.modes.CPRDecoder;
+import adsbrecorder.modes.ModeSCRC;
+import adsbrecorder.modes.ModeSDecoder;
+import adsbrecorder.modes.ModeSListener;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public class TestModeSDecoder implements ModeSListener {
+
+    private List<TrackingRecord> records;
+    private List<VelocityUpdate> updates;
+    private ModeSDecoder decoder;
+
+    @BeforeEach
+    public void setUp() {
+        records = new ArrayList<TrackingRecord>();
+        updates = new ArrayList<VelocityUpdate>();
+        decoder = new ModeSDecoder(this);
+    }
+
+    @Override
+    public void onTrackingRecord(TrackingRecord record) {
+        records.add(record);
+    }
+
+    @Override
+    public void onVelocityUpdate(VelocityUpdate update) {
+        updates.add(update);
+    }
+
+    @Test
+    public void testCRC() {
+        byte[] frame = hex("8D4840D6202CC371C32CE0576098");
+        assertEquals(0, ModeSCRC.residual(frame, 0, frame.length));
+        frame[5] ^= 0x01;
+        assertTrue(ModeSCRC.residual(frame, 0, frame.length) != 0);
+        assertFalse(decoder.decodeAVR("*8D4840D6202CC371C32CE0576099;", 0L));
+        assertEquals(1L, decoder.getCrcErrors());
+    }
+
+    @Test
+    public void testNL() {
+        assertEquals(59, CPRDecoder.NL(0.0));
+        assertEquals(36, CPRDecoder.NL(52.2572));
+        assertEquals(2, CPRDecoder.NL(86.9));
+        assertEquals(1, CPRDecoder.NL(-88.0));
+    }
+
+    @Test
+    public void testGlobalPosition() {
+        assertTrue(decoder.decodeAVR("*8D4840D6202CC371C32CE0576098;", 0L));
+        assertTrue(decoder.decodeAVR("*8D40621D58C386435CC412692AD6;", 1000L));
+        assertTrue(records.isEmpty());
+        assertTrue(decoder.decodeAVR("*8D40621D58C382D690C8AC2863A7;", 2000L));
+        assertEquals(1, records.size());
+        TrackingRecord record = records.get(0);
+        assertEquals(0x40621D, record.getAddressICAO());
+        assertEquals(52.2572, record.getLatitude(), 1e-4);
+        assertEquals(3.9194, record.getLongitude(), 1e-4);
+        assertEquals(38000, record.getAltitude());
+        assertEquals(2000L, record.getLastTimeSeen());
+    }
+
+    @Test
+    public void testLocalPosition() {
+        decoder.setReferencePosition(52.258, 3.918);
+        assertTrue(decoder.decodeAVR("*8D40621D58C382D690C8AC2863A7;", 0L));
+        assertEquals(1, records.size());
+        assertEquals(52.2572, records.get(0).getLatitude(), 1e-4);
+        assertEquals(3.9194, records.get(0).getLongitude(), 1e-4);
+    }
+
+    @Test
+    public void testIdentification() {
+        assertTrue(decoder.decodeAVR("*8D4840D6202CC371C32CE0576098;", 0L));
+        assertTrue(decoder.decodeAVR("@0000001234568D40621D58C382D690C8AC2863A7;", 100L));
+        assertEquals(2, decoder.getAircraftCount());
+        assertTrue(records.isEmpty());
+        assertFalse(decoder.decodeAVR("*8D4840D6202CC371C32CE05760;", 200L));
+        // the position pair of testGlobalPosition sent by 4840D6 carries the callsign
+        assertTrue(decoder.decodeAVR("*8D4840D658C386435CC412104C12;", 1000L));
+        assertTrue(decoder.decodeAVR("*8D4840D658C382D690C8AC510563;", 2000L));
+        assertEquals(1, records.size());
+        assertEquals(0x4840D6, records.get(0).getAddressICAO());
+        assertEquals("KLM1023", records.get(0).getFlight());
+    }
+
+    @Test
+    public void testVelocity() {
+        assertTrue(decoder.decodeAVR("*8D485020994409940838175B284F;", 0L));
+        assertTrue(decoder.decodeAVR("*8DA05F219B06B6AF189400CBC33F;", 0L));
+        assertEquals(2, updates.size());
+        assertEquals(159, updates.get(0).getVelocity());
+        assertEquals(183, updates.get(0).getHeading());
+        assertEquals(-832, updates.get(0).getVerticalRate());
+        assertEquals(375, updates.get(1).getVelocity());
+        assertEquals(244, updates.get(1).getHeading());
+        assertEquals(-2304, updates.get(1).getVerticalRate());
+    }
+
+    @Test
+    public void testBeast() {
+        byte[] even = hex("8D40621D58C382D690C8AC2863A7");
+        byte[] odd = hex("8D40621D58C386435CC412692AD6");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBeast(out, new byte[] {0x1A, 0x02}, '1');
+        writeBeast(out, odd, '3');
+        writeBeast(out, hex("5D4840D6123456"), '2');
+        writeBeast(out, even, '3');
+        byte[] stream = out.toByteArray();
+        BeastFrameReader reader = new BeastFrameReader(decoder);
+        int frames = 0;
+        for (int i = 0; i < stream.length; i += 5) {
+            frames += reader.read(stream, i, Math.min(5, stream.length - i), 1000L);
+        }
+        assertEquals(2, frames);
+        assertEquals(1, records.size());
+        assertEquals(52.2572, records.get(0).getLatitude(), 1e-4);
+    }
+
+    @Test
+    public void testRecordedFrames() throws IOException {
+        long now = 0L;
+        int valid = 0;
+        for (String line : readFrames()) {
+            if (decoder.decodeAVR(line, now))
+                valid++;
+            now += 3;
+        }
+        assertEquals(9600L, decoder.getFrames());
+        assertEquals(9600L, valid + decoder.getCrcErrors());
+        assertTrue(decoder.getCrcErrors() > 0);
+        assertEquals(100, decoder.getAircraftCount());
+        assertTrue(decoder.getPositions() > 5500);
+        for (TrackingRecord record : records) {
+            assertEquals(-37.7, record.getLatitude(), 2.5);
+            assertEquals(144.8, record.getLongitude(), 2.5);
+        }
+        decoder.expire(now + 60000L, 30000L);
+        assertEquals(0, decoder.getAircraftCount());
+    }
+
+    public static List<String> readFrames() throws IOException {
+        try (InputStream in = TestModeSDecoder.class.getResourceAsStream("/frames.avr")) {
+            return List.of(new String(in.readAllBytes(), StandardCharsets.US_ASCII).split("\n"));
+        }
+    }
+
+    public static void writeBeast(ByteArrayOutputStream out, byte[] frame, char type) {
+        out.write(0x1A);
+        out.write(type);
+        byte[] header = {0x00, 0x1A, 0x02, 0x03, 0x04, 0x05, 0x40};
+        for (byte b : header)
+            writeEscaped(out, b);
+        for (byte b : frame)
+            writeEscaped(out, b);
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, byte b) {
+        out.write(b);
+        if (b == 0x1A)
+            out.write(b);
+    }
+
+    private static byte[] hex(String s) {
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        return bytes;
+    }
+}
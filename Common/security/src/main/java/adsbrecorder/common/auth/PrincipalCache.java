@@ -0,0 +1,91 @@
+package adsbrecorder.common.auth;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of authenticated principals, entries expire ttl milliseconds after they were loaded
+ * @param <T> principal type
+ */
+public class PrincipalCache<T> {
+
+    private final Map<String, Entry<T>> entries;
+    private final long ttl;
+    private final int maxSize;
+
+    public PrincipalCache(long ttl, int maxSize) {
+        this.entries = new ConcurrentHashMap<String, Entry<T>>();
+        this.ttl = ttl;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    public static String key(String tokenId, String subject) {
+        return String.valueOf(tokenId) + ':' + subject;
+    }
+
+    /**
+     * @return cached principal or null if absent or expired
+     */
+    public T get(String key, long now) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (entry.expiry <= now) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    public void put(String key, T principal, long now) {
+        if (ttl <= 0L)
+            return;
+        if (entries.size() >= maxSize && !entries.containsKey(key))
+            evict(now);
+        entries.put(key, new Entry<T>(principal, now + ttl));
+    }
+
+    public void invalidateIf(Predicate<T> condition) {
+        entries.values().removeIf(entry -> condition.test(entry.principal));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // drop expired entries, if none expired drop the one closest to expiry
+    private void evict(long now) {
+        String oldestKey = null;
+        long oldestExpiry = Long.MAX_VALUE;
+        Iterator<Map.Entry<String, Entry<T>>> it = entries.entrySet().iterator();
+        boolean removed = false;
+        while (it.hasNext()) {
+            Map.Entry<String, Entry<T>> e = it.next();
+            if (e.getValue().expiry <= now) {
+                it.remove();
+                removed = true;
+            } else if (e.getValue().expiry < oldestExpiry) {
+                oldestExpiry = e.getValue().expiry;
+                oldestKey = e.getKey();
+            }
+        }
+        if (!removed && oldestKey != null)
+            entries.remove(oldestKey);
+    }
+
+    private static class Entry<T> {
+        final T principal;
+        final long expiry;
+
+        Entry(T principal, long expiry) {
+            this.principal = principal;
+            this.expiry = expiry;
+        }
+    }
+}
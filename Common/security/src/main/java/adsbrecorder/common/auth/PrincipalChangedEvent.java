@@ -0,0 +1,31 @@
+package adsbrecorder.common.auth;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the key or the authorities of a principal change, so that cached authentications are dropped
+ */
+public class PrincipalChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = -3377934416385640221L;
+
+    public final static String REMOTE_RECEIVER = "receiver";
+    public final static String USER = "user";
+
+    private final String principalType;
+    private final String principalName;
+
+    public PrincipalChangedEvent(Object source, String principalType, String principalName) {
+        super(source);
+        this.principalType = principalType;
+        this.principalName = principalName;
+    }
+
+    public String getPrincipalType() {
+        return principalType;
+    }
+
+    public String getPrincipalName() {
+        return principalName;
+    }
+}
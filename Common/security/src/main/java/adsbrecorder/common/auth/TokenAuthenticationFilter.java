@@ -41,11 +41,7 @@ public abstract class TokenAuthenticationFilter extends OncePerRequestFilter {
 
     private void authenticateToken(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(this.getSigningKey())
-                    .parseClaimsJws(token)
-                    .getBody();
-            Authentication authToken = this.tryAuthenticate(claims);
+            Authentication authToken = this.tryAuthenticate(parseClaims(token));
             if (authToken.isAuthenticated()) {
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
@@ -54,6 +50,28 @@ public abstract class TokenAuthenticationFilter extends OncePerRequestFilter {
         }
     }
 
+    /**
+     * Authenticate a token received outside of an HTTP request, e.g. on a raw TCP connection
+     * @param token JWT
+     * @return authenticated token or null if the token is not valid
+     */
+    public Authentication authenticate(String token) {
+        try {
+            Authentication authToken = this.tryAuthenticate(parseClaims(token));
+            if (authToken.isAuthenticated())
+                return authToken;
+        } catch (Exception e) {
+        }
+        return null;
+    }
+
+    protected Claims parseClaims(String token) {
+        return Jwts.parser()
+                .setSigningKey(this.getSigningKey())
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
     protected abstract Authentication tryAuthenticate(Claims claims);
 
     protected abstract Key getSigningKey();
@@ -0,0 +1,60 @@
+package adsbrecorder.common.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.common.auth.PrincipalCache;
+
+public class TestPrincipalCache {
+
+    @Test
+    public void testExpiry() {
+        PrincipalCache<String> cache = new PrincipalCache<String>(1000L, 16);
+        cache.put(PrincipalCache.key("t1", "alpha"), "alpha", 10_000L);
+        assertEquals("alpha", cache.get(PrincipalCache.key("t1", "alpha"), 10_999L));
+        assertNull(cache.get(PrincipalCache.key("t1", "alpha"), 11_000L));
+        // an expired entry is gone once looked up
+        assertEquals(0, cache.size());
+        // no ttl, nothing cached
+        PrincipalCache<String> disabled = new PrincipalCache<String>(0L, 16);
+        disabled.put(PrincipalCache.key("t1", "alpha"), "alpha", 10_000L);
+        assertNull(disabled.get(PrincipalCache.key("t1", "alpha"), 10_000L));
+    }
+
+    @Test
+    public void testEviction() {
+        PrincipalCache<String> cache = new PrincipalCache<String>(1000L, 3);
+        cache.put("a", "a", 10_000L);
+        cache.put("b", "b", 10_100L);
+        cache.put("c", "c", 10_200L);
+        // full, nothing expired, the entry closest to expiry goes
+        cache.put("d", "d", 10_300L);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("a", 10_300L));
+        assertEquals("b", cache.get("b", 10_300L));
+        // replacing an entry takes no room
+        cache.put("d", "d2", 10_400L);
+        assertEquals(3, cache.size());
+        assertEquals("b", cache.get("b", 10_400L));
+        // full with expired entries, all of them go
+        cache.put("e", "e", 11_250L);
+        assertEquals(2, cache.size());
+        assertEquals("d2", cache.get("d", 11_250L));
+        assertEquals("e", cache.get("e", 11_250L));
+    }
+
+    @Test
+    public void testInvalidate() {
+        PrincipalCache<String> cache = new PrincipalCache<String>(1000L, 16);
+        cache.put(PrincipalCache.key("t1", "alpha"), "alpha", 10_000L);
+        cache.put(PrincipalCache.key("t2", "alpha"), "alpha", 10_000L);
+        cache.put(PrincipalCache.key("t3", "bravo"), "bravo", 10_000L);
+        cache.invalidateIf("alpha"::equals);
+        assertEquals(1, cache.size());
+        assertEquals("bravo", cache.get(PrincipalCache.key("t3", "bravo"), 10_000L));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
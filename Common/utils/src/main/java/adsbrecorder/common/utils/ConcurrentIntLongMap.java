@@ -0,0 +1,313 @@
+package adsbrecorder.common.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Concurrent map from non-negative int keys, such as 24-bit ICAO addresses, to longs,
+ * laid out the same way as {@link ConcurrentIntObjectMap}.
+ * Absent keys read as the missing value given at construction, which therefore cannot be stored.
+ */
+public class ConcurrentIntLongMap {
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, long value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate {
+        boolean test(int key, long value);
+    }
+
+    private final static int EMPTY = -1;
+    private final static int REMOVED = -2;
+    private final static int SEGMENTS = 16;
+    private final static int SEGMENT_SHIFT = 28;
+
+    private final static VarHandle KEYS = MethodHandles.arrayElementVarHandle(int[].class);
+    private final static VarHandle VALUES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long missingValue;
+    private final Segment[] segments;
+
+    public ConcurrentIntLongMap(long missingValue) {
+        this(missingValue, 256);
+    }
+
+    public ConcurrentIntLongMap(long missingValue, int expectedSize) {
+        this.missingValue = missingValue;
+        this.segments = new Segment[SEGMENTS];
+        int capacity = ConcurrentIntObjectMap.tableSize(expectedSize / SEGMENTS + 1);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(capacity);
+    }
+
+    public long getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * @return the value, or the missing value
+     */
+    public long get(int key) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != missingValue;
+    }
+
+    /**
+     * @return the previous value, or the missing value
+     */
+    public long put(int key, long value) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        return segmentFor(hash).put(key, hash, checkValue(value), false);
+    }
+
+    /**
+     * @return the current value if there is one, otherwise the missing value after storing the given value
+     */
+    public long putIfAbsent(int key, long value) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        return segmentFor(hash).put(key, hash, checkValue(value), true);
+    }
+
+    /**
+     * @param mappingFunction runs under the segment lock and must not use the map, returning the missing value stores nothing
+     * @return the current or computed value
+     */
+    public long computeIfAbsent(int key, IntToLongFunction mappingFunction) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        long value = segmentFor(hash).get(key, hash);
+        if (value != missingValue)
+            return value;
+        return segmentFor(hash).computeIfAbsent(key, hash, mappingFunction);
+    }
+
+    /**
+     * Add to the value of a key, an absent key starts from zero
+     * @return the new value
+     */
+    public long addAndGet(int key, long delta) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        return segmentFor(hash).addAndGet(key, hash, delta);
+    }
+
+    /**
+     * @return the removed value, or the missing value
+     */
+    public long remove(int key) {
+        final int hash = ConcurrentIntObjectMap.hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * @return true if any entry was removed
+     */
+    public boolean removeIf(EntryPredicate filter) {
+        boolean removed = false;
+        for (Segment segment : segments)
+            removed |= segment.removeIf(filter);
+        return removed;
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (Segment segment : segments)
+            segment.forEach(action);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size;
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    private long checkValue(long value) {
+        if (value == missingValue)
+            throw new IllegalArgumentException("The missing value cannot be stored: " + value);
+        return value;
+    }
+
+    private final static class Table {
+        final int[] keys;
+        final long[] values;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+
+    private final class Segment {
+
+        volatile Table table;
+        volatile int size;
+        // slots that are not EMPTY, removed ones included
+        int used;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        long get(int key, int hash) {
+            retry: while (true) {
+                final Table table = this.table;
+                final int mask = table.keys.length - 1;
+                for (int i = hash & mask; ; i = (i + 1) & mask) {
+                    final int k = (int) KEYS.getAcquire(table.keys, i);
+                    if (k == key) {
+                        final long value = (long) VALUES.getAcquire(table.values, i);
+                        // the slot may have been handed to another key in between
+                        if ((int) KEYS.getAcquire(table.keys, i) != key)
+                            continue retry;
+                        return value;
+                    }
+                    if (k == EMPTY)
+                        return missingValue;
+                }
+            }
+        }
+
+        // slot of the key, or -(slot + 1) of where it would be inserted
+        private int find(Table table, int key, int hash) {
+            final int mask = table.keys.length - 1;
+            int free = -1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                final int k = table.keys[i];
+                if (k == key)
+                    return i;
+                if (k == REMOVED && free < 0)
+                    free = i;
+                if (k == EMPTY)
+                    return -((free < 0 ? i : free) + 1);
+            }
+        }
+
+        synchronized long put(int key, int hash, long value, boolean onlyIfAbsent) {
+            final Table table = this.table;
+            final int i = find(table, key, hash);
+            if (i >= 0) {
+                long previous = table.values[i];
+                if (!onlyIfAbsent)
+                    VALUES.setRelease(table.values, i, value);
+                return previous;
+            }
+            insert(table, -i - 1, key, value);
+            return missingValue;
+        }
+
+        synchronized long computeIfAbsent(int key, int hash, IntToLongFunction mappingFunction) {
+            final Table table = this.table;
+            final int i = find(table, key, hash);
+            if (i >= 0)
+                return table.values[i];
+            long value = mappingFunction.applyAsLong(key);
+            if (value != missingValue)
+                insert(table, -i - 1, key, value);
+            return value;
+        }
+
+        synchronized long addAndGet(int key, int hash, long delta) {
+            final Table table = this.table;
+            final int i = find(table, key, hash);
+            if (i >= 0) {
+                long value = checkValue(table.values[i] + delta);
+                VALUES.setRelease(table.values, i, value);
+                return value;
+            }
+            insert(table, -i - 1, key, checkValue(delta));
+            return delta;
+        }
+
+        synchronized long remove(int key, int hash) {
+            final Table table = this.table;
+            final int i = find(table, key, hash);
+            if (i < 0)
+                return missingValue;
+            long previous = table.values[i];
+            KEYS.setRelease(table.keys, i, REMOVED);
+            size--;
+            return previous;
+        }
+
+        synchronized boolean removeIf(EntryPredicate filter) {
+            final Table table = this.table;
+            boolean removed = false;
+            for (int i = 0; i < table.keys.length; i++) {
+                final int k = table.keys[i];
+                if (k >= 0 && filter.test(k, table.values[i])) {
+                    KEYS.setRelease(table.keys, i, REMOVED);
+                    size--;
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        void forEach(EntryConsumer action) {
+            final Table table = this.table;
+            for (int i = 0; i < table.keys.length; i++) {
+                final int k = (int) KEYS.getAcquire(table.keys, i);
+                if (k >= 0) {
+                    final long value = (long) VALUES.getAcquire(table.values, i);
+                    if ((int) KEYS.getAcquire(table.keys, i) == k)
+                        action.accept(k, value);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            table = new Table(table.keys.length);
+            used = 0;
+            size = 0;
+        }
+
+        private void insert(Table table, int i, int key, long value) {
+            if (table.keys[i] == EMPTY)
+                used++;
+            VALUES.setRelease(table.values, i, value);
+            KEYS.setRelease(table.keys, i, key);
+            size++;
+            if (used > table.keys.length * 3 / 4)
+                rebuild(table);
+        }
+
+        private void rebuild(Table old) {
+            final int capacity = size > old.keys.length / 2 ? old.keys.length * 2 : old.keys.length;
+            final int mask = capacity - 1;
+            Table table = new Table(capacity);
+            for (int j = 0; j < old.keys.length; j++) {
+                final int k = old.keys[j];
+                if (k < 0)
+                    continue;
+                int i = ConcurrentIntObjectMap.hash(k) & mask;
+                while (table.keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                table.keys[i] = k;
+                table.values[i] = old.values[j];
+            }
+            this.table = table;
+            this.used = size;
+        }
+    }
+}
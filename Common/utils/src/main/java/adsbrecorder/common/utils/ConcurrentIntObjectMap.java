@@ -0,0 +1,327 @@
+package adsbrecorder.common.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent map from non-negative int keys, such as 24-bit ICAO addresses, to objects.
+ * Keys and values are kept in open-addressing arrays, nothing is boxed and no entry objects are created.
+ * The map is split into segments, writers lock one segment, readers never lock.
+ * Iteration is weakly consistent, as with ConcurrentHashMap.
+ */
+public class ConcurrentIntObjectMap<V> {
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private final static int EMPTY = -1;
+    private final static int REMOVED = -2;
+    private final static int SEGMENTS = 16;
+    private final static int SEGMENT_SHIFT = 28;
+
+    private final static VarHandle KEYS = MethodHandles.arrayElementVarHandle(int[].class);
+    private final static VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Segment<V>[] segments;
+
+    public ConcurrentIntObjectMap() {
+        this(256);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentIntObjectMap(int expectedSize) {
+        this.segments = new Segment[SEGMENTS];
+        int capacity = tableSize(expectedSize / SEGMENTS + 1);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment<V>(capacity);
+    }
+
+    public V get(int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    public V put(int key, V value) {
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, Objects.requireNonNull(value), false);
+    }
+
+    /**
+     * @return the current value if there is one, otherwise null after storing the given value
+     */
+    public V putIfAbsent(int key, V value) {
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, Objects.requireNonNull(value), true);
+    }
+
+    /**
+     * @param mappingFunction runs under the segment lock and must not use the map, returning null stores nothing
+     * @return the current or computed value
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        final int hash = hash(key);
+        V value = segmentFor(hash).get(key, hash);
+        if (value != null)
+            return value;
+        return segmentFor(hash).computeIfAbsent(key, hash, mappingFunction);
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    public V remove(int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Remove the key only while it maps to the given value
+     */
+    public boolean remove(int key, Object value) {
+        final int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, Objects.requireNonNull(value)) != null;
+    }
+
+    /**
+     * @return true if any entry was removed
+     */
+    public boolean removeIf(Predicate<? super V> filter) {
+        boolean removed = false;
+        for (Segment<V> segment : segments)
+            removed |= segment.removeIf(filter);
+        return removed;
+    }
+
+    public void forEach(EntryConsumer<? super V> action) {
+        for (Segment<V> segment : segments)
+            segment.forEach(action);
+    }
+
+    public void forEachValue(Consumer<? super V> action) {
+        forEach((key, value) -> action.accept(value));
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<V>(size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments)
+            size += segment.size;
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments)
+            segment.clear();
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    // Fibonacci hashing, ICAO addresses are handed out in blocks and share their high bits,
+    // the well mixed high bits pick the segment and are folded down for the slot
+    static int hash(int key) {
+        if (key < 0)
+            throw new IllegalArgumentException("Negative key: " + key);
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSize(int expected) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expected)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private final static class Table {
+        final int[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+
+    /**
+     * One open-addressing table with linear probing. A key slot goes from EMPTY to a key, and from a key
+     * to REMOVED and back to a key, but never back to EMPTY until the table is rebuilt, so readers
+     * probing without the lock never stop early. Values are written before their key is published.
+     */
+    private final static class Segment<V> {
+
+        volatile Table table;
+        volatile int size;
+        // slots that are not EMPTY, removed ones included
+        int used;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int key, int hash) {
+            retry: while (true) {
+                final Table table = this.table;
+                final int mask = table.keys.length - 1;
+                for (int i = hash & mask; ; i = (i + 1) & mask) {
+                    final int k = (int) KEYS.getAcquire(table.keys, i);
+                    if (k == key) {
+                        final V value = (V) VALUES.getAcquire(table.values, i);
+                        // the slot may have been handed to another key in between
+                        if ((int) KEYS.getAcquire(table.keys, i) != key)
+                            continue retry;
+                        return value;
+                    }
+                    if (k == EMPTY)
+                        return null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(int key, int hash, V value, boolean onlyIfAbsent) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+            int free = -1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                final int k = table.keys[i];
+                if (k == key) {
+                    V previous = (V) table.values[i];
+                    if (!onlyIfAbsent)
+                        VALUES.setRelease(table.values, i, value);
+                    return previous;
+                }
+                if (k == REMOVED && free < 0)
+                    free = i;
+                if (k == EMPTY) {
+                    insert(table, free < 0 ? i : free, key, value);
+                    return null;
+                }
+            }
+        }
+
+        synchronized V computeIfAbsent(int key, int hash, IntFunction<? extends V> mappingFunction) {
+            V value = get(key, hash);
+            if (value != null)
+                return value;
+            value = mappingFunction.apply(key);
+            if (value != null)
+                put(key, hash, value, false);
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(int key, int hash, Object expected) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                final int k = table.keys[i];
+                if (k == key) {
+                    V previous = (V) table.values[i];
+                    if (expected != null && !expected.equals(previous))
+                        return null;
+                    KEYS.setRelease(table.keys, i, REMOVED);
+                    VALUES.setRelease(table.values, i, null);
+                    size--;
+                    return previous;
+                }
+                if (k == EMPTY)
+                    return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized boolean removeIf(Predicate<? super V> filter) {
+            final Table table = this.table;
+            boolean removed = false;
+            for (int i = 0; i < table.keys.length; i++) {
+                if (table.keys[i] >= 0 && filter.test((V) table.values[i])) {
+                    KEYS.setRelease(table.keys, i, REMOVED);
+                    VALUES.setRelease(table.values, i, null);
+                    size--;
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(EntryConsumer<? super V> action) {
+            final Table table = this.table;
+            for (int i = 0; i < table.keys.length; i++) {
+                final int k = (int) KEYS.getAcquire(table.keys, i);
+                if (k >= 0) {
+                    V value = (V) VALUES.getAcquire(table.values, i);
+                    if (value != null && (int) KEYS.getAcquire(table.keys, i) == k)
+                        action.accept(k, value);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            table = new Table(table.keys.length);
+            used = 0;
+            size = 0;
+        }
+
+        private void insert(Table table, int i, int key, Object value) {
+            if (table.keys[i] == EMPTY)
+                used++;
+            VALUES.setRelease(table.values, i, value);
+            KEYS.setRelease(table.keys, i, key);
+            size++;
+            if (used > table.keys.length * 3 / 4)
+                rebuild(table);
+        }
+
+        // copy the live entries into a new table, dropping removed slots, doubling only when mostly live
+        private void rebuild(Table old) {
+            final int capacity = size > old.keys.length / 2 ? old.keys.length * 2 : old.keys.length;
+            final int mask = capacity - 1;
+            Table table = new Table(capacity);
+            for (int j = 0; j < old.keys.length; j++) {
+                final int k = old.keys[j];
+                if (k < 0)
+                    continue;
+                int i = hash(k) & mask;
+                while (table.keys[i] != EMPTY)
+                    i = (i + 1) & mask;
+                table.keys[i] = k;
+                table.values[i] = old.values[j];
+            }
+            this.table = table;
+            this.used = size;
+        }
+    }
+}
@@ -53,6 +53,19 @@ public interface GeoMathUtils {
         return dist * 1000 / ms;
     }
 
+    /**
+     * Calculate great-circle distance between two positions at sea level
+     * @return distance in meter
+     */
+    default double calcDistance(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double dLat = DEG_TO_RAD * (toLatitude - fromLatitude);
+        double dLon = DEG_TO_RAD * (toLongitude - fromLongitude);
+        double a = Math.sin(dLat / 2.0) * Math.sin(dLat / 2.0) +
+                Math.cos(DEG_TO_RAD * fromLatitude) * Math.cos(DEG_TO_RAD * toLatitude) *
+                Math.sin(dLon / 2.0) * Math.sin(dLon / 2.0);
+        return 2.0 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a));
+    }
+
     /**
      * Convert meter per second to knots
      * @param mps speed in meter per second
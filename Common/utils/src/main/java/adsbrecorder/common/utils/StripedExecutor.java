@@ -0,0 +1,100 @@
+package adsbrecorder.common.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks keyed by non-negative ints, such as ICAO addresses, on a fixed number of single threaded stripes.
+ * A key always lands on the same stripe, so the tasks of one key run one at a time in submission order
+ * while different keys run in parallel. With one stripe or less, tasks run on the calling thread.
+ */
+public class StripedExecutor implements AutoCloseable {
+
+    private final ExecutorService[] stripes;
+
+    public StripedExecutor(String name, int parallelism) {
+        this.stripes = new ExecutorService[parallelism > 1 ? parallelism : 0];
+        for (int i = 0; i < stripes.length; i++) {
+            final String threadName = name + "-" + i;
+            stripes[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getParallelism() {
+        return Math.max(1, stripes.length);
+    }
+
+    public int stripeOf(int key) {
+        return stripes.length == 0 ? 0 : (ConcurrentIntObjectMap.hash(key) >>> 1) % stripes.length;
+    }
+
+    public Future<?> submit(int key, Runnable task) {
+        if (stripes.length == 0) {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+        return stripes[stripeOf(key)].submit(task);
+    }
+
+    /**
+     * Split the keys by stripe, run the task once per stripe with the keys of that stripe and wait for all of them
+     * @throws RuntimeException the first failure of a task, after every task has finished
+     */
+    public void invokeAll(Collection<Integer> keys, Consumer<List<Integer>> task) {
+        if (stripes.length == 0) {
+            if (!keys.isEmpty())
+                task.accept(new ArrayList<Integer>(keys));
+            return;
+        }
+        List<List<Integer>> parts = new ArrayList<List<Integer>>(stripes.length);
+        for (int i = 0; i < stripes.length; i++)
+            parts.add(new ArrayList<Integer>());
+        keys.forEach(key -> parts.get(stripeOf(key)).add(key));
+        List<Future<?>> futures = new ArrayList<Future<?>>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            final List<Integer> part = parts.get(i);
+            if (!part.isEmpty())
+                futures.add(stripes[i].submit(() -> task.accept(part)));
+        }
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the stripes", e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService stripe : stripes)
+            stripe.shutdown();
+        try {
+            for (ExecutorService stripe : stripes)
+                stripe.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
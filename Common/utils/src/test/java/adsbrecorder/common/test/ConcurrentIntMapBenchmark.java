@@ -0,0 +1,156 @@
+package adsbrecorder.common.test;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import adsbrecorder.common.utils.ConcurrentIntLongMap;
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+
+/**
+ * ICAO-keyed lookups and updates against ConcurrentHashMap, about as many aircraft as a busy RealtimeService
+ * holds, each message reading and replacing the state of one aircraft. Reported as ns per operation,
+ * run with -prof gc to compare allocation.
+ * Run the main method with the test classpath, e.g. java -cp ... org.openjdk.jmh.Main ConcurrentIntMapBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ConcurrentIntMapBenchmark.OPERATIONS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ConcurrentIntMapBenchmark {
+
+    final static int AIRCRAFT = 8192;
+    final static int OPERATIONS = 4096;
+
+    private int[] keys;
+    private Object[] values;
+    private ConcurrentHashMap<Integer, Object> concurrentHashMap;
+    private ConcurrentHashMap<Integer, Long> concurrentHashMapLong;
+    private ConcurrentIntObjectMap<Object> intObjectMap;
+    private ConcurrentIntLongMap intLongMap;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1L);
+        keys = new int[OPERATIONS * 4];
+        values = new Object[AIRCRAFT];
+        int[] aircraft = new int[AIRCRAFT];
+        for (int i = 0; i < AIRCRAFT; i++) {
+            aircraft[i] = random.nextInt(0x1000000);
+            values[i] = new Object();
+        }
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = aircraft[random.nextInt(AIRCRAFT)];
+        concurrentHashMap = new ConcurrentHashMap<Integer, Object>();
+        concurrentHashMapLong = new ConcurrentHashMap<Integer, Long>();
+        intObjectMap = new ConcurrentIntObjectMap<Object>(AIRCRAFT);
+        intLongMap = new ConcurrentIntLongMap(0L, AIRCRAFT);
+        for (int i = 0; i < AIRCRAFT; i++) {
+            concurrentHashMap.put(aircraft[i], values[i]);
+            concurrentHashMapLong.put(aircraft[i], 1L + i);
+            intObjectMap.put(aircraft[i], values[i]);
+            intLongMap.put(aircraft[i], 1L + i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        @Setup
+        public void setUp() {
+            position = (int) (Thread.currentThread().getId() * 997);
+        }
+
+        int next(int length) {
+            position = (position + 1) & (length - 1);
+            return position;
+        }
+    }
+
+    @Benchmark
+    public int getConcurrentHashMap(Cursor cursor) {
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (concurrentHashMap.get(keys[cursor.next(keys.length)]) != null)
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int getIntObjectMap(Cursor cursor) {
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (intObjectMap.get(keys[cursor.next(keys.length)]) != null)
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int updateConcurrentHashMap(Cursor cursor) {
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = keys[cursor.next(keys.length)];
+            if (concurrentHashMap.containsKey(key))
+                found++;
+            concurrentHashMap.put(key, values[i]);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int updateIntObjectMap(Cursor cursor) {
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = keys[cursor.next(keys.length)];
+            if (intObjectMap.containsKey(key))
+                found++;
+            intObjectMap.put(key, values[i]);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long updateConcurrentHashMapLong(Cursor cursor) {
+        long sum = 0L;
+        for (int i = 0; i < OPERATIONS; i++)
+            sum += concurrentHashMapLong.merge(keys[cursor.next(keys.length)], 1L, Long::sum);
+        return sum;
+    }
+
+    @Benchmark
+    public long updateIntLongMap(Cursor cursor) {
+        long sum = 0L;
+        for (int i = 0; i < OPERATIONS; i++)
+            sum += intLongMap.addAndGet(keys[cursor.next(keys.length)], 1L);
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConcurrentIntMapBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package adsbrecorder.common.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.common.utils.ConcurrentIntLongMap;
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+
+public class TestConcurrentIntMaps {
+
+    @Test
+    public void testObjectMapAgainstHashMap() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<String>(16);
+        Map<Integer, String> expected = new HashMap<Integer, String>();
+        Random random = new Random(1L);
+        // few distinct keys and many removals, so removed slots get reused and tables rebuilt
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000) * 3361 & 0xFFFFFF;
+            String value = Integer.toString(i);
+            switch (random.nextInt(4)) {
+            case 0:
+                assertEquals(expected.remove(key), map.remove(key));
+                break;
+            case 1:
+                assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                break;
+            default:
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Integer, String> actual = new HashMap<Integer, String>();
+        map.forEach((key, value) -> assertNull(actual.put(key, value)));
+        assertEquals(expected, actual);
+
+        map.removeIf(value -> Integer.parseInt(value) % 2 == 0);
+        expected.values().removeIf(value -> Integer.parseInt(value) % 2 == 0);
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+
+        assertThrows(IllegalArgumentException.class, () -> map.get(-1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals("a", map.computeIfAbsent(0xABCDEF, key -> "a"));
+        assertEquals("a", map.computeIfAbsent(0xABCDEF, key -> "b"));
+        assertNull(map.computeIfAbsent(0x123456, key -> null));
+        assertFalse(map.remove(0xABCDEF, "b"));
+        assertTrue(map.remove(0xABCDEF, "a"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testLongMap() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap(-1L, 16);
+        assertEquals(-1L, map.get(0x7C6DB8));
+        assertEquals(-1L, map.put(0x7C6DB8, 10L));
+        assertEquals(10L, map.putIfAbsent(0x7C6DB8, 20L));
+        assertEquals(15L, map.addAndGet(0x7C6DB8, 5L));
+        assertEquals(3L, map.addAndGet(0x7C6DB9, 3L));
+        assertEquals(7L, map.computeIfAbsent(0x7C6DBA, key -> 7L));
+        assertEquals(-1L, map.computeIfAbsent(0x7C6DBB, key -> -1L));
+        assertFalse(map.containsKey(0x7C6DBB));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, -1L));
+        assertEquals(3, map.size());
+        map.removeIf((key, value) -> value < 5L);
+        assertEquals(-1L, map.get(0x7C6DB9));
+        assertEquals(15L, map.remove(0x7C6DB8));
+        List<Integer> keys = new ArrayList<Integer>();
+        map.forEach((key, value) -> keys.add(key));
+        assertEquals(List.of(0x7C6DBA), keys);
+        for (int key = 0; key < 10_000; key++)
+            map.put(key, key * 2L);
+        for (int key = 0; key < 10_000; key++)
+            assertEquals(key * 2L, map.get(key));
+    }
+
+    @Test
+    public void testConcurrentReadersSeeOwnValues() throws Exception {
+        // every value names its key, a reader must never see the value of another key
+        ConcurrentIntObjectMap<Integer> map = new ConcurrentIntObjectMap<Integer>(16);
+        final int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads * 2);
+        AtomicReference<String> failure = new AtomicReference<String>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            new Thread(() -> {
+                Random random = new Random(offset);
+                for (int i = 0; i < 300_000; i++) {
+                    int key = random.nextInt(2000) * threads + offset;
+                    if (random.nextBoolean())
+                        map.put(key, key);
+                    else
+                        map.remove(key);
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                Random random = new Random(-offset);
+                for (int i = 0; i < 300_000; i++) {
+                    int key = random.nextInt(2000 * threads);
+                    Integer value = map.get(key);
+                    if (value != null && value != key)
+                        failure.set(key + " read " + value);
+                }
+                map.forEach((key, value) -> {
+                    if (value != key)
+                        failure.set(key + " iterated " + value);
+                });
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertNull(failure.get());
+        int[] count = new int[1];
+        map.forEach((key, value) -> count[0]++);
+        assertEquals(count[0], map.size());
+    }
+}
@@ -0,0 +1,77 @@
+package adsbrecorder.common.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.common.utils.StripedExecutor;
+
+public class TestStripedExecutor {
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        try (StripedExecutor executor = new StripedExecutor("test", 4)) {
+            Map<Integer, List<Integer>> seen = new ConcurrentHashMap<Integer, List<Integer>>();
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 10000; i++) {
+                final int key = (i * 7919) % 64;
+                final int sequence = i;
+                futures.add(executor.submit(key, () ->
+                    seen.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<Integer>())).add(sequence)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+            assertEquals(64, seen.size());
+            seen.values().forEach(sequences -> {
+                for (int i = 1; i < sequences.size(); i++)
+                    assertTrue(sequences.get(i - 1) < sequences.get(i));
+            });
+        }
+    }
+
+    @Test
+    public void testInvokeAll() {
+        try (StripedExecutor executor = new StripedExecutor("test", 4)) {
+            List<Integer> keys = IntStream.range(0, 1000).map(i -> i * 4099 & 0xFFFFFF).boxed().collect(Collectors.toList());
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            List<Integer> done = Collections.synchronizedList(new ArrayList<Integer>());
+            executor.invokeAll(keys, part -> {
+                threads.add(Thread.currentThread().getName());
+                part.forEach(key -> assertEquals(executor.stripeOf(part.get(0)), executor.stripeOf(key)));
+                done.addAll(part);
+            });
+            assertEquals(Set.copyOf(keys), Set.copyOf(done));
+            assertEquals(keys.size(), done.size());
+            assertEquals(4, threads.size());
+            IllegalArgumentException failure = new IllegalArgumentException();
+            assertSame(failure, assertThrows(IllegalArgumentException.class, () -> executor.invokeAll(keys, part -> {
+                throw failure;
+            })));
+        }
+    }
+
+    @Test
+    public void testCallerRuns() {
+        try (StripedExecutor executor = new StripedExecutor("test", 1)) {
+            assertEquals(1, executor.getParallelism());
+            Thread caller = Thread.currentThread();
+            executor.invokeAll(List.of(1, 2, 3), part -> {
+                assertSame(caller, Thread.currentThread());
+                assertEquals(List.of(1, 2, 3), part);
+            });
+        }
+    }
+}
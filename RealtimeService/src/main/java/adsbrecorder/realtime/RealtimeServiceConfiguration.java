@@ -21,6 +21,9 @@ import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+import adsbrecorder.realtime.shard.ShardRebalanceListener;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.kafka.ListOfTopics;
 import adsbrecorder.receiver.kafka.TrackingRecordDeserializer;
@@ -33,6 +36,45 @@ public class RealtimeServiceConfiguration implements ListOfTopics {
     @Value(value = "${kafka.bootstrapAddress}")
     private String bootstrapAddress;
 
+    @Value(value = "${kafka.binaryTopics:}")
+    private String binaryTopics;
+
+    @Value(value = "${kafka.partitions:1}")
+    private int partitions;
+
+    @Value(value = "${kafka.batch.max_records:500}")
+    private int batchMaxRecords;
+
+    @Value(value = "${kafka.batch.min_bytes:1}")
+    private int batchMinBytes;
+
+    @Value(value = "${kafka.batch.max_wait:100}")
+    private int batchMaxWait;
+
+    @Value(value = "${adsbrecorder.realtime.sharding.enabled:false}")
+    private boolean sharding;
+
+    @Bean
+    public RealtimeRecordCache realtimeRecordCache(
+            @Value("${adsbrecorder.inactive_retention:60000}") long inactiveRetention,
+            @Value("${adsbrecorder.realtime.wheel_tick:1000}") long wheelTick,
+            @Value("${adsbrecorder.realtime.grid_cell_size:1.0}") double gridCellSize) {
+        // one revolution covers the retention, most aircraft are looked at once when they expire
+        int wheelSize = (int) Math.max(2L, inactiveRetention / wheelTick + 1L);
+        return new RealtimeRecordCache(inactiveRetention, wheelTick, wheelSize, gridCellSize);
+    }
+
+    @Bean
+    public KinematicEstimator kinematicEstimator(
+            @Value("${adsbrecorder.realtime.kalman.position_sigma:30}") double positionSigma,
+            @Value("${adsbrecorder.realtime.kalman.altitude_sigma:25}") double altitudeSigma,
+            @Value("${adsbrecorder.realtime.kalman.horizontal_acceleration:3.0}") double horizontalAcceleration,
+            @Value("${adsbrecorder.realtime.kalman.vertical_acceleration:1.0}") double verticalAcceleration,
+            @Value("${adsbrecorder.inactive_retention:60000}") long inactiveRetention) {
+        return new KinematicEstimator(positionSigma, altitudeSigma,
+                horizontalAcceleration, verticalAcceleration, inactiveRetention);
+    }
+
     @Bean
     public ConsumerFactory<String, TrackingRecord> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
@@ -40,13 +82,21 @@ public class RealtimeServiceConfiguration implements ListOfTopics {
         props.put(ConsumerConfig.GROUP_ID_CONFIG, 1);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, TrackingRecordDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchMaxWait);
         return new DefaultKafkaConsumerFactory<>(props);
     }
     
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, TrackingRecord> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, TrackingRecord> kafkaListenerContainerFactory(
+            ShardRebalanceListener shardRebalanceListener) {
         ConcurrentKafkaListenerContainerFactory<String, TrackingRecord> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(partitions);
+        factory.setBatchListener(true);
+        if (sharding)
+            factory.getContainerProperties().setConsumerRebalanceListener(shardRebalanceListener);
         return factory;
     }
  
@@ -59,7 +109,7 @@ public class RealtimeServiceConfiguration implements ListOfTopics {
 
     @Bean
     public NewTopic topicInterleavingRecords() {
-         return new NewTopic(INTERLEAVING_RECORDS, 1, (short) 1);
+         return new NewTopic(INTERLEAVING_RECORDS, partitions, (short) 1);
     }
 
     @Bean
@@ -68,6 +118,7 @@ public class RealtimeServiceConfiguration implements ListOfTopics {
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TrackingRecordSerializer.class);
+        configProps.put(TrackingRecordSerializer.BINARY_TOPICS_CONFIG, binaryTopics);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
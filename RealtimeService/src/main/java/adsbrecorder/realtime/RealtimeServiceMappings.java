@@ -3,4 +3,6 @@ package adsbrecorder.realtime;
 public interface RealtimeServiceMappings {
 
     String GET_REALTIME_DATA = "/api/realtime";
+    String GET_REALTIME_STREAM = "/api/realtime/stream";
+    String GET_REALTIME_TRAILS = "/api/realtime/trails";
 }
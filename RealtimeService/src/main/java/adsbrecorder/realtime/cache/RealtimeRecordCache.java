@@ -0,0 +1,257 @@
+package adsbrecorder.realtime.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+import adsbrecorder.common.utils.GeoMathUtils;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+/**
+ * Latest tracking record of every live aircraft, keyed by ICAO address.
+ * Expiry uses a hashed timing wheel: each aircraft sits in at most one slot, the slot of its deadline
+ * when it was last checked. Updates only move the deadline forward, when the wheel reaches the slot
+ * an entry whose deadline has moved on is put back into its new slot instead of being removed.
+ * Records are replaced and removed in place, nothing is copied.
+ * Positions are also kept in a spatial grid for box and radius queries.
+ */
+public class RealtimeRecordCache implements GeoMathUtils {
+
+    private final ConcurrentIntObjectMap<Entry> entries;
+    private final Queue<Entry>[] wheel;
+    private final SpatialGridIndex grid;
+    private final long retention;
+    private final long tickMillis;
+    // next tick the wheel will process
+    private volatile long cursor;
+    // bumped on every change, tells readers whether anything happened since they last looked
+    private final AtomicLong version;
+
+    /**
+     * @param retention an aircraft expires this many milliseconds after its last record date
+     * @param tickMillis granularity of expiry
+     * @param wheelSize number of slots, one revolution should cover the retention for expiry in a single pass
+     * @param cellSize size of a spatial grid cell in degrees
+     */
+    @SuppressWarnings("unchecked")
+    public RealtimeRecordCache(long retention, long tickMillis, int wheelSize, double cellSize) {
+        if (retention <= 0 || tickMillis <= 0 || wheelSize < 2)
+            throw new IllegalArgumentException("retention and tickMillis must be positive and wheelSize at least 2");
+        this.entries = new ConcurrentIntObjectMap<Entry>(4096);
+        this.wheel = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++)
+            this.wheel[i] = new ConcurrentLinkedQueue<Entry>();
+        this.grid = new SpatialGridIndex(cellSize);
+        this.version = new AtomicLong();
+        this.retention = retention;
+        this.tickMillis = tickMillis;
+        this.cursor = Long.MIN_VALUE;
+    }
+
+    public TrackingRecord get(int addressICAO) {
+        Entry entry = entries.get(addressICAO);
+        return entry == null ? null : entry.record;
+    }
+
+    /**
+     * Replace the record of the aircraft and push its deadline to record date + retention
+     * @return the previous record, null if the aircraft was not live
+     */
+    public TrackingRecord put(TrackingRecord record) {
+        final int icao = record.getAddressICAO();
+        final long deadline = (record.getRecordDate() == null ? record.getLastTimeSeen() : record.getRecordDate().getTime()) + retention;
+        for (;;) {
+            Entry entry = entries.get(icao);
+            if (entry == null) {
+                entry = new Entry(icao, record, deadline);
+                synchronized (entry) {
+                    if (entries.putIfAbsent(icao, entry) != null)
+                        continue;
+                    entry.cell = grid.cellOf(record.getLatitude(), record.getLongitude());
+                    grid.add(icao, entry.cell);
+                }
+                version.incrementAndGet();
+                schedule(entry);
+                return null;
+            }
+            synchronized (entry) {
+                // lost a race against expiry, start over with a fresh entry
+                if (entry.removed)
+                    continue;
+                TrackingRecord prev = entry.record;
+                entry.record = record;
+                if (deadline > entry.deadline)
+                    entry.deadline = deadline;
+                long cell = grid.cellOf(record.getLatitude(), record.getLongitude());
+                if (cell != entry.cell) {
+                    grid.add(icao, cell);
+                    grid.remove(icao, entry.cell);
+                    entry.cell = cell;
+                }
+                version.incrementAndGet();
+                return prev;
+            }
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time and remove every aircraft whose deadline has passed.
+     * Must not be called concurrently with itself.
+     * @param onExpired receives the last record of each removed aircraft
+     * @return number of aircraft removed
+     */
+    public int expire(long now, Consumer<TrackingRecord> onExpired) {
+        final long target = Math.floorDiv(now, tickMillis);
+        long tick = cursor;
+        // no point going round more than once, the first call sweeps the whole wheel
+        if (tick == Long.MIN_VALUE || target - tick >= wheel.length)
+            tick = target - wheel.length + 1;
+        int removed = 0;
+        for (; tick <= target; tick++) {
+            cursor = tick + 1;
+            Queue<Entry> slot = wheel[slotOf(tick)];
+            List<Entry> reschedule = new ArrayList<Entry>();
+            Entry entry;
+            while ((entry = slot.poll()) != null) {
+                synchronized (entry) {
+                    if (entry.removed)
+                        continue;
+                    if (entry.deadline <= now) {
+                        entry.removed = true;
+                        entries.remove(entry.addressICAO, entry);
+                        grid.remove(entry.addressICAO, entry.cell);
+                        onExpired.accept(entry.record);
+                        version.incrementAndGet();
+                        removed++;
+                    } else {
+                        reschedule.add(entry);
+                    }
+                }
+            }
+            reschedule.forEach(this::schedule);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove matching aircraft without expiring them, they stay in the wheel until their slot comes up
+     * @return number of aircraft removed
+     */
+    public int removeIf(Predicate<TrackingRecord> filter, Consumer<TrackingRecord> onRemoved) {
+        int removed = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.removed || !filter.test(entry.record))
+                    continue;
+                entry.removed = true;
+                entries.remove(entry.addressICAO, entry);
+                grid.remove(entry.addressICAO, entry.cell);
+                onRemoved.accept(entry.record);
+                version.incrementAndGet();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return a snapshot of the live records
+     */
+    public Collection<TrackingRecord> values() {
+        List<TrackingRecord> values = new ArrayList<TrackingRecord>(entries.size());
+        entries.forEachValue(entry -> values.add(entry.record));
+        return values;
+    }
+
+    public void forEach(Consumer<TrackingRecord> action) {
+        entries.forEachValue(entry -> action.accept(entry.record));
+    }
+
+    /**
+     * @return live records inside the box, minLongitude &gt; maxLongitude for a box crossing the antimeridian
+     */
+    public List<TrackingRecord> queryBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        final boolean wraps = minLongitude > maxLongitude;
+        // an aircraft moving between cells can be seen in both
+        Map<Integer, TrackingRecord> result = new HashMap<Integer, TrackingRecord>();
+        grid.query(minLatitude, minLongitude, maxLatitude, maxLongitude, icao -> {
+            TrackingRecord record = get(icao);
+            if (record == null)
+                return;
+            double lat = record.getLatitude(), lon = record.getLongitude();
+            if (lat >= minLatitude && lat <= maxLatitude
+                    && (wraps ? lon >= minLongitude || lon <= maxLongitude : lon >= minLongitude && lon <= maxLongitude))
+                result.put(record.getAddressICAO(), record);
+        });
+        return new ArrayList<TrackingRecord>(result.values());
+    }
+
+    /**
+     * @param radius in meter
+     * @return live records within the great-circle distance of the position
+     */
+    public List<TrackingRecord> queryRadius(double latitude, double longitude, double radius) {
+        final double dLat = radius / EARTH_RADIUS / DEG_TO_RAD;
+        final double minLat = Math.max(-90.0, latitude - dLat), maxLat = Math.min(90.0, latitude + dLat);
+        double minLon = -180.0, maxLon = 180.0;
+        final double cosLat = Math.min(Math.cos(DEG_TO_RAD * minLat), Math.cos(DEG_TO_RAD * maxLat));
+        // circles reaching a pole or wider than the earth take every longitude
+        if (minLat > -90.0 && maxLat < 90.0 && dLat / cosLat < 180.0) {
+            final double dLon = dLat / cosLat;
+            minLon = longitude - dLon;
+            maxLon = longitude + dLon;
+            if (minLon < -180.0) minLon += 360.0;
+            if (maxLon > 180.0) maxLon -= 360.0;
+        }
+        Map<Integer, TrackingRecord> result = new HashMap<Integer, TrackingRecord>();
+        grid.query(minLat, minLon, maxLat, maxLon, icao -> {
+            TrackingRecord record = get(icao);
+            if (record != null && calcDistance(latitude, longitude, record.getLatitude(), record.getLongitude()) <= radius)
+                result.put(record.getAddressICAO(), record);
+        });
+        return new ArrayList<TrackingRecord>(result.values());
+    }
+
+    private void schedule(Entry entry) {
+        long tick = Math.floorDiv(entry.deadline, tickMillis);
+        long next = cursor;
+        // never behind the wheel, the slot being processed may already have been drained
+        if (next != Long.MIN_VALUE && tick <= next)
+            tick = next + 1;
+        wheel[slotOf(tick)].add(entry);
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.length);
+    }
+
+    private static class Entry {
+        final int addressICAO;
+        volatile TrackingRecord record;
+        volatile long deadline;
+        long cell;
+        boolean removed;
+
+        Entry(int addressICAO, TrackingRecord record, long deadline) {
+            this.addressICAO = addressICAO;
+            this.record = record;
+            this.deadline = deadline;
+        }
+    }
+}
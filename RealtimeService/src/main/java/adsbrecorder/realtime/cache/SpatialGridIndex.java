@@ -0,0 +1,94 @@
+package adsbrecorder.realtime.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform latitude / longitude grid of ICAO addresses. Callers keep track of the cell each aircraft
+ * is in and move it when its position changes, queries visit only the cells overlapping a box.
+ */
+class SpatialGridIndex {
+
+    final static long NO_CELL = Long.MIN_VALUE;
+
+    private final Map<Long, Set<Integer>> cells;
+    private final double cellSize;
+    private final int latCells;
+    private final int lonCells;
+
+    SpatialGridIndex(double cellSize) {
+        if (!(cellSize > 0.0 && cellSize <= 180.0))
+            throw new IllegalArgumentException("cellSize must be in (0, 180]");
+        this.cells = new ConcurrentHashMap<Long, Set<Integer>>();
+        this.cellSize = cellSize;
+        this.latCells = (int) Math.ceil(180.0 / cellSize);
+        this.lonCells = (int) Math.ceil(360.0 / cellSize);
+    }
+
+    long cellOf(double latitude, double longitude) {
+        return cellKey(latIndex(latitude), lonIndex(longitude));
+    }
+
+    void add(int addressICAO, long cell) {
+        cells.compute(cell, (key, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            set.add(addressICAO);
+            return set;
+        });
+    }
+
+    void remove(int addressICAO, long cell) {
+        cells.computeIfPresent(cell, (key, set) -> {
+            set.remove(addressICAO);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Visit every address in the cells overlapping the box, which may contain addresses outside of it.
+     * A box with minLongitude &gt; maxLongitude crosses the antimeridian.
+     */
+    void query(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, IntConsumer action) {
+        final int minLat = latIndex(minLatitude), maxLat = latIndex(maxLatitude);
+        final int minLon = lonIndex(minLongitude), maxLon = lonIndex(maxLongitude);
+        final boolean wraps = minLongitude > maxLongitude;
+        final long lonSpan = wraps ? (lonCells - minLon) + maxLon + 1L : maxLon - minLon + 1L;
+        final long cellCount = (maxLat - minLat + 1L) * lonSpan;
+        if (cellCount > cells.size()) {
+            // large box over a sparse grid, cheaper to look at the occupied cells only
+            cells.forEach((key, set) -> {
+                int lat = (int) (key >> 32), lon = (int) (long) key;
+                if (lat >= minLat && lat <= maxLat
+                        && (wraps ? lon >= minLon || lon <= maxLon : lon >= minLon && lon <= maxLon))
+                    set.forEach(icao -> action.accept(icao));
+            });
+            return;
+        }
+        for (int lat = minLat; lat <= maxLat; lat++) {
+            for (long i = 0; i < lonSpan; i++) {
+                Set<Integer> set = cells.get(cellKey(lat, (int) ((minLon + i) % lonCells)));
+                if (set != null)
+                    set.forEach(icao -> action.accept(icao));
+            }
+        }
+    }
+
+    private int latIndex(double latitude) {
+        return clamp((int) Math.floor((latitude + 90.0) / cellSize), latCells);
+    }
+
+    private int lonIndex(double longitude) {
+        return clamp((int) Math.floor((longitude + 180.0) / cellSize), lonCells);
+    }
+
+    private static int clamp(int index, int cells) {
+        return index < 0 ? 0 : index >= cells ? cells - 1 : index;
+    }
+
+    private static long cellKey(int lat, int lon) {
+        return ((long) lat << 32) | (lon & 0xFFFFFFFFL);
+    }
+}
@@ -3,73 +3,226 @@ package adsbrecorder.realtime.controller;
 import static java.util.Objects.requireNonNull;
 
 import java.util.Collection;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import adsbrecorder.common.utils.GeoMathUtils;
 import adsbrecorder.realtime.RealtimeServiceMappings;
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+import adsbrecorder.realtime.push.RealtimeDeltaPublisher;
+import adsbrecorder.realtime.shard.RealtimePeerQuery;
+import adsbrecorder.realtime.shard.ShardRebalanceListener;
+import adsbrecorder.realtime.snapshot.EncodedSnapshot;
+import adsbrecorder.realtime.snapshot.RealtimeSnapshotEncoder;
+import adsbrecorder.realtime.trail.RecentTrail;
+import adsbrecorder.realtime.trail.RecentTrailStore;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
 
 @RestController
-public class RealtimeDataController implements RealtimeServiceMappings, ListOfTopics, GeoMathUtils {
+public class RealtimeDataController implements RealtimeServiceMappings, ListOfTopics {
 
-    private Map<Integer, TrackingRecord> realtimeRecords;
+    private RealtimeRecordCache realtimeRecords;
+    private RealtimeDeltaPublisher realtimeDeltaPublisher;
+    private KinematicEstimator kinematicEstimator;
+    private RealtimePeerQuery realtimePeerQuery;
+    private ShardRebalanceListener shardRebalanceListener;
+    private RealtimeSnapshotEncoder realtimeSnapshotEncoder;
+    private RecentTrailStore recentTrails;
     private KafkaTemplate<String, TrackingRecord> kafkaTemplate;
 
-    @Value("${adsbrecorder.inactive_retention:60000}")
-    private long inactiveRetention;
+    @Value("${adsbrecorder.realtime.sharding.enabled:false}")
+    private boolean sharding;
 
     @Autowired
-    public RealtimeDataController(KafkaTemplate<String, TrackingRecord> kafkaTemplate) {
+    public RealtimeDataController(RealtimeRecordCache realtimeRecords,
+            RealtimeDeltaPublisher realtimeDeltaPublisher,
+            KinematicEstimator kinematicEstimator,
+            RealtimePeerQuery realtimePeerQuery,
+            ShardRebalanceListener shardRebalanceListener,
+            RealtimeSnapshotEncoder realtimeSnapshotEncoder,
+            RecentTrailStore recentTrails,
+            KafkaTemplate<String, TrackingRecord> kafkaTemplate) {
+        this.realtimeRecords = requireNonNull(realtimeRecords);
+        this.realtimeDeltaPublisher = requireNonNull(realtimeDeltaPublisher);
+        this.kinematicEstimator = requireNonNull(kinematicEstimator);
+        this.realtimePeerQuery = requireNonNull(realtimePeerQuery);
+        this.shardRebalanceListener = requireNonNull(shardRebalanceListener);
+        this.realtimeSnapshotEncoder = requireNonNull(realtimeSnapshotEncoder);
+        this.recentTrails = requireNonNull(recentTrails);
         this.kafkaTemplate = requireNonNull(kafkaTemplate);
-        this.realtimeRecords = new ConcurrentHashMap<Integer, TrackingRecord>();
     }
 
-    @Scheduled(fixedDelay = 10000) // 10s
+    @Scheduled(fixedDelayString = "${adsbrecorder.realtime.wheel_tick:1000}")
     public void cleanCache() {
-        final long now = System.currentTimeMillis();
-        Map<Integer, TrackingRecord> temp = new ConcurrentHashMap<Integer, TrackingRecord>(realtimeRecords.size() * 2);
-        this.realtimeRecords.values().forEach(record -> {
-            if (now - record.getRecordDate().getTime() < this.inactiveRetention) {
-                temp.put(record.getAddressICAO(), record);
-            } else {
-                System.err.println(String.format("Interleave record: %d (%s) @ %d", record.getAddressICAO(), record.getFlight(), record.getLastTimeSeen())); // TODO remove
-                kafkaTemplate.send(INTERLEAVING_RECORDS, record);
-            }
+        this.realtimeRecords.expire(System.currentTimeMillis(), record -> {
+            if (!shardRebalanceListener.isRevoked(record.getAddressICAO()))
+                kafkaTemplate.send(INTERLEAVING_RECORDS, PartitionKeys.of(record), record);
+            kinematicEstimator.remove(record.getAddressICAO());
+            recentTrails.remove(record.getAddressICAO());
+            realtimeDeltaPublisher.removed(record);
         });
-        this.realtimeRecords = temp;
     }
 
-    @KafkaListener(topics = REALTIME_DATA, groupId = "1")
-    public void receiveRealtimeRecords(TrackingRecord record) {
+    /**
+     * Apply a whole poll in one pass, in partition order so every aircraft sees its reports oldest first
+     */
+    @KafkaListener(topics = REALTIME_DATA, groupId = "${adsbrecorder.realtime.group_id:1}")
+    public void receiveRealtimeRecords(List<TrackingRecord> records) {
+        final double[] kinematics = new double[3];
+        for (TrackingRecord record : records) {
+            // the deserializer hands over null for a message it could not read
+            if (record != null && isValidAddressICAO(record.getAddressICAO()))
+                receiveRealtimeRecord(record, kinematics);
+        }
+    }
+
+    private void receiveRealtimeRecord(TrackingRecord record, double[] kinematics) {
         record.setSourceReceiver(null);
-        Integer icao = record.getAddressICAO();
-        if (this.realtimeRecords.containsKey(icao)) {
-            TrackingRecord prev = this.realtimeRecords.get(icao);
+        if (this.kinematicEstimator.update(record.getAddressICAO(), record.getLatitude(), record.getLongitude(),
+                record.getAltitude(), record.getLastTimeSeen(), kinematics)) {
             if (record.getHeading() == 0 || record.getHeading() == 360) {
-                record.setHeading((int) calcHeading(prev, record));
+                record.setHeading((int) Math.round(kinematics[KinematicEstimator.HEADING]) % 360);
             }
             if (record.getVelocity() == 0) {
-                record.setVelocity((int) mpsToKnots(calcGroundSpeed(prev, record)));
+                record.setVelocity((int) Math.round(kinematics[KinematicEstimator.SPEED]));
             }
             if (record.getVerticalRate() == 0) {
-                record.setVerticalRate((int) calcVerticalRate(prev, record));
+                record.setVerticalRate((int) Math.round(kinematics[KinematicEstimator.VERTICAL_RATE]));
             }
         }
-        this.realtimeRecords.put(icao, record);
+        this.realtimeRecords.put(record);
+        this.recentTrails.append(record.getAddressICAO(), record.getLatitude(), record.getLongitude(),
+                record.getAltitude(), record.getLastTimeSeen());
+        this.realtimeDeltaPublisher.updated(record);
     }
 
+    @GetMapping(value = GET_REALTIME_STREAM, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter realtimeStream() {
+        return this.realtimeDeltaPublisher.subscribe();
+    }
+
+    /**
+     * @param bbox minLongitude,minLatitude,maxLongitude,maxLatitude, minLongitude &gt; maxLongitude crosses the antimeridian
+     * @param radius in kilometer around lat,lon
+     * @param local only aircraft of this instance, otherwise sharded instances gather from their peers
+     */
     @GetMapping(GET_REALTIME_DATA)
-    public Collection<TrackingRecord> realtimeData() {
+    public ResponseEntity<?> realtimeData(@RequestParam(value = "bbox", required = false) String bbox,
+            @RequestParam(value = "lat", required = false) Double lat,
+            @RequestParam(value = "lon", required = false) Double lon,
+            @RequestParam(value = "radius", required = false) Double radius,
+            @RequestParam(value = RealtimePeerQuery.LOCAL_PARAM, defaultValue = "false") boolean local,
+            @RequestParam MultiValueMap<String, String> queryParams,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gather = sharding && !local && realtimePeerQuery.hasPeers();
+        if (!gather && bbox == null && lat == null && lon == null && radius == null)
+            return encodedSnapshot(realtimeSnapshotEncoder.current(), ifNoneMatch, acceptEncoding);
+        Collection<TrackingRecord> records = localRealtimeData(bbox, lat, lon, radius);
+        if (gather)
+            records = realtimePeerQuery.gather(records, queryParams);
+        return ResponseEntity.ok(records);
+    }
+
+    /**
+     * @param icao hexadecimal ICAO addresses, all aircraft if none given
+     * @param local only aircraft of this instance, otherwise sharded instances gather from their peers
+     */
+    @GetMapping(GET_REALTIME_TRAILS)
+    public ResponseEntity<?> realtimeTrails(@RequestParam(value = "icao", required = false) List<String> icao,
+            @RequestParam(value = RealtimePeerQuery.LOCAL_PARAM, defaultValue = "false") boolean local,
+            @RequestParam MultiValueMap<String, String> queryParams,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gather = sharding && !local && realtimePeerQuery.hasPeers();
+        if (!gather && icao == null)
+            return encodedSnapshot(realtimeSnapshotEncoder.currentTrails(), ifNoneMatch, acceptEncoding);
+        Collection<RecentTrail> trails = icao == null ? recentTrails.trails() : icao.stream()
+                .map(this::parseAddressICAO)
+                .map(recentTrails::trail)
+                .filter(trail -> trail != null)
+                .collect(Collectors.toList());
+        if (gather)
+            trails = realtimePeerQuery.gatherTrails(trails, queryParams);
+        return ResponseEntity.ok(trails);
+    }
+
+    private ResponseEntity<byte[]> encodedSnapshot(EncodedSnapshot snapshot, String ifNoneMatch, String acceptEncoding) {
+        if (ifNoneMatch != null && (ifNoneMatch.contains(snapshot.getETag()) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getETag())
+                    .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(snapshot.getETag())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(snapshot.getGzip());
+        }
+        return response.body(snapshot.getJson());
+    }
+
+    private Collection<TrackingRecord> localRealtimeData(String bbox, Double lat, Double lon, Double radius) {
+        if (bbox != null) {
+            double[] box = parseBoundingBox(bbox);
+            return this.realtimeRecords.queryBox(box[1], box[0], box[3], box[2]);
+        }
+        if (lat != null || lon != null || radius != null) {
+            if (lat == null || lon == null || radius == null || radius < 0.0 || Math.abs(lat) > 90.0 || Math.abs(lon) > 180.0)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "lat, lon and radius must be given together");
+            return this.realtimeRecords.queryRadius(lat, lon, radius * 1000.0);
+        }
         return this.realtimeRecords.values();
     }
+
+    private int parseAddressICAO(String icao) {
+        try {
+            int addressICAO = Integer.parseInt(icao.trim(), 16);
+            if (isValidAddressICAO(addressICAO))
+                return addressICAO;
+        } catch (NumberFormatException e) {
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "icao must be a 24-bit hexadecimal address");
+    }
+
+    private static boolean isValidAddressICAO(int addressICAO) {
+        return addressICAO >= 0 && addressICAO <= 0xFFFFFF;
+    }
+
+    private double[] parseBoundingBox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length == 4) {
+            try {
+                double[] box = new double[4];
+                for (int i = 0; i < 4; i++)
+                    box[i] = Double.parseDouble(parts[i].trim());
+                if (Math.abs(box[0]) <= 180.0 && Math.abs(box[2]) <= 180.0
+                        && Math.abs(box[1]) <= 90.0 && Math.abs(box[3]) <= 90.0 && box[1] <= box[3])
+                    return box;
+            } catch (NumberFormatException e) {
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bbox must be minLongitude,minLatitude,maxLongitude,maxLatitude");
+    }
 }
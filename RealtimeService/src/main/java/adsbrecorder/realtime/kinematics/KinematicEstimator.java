@@ -0,0 +1,203 @@
+package adsbrecorder.realtime.kinematics;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+import adsbrecorder.common.utils.GeoMathUtils;
+
+/**
+ * Constant-velocity Kalman filter per aircraft. Positions are tracked in metres on a plane tangent
+ * to the earth at an anchor near the aircraft, east, north and up are filtered independently,
+ * each with a [position, velocity] state and a symmetric 2x2 covariance.
+ * All state of an aircraft lives in one double array, an update is a fixed number of flops.
+ * Updates of one aircraft must come from one thread at a time, as they do per Kafka partition.
+ */
+public class KinematicEstimator implements GeoMathUtils {
+
+    public final static int SPEED = 0;         // knots
+    public final static int HEADING = 1;       // degrees, 0 to 360
+    public final static int VERTICAL_RATE = 2; // ft/min
+
+    public final static int LATITUDE = 0;
+    public final static int LONGITUDE = 1;
+    public final static int ALTITUDE = 2;      // ft
+
+    private final static double MPS_TO_FPM = 60.0 / FOOT_TO_METER;
+    // re-anchor before the flat earth approximation costs accuracy
+    private final static double MAX_ANCHOR_DISTANCE = 50_000.0;
+
+    // layout of a state array
+    private final static int TIME = 0, COUNT = 1, LAT0 = 2, LON0 = 3, METERS_PER_DEG_LON = 4;
+    private final static int EAST = 5, NORTH = 10, UP = 15; // each axis: position, velocity, p00, p01, p11
+    private final static int POS = 0, VEL = 1, P00 = 2, P01 = 3, P11 = 4;
+    private final static int STATE_SIZE = 20;
+
+    private final static double METERS_PER_DEG_LAT = EARTH_RADIUS * DEG_TO_RAD;
+
+    private final ConcurrentIntObjectMap<double[]> states;
+    private final double horizontalVariance;
+    private final double verticalVariance;
+    private final double horizontalNoise;
+    private final double verticalNoise;
+    private final double initialVelocityVariance;
+    private final double maxGap;
+
+    /**
+     * @param positionSigma standard deviation of reported positions in metres
+     * @param altitudeSigma standard deviation of reported altitudes in feet
+     * @param horizontalAcceleration expected horizontal acceleration in m/s², higher follows turns faster but smooths less
+     * @param verticalAcceleration expected vertical acceleration in m/s²
+     * @param maxGap milliseconds without reports after which a track starts over
+     */
+    public KinematicEstimator(double positionSigma, double altitudeSigma,
+            double horizontalAcceleration, double verticalAcceleration, long maxGap) {
+        this.states = new ConcurrentIntObjectMap<double[]>(4096);
+        this.horizontalVariance = positionSigma * positionSigma;
+        double altitudeMeters = altitudeSigma * FOOT_TO_METER;
+        this.verticalVariance = altitudeMeters * altitudeMeters;
+        this.horizontalNoise = horizontalAcceleration * horizontalAcceleration;
+        this.verticalNoise = verticalAcceleration * verticalAcceleration;
+        this.initialVelocityVariance = 300.0 * 300.0;
+        this.maxGap = maxGap / 1000.0;
+    }
+
+    /**
+     * Feed a reported position
+     * @param out receives SPEED, HEADING and VERTICAL_RATE once the track has at least two reports
+     * @return true if out holds an estimate
+     */
+    public boolean update(int addressICAO, double latitude, double longitude, int altitude, long time, double[] out) {
+        double[] s = states.get(addressICAO);
+        if (s == null) {
+            s = new double[STATE_SIZE];
+            states.put(addressICAO, s);
+        }
+        final double up = altitude * FOOT_TO_METER;
+        final double dt = (time - s[TIME]) / 1000.0;
+        if (s[COUNT] == 0.0 || dt > maxGap || dt < -maxGap) {
+            start(s, latitude, longitude, up, time);
+            return false;
+        }
+        double east = wrapLongitude(longitude - s[LON0]) * s[METERS_PER_DEG_LON];
+        double north = (latitude - s[LAT0]) * METERS_PER_DEG_LAT;
+        if (Math.abs(east) > MAX_ANCHOR_DISTANCE || Math.abs(north) > MAX_ANCHOR_DISTANCE) {
+            reanchor(s);
+            east = wrapLongitude(longitude - s[LON0]) * s[METERS_PER_DEG_LON];
+            north = (latitude - s[LAT0]) * METERS_PER_DEG_LAT;
+        }
+        // late reports are dropped, reports with the same timestamp refine the position without moving time
+        if (dt < 0.0)
+            return estimate(s, out);
+        if (dt > 0.0) {
+            predict(s, EAST, dt, horizontalNoise);
+            predict(s, NORTH, dt, horizontalNoise);
+            predict(s, UP, dt, verticalNoise);
+            s[TIME] = time;
+        }
+        correct(s, EAST, east, horizontalVariance);
+        correct(s, NORTH, north, horizontalVariance);
+        correct(s, UP, up, verticalVariance);
+        s[COUNT]++;
+        return estimate(s, out);
+    }
+
+    /**
+     * Current velocity estimate without a new report
+     * @return false if the aircraft has no estimate yet
+     */
+    public boolean velocity(int addressICAO, double[] out) {
+        double[] s = states.get(addressICAO);
+        return s != null && estimate(s, out);
+    }
+
+    /**
+     * Dead-reckoned position at the given time, from the last estimate moved along its velocity
+     * @param out receives LATITUDE, LONGITUDE and ALTITUDE
+     * @return false if the aircraft is unknown
+     */
+    public boolean position(int addressICAO, long time, double[] out) {
+        double[] s = states.get(addressICAO);
+        if (s == null || s[COUNT] == 0.0)
+            return false;
+        final double dt = s[COUNT] > 1.0 ? (time - s[TIME]) / 1000.0 : 0.0;
+        out[LATITUDE] = s[LAT0] + (s[NORTH + POS] + s[NORTH + VEL] * dt) / METERS_PER_DEG_LAT;
+        out[LONGITUDE] = s[LON0] + (s[EAST + POS] + s[EAST + VEL] * dt) / s[METERS_PER_DEG_LON];
+        out[ALTITUDE] = (s[UP + POS] + s[UP + VEL] * dt) / FOOT_TO_METER;
+        out[LONGITUDE] = wrapLongitude(out[LONGITUDE]);
+        return true;
+    }
+
+    public void remove(int addressICAO) {
+        states.remove(addressICAO);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    // into [-180, 180), so that a track crossing the antimeridian moves by a few metres, not around the earth
+    private static double wrapLongitude(double longitude) {
+        return longitude - 360.0 * Math.floor((longitude + 180.0) / 360.0);
+    }
+
+    private void start(double[] s, double latitude, double longitude, double up, long time) {
+        s[TIME] = time;
+        s[COUNT] = 1.0;
+        s[LAT0] = latitude;
+        s[LON0] = longitude;
+        s[METERS_PER_DEG_LON] = Math.max(1.0, METERS_PER_DEG_LAT * Math.cos(DEG_TO_RAD * latitude));
+        startAxis(s, EAST, 0.0, horizontalVariance);
+        startAxis(s, NORTH, 0.0, horizontalVariance);
+        startAxis(s, UP, up, verticalVariance);
+    }
+
+    private void startAxis(double[] s, int axis, double position, double variance) {
+        s[axis + POS] = position;
+        s[axis + VEL] = 0.0;
+        s[axis + P00] = variance;
+        s[axis + P01] = 0.0;
+        s[axis + P11] = initialVelocityVariance;
+    }
+
+    private void reanchor(double[] s) {
+        double latitude = s[LAT0] + s[NORTH + POS] / METERS_PER_DEG_LAT;
+        double longitude = wrapLongitude(s[LON0] + s[EAST + POS] / s[METERS_PER_DEG_LON]);
+        s[LAT0] = latitude;
+        s[LON0] = longitude;
+        s[METERS_PER_DEG_LON] = Math.max(1.0, METERS_PER_DEG_LAT * Math.cos(DEG_TO_RAD * latitude));
+        s[EAST + POS] = 0.0;
+        s[NORTH + POS] = 0.0;
+    }
+
+    // x = F x, P = F P F' + Q for F = [1 dt; 0 1] and white noise acceleration
+    private static void predict(double[] s, int axis, double dt, double noise) {
+        final double p00 = s[axis + P00], p01 = s[axis + P01], p11 = s[axis + P11];
+        final double dt2 = dt * dt;
+        s[axis + POS] += s[axis + VEL] * dt;
+        s[axis + P00] = p00 + 2.0 * dt * p01 + dt2 * p11 + noise * dt2 * dt2 / 4.0;
+        s[axis + P01] = p01 + dt * p11 + noise * dt2 * dt / 2.0;
+        s[axis + P11] = p11 + noise * dt2;
+    }
+
+    // standard update for a position measurement, H = [1 0]
+    private static void correct(double[] s, int axis, double measured, double variance) {
+        final double p00 = s[axis + P00], p01 = s[axis + P01], p11 = s[axis + P11];
+        final double innovation = measured - s[axis + POS];
+        final double k0 = p00 / (p00 + variance);
+        final double k1 = p01 / (p00 + variance);
+        s[axis + POS] += k0 * innovation;
+        s[axis + VEL] += k1 * innovation;
+        s[axis + P00] = p00 - k0 * p00;
+        s[axis + P01] = p01 - k0 * p01;
+        s[axis + P11] = p11 - k1 * p01;
+    }
+
+    private boolean estimate(double[] s, double[] out) {
+        if (s[COUNT] < 2.0)
+            return false;
+        final double ve = s[EAST + VEL], vn = s[NORTH + VEL];
+        out[SPEED] = mpsToKnots(Math.sqrt(ve * ve + vn * vn));
+        double heading = Math.atan2(ve, vn) / DEG_TO_RAD;
+        out[HEADING] = heading < 0.0 ? heading + 360.0 : heading;
+        out[VERTICAL_RATE] = s[UP + VEL] * MPS_TO_FPM;
+        return true;
+    }
+}
@@ -0,0 +1,214 @@
+package adsbrecorder.realtime.push;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+/**
+ * Pushes realtime changes to server-sent event subscribers: one "snapshot" event with every live aircraft,
+ * then a "delta" event per tick with the aircraft updated or removed since the previous one.
+ * Each subscriber has its own pending changes keyed by ICAO address, a subscriber still busy with
+ * an earlier event gets the merged changes of all ticks it missed, never a queue of stale events.
+ */
+@Component
+public class RealtimeDeltaPublisher {
+
+    public final static String SNAPSHOT_EVENT = "snapshot";
+    public final static String DELTA_EVENT = "delta";
+
+    // marks a removed aircraft in a change set, otherwise the value is the latest record
+    private final static Object REMOVED = new Object();
+
+    private RealtimeRecordCache realtimeRecords;
+    private ObjectMapper objectMapper;
+    private ConcurrentIntObjectMap<Object> changes;
+    private Set<Subscriber> subscribers;
+    private ExecutorService senders;
+    private long emitterTimeout;
+
+    @Autowired
+    public RealtimeDeltaPublisher(RealtimeRecordCache realtimeRecords, ObjectMapper objectMapper,
+            @Value("${adsbrecorder.realtime.push.sender_threads:4}") int senderThreads,
+            @Value("${adsbrecorder.realtime.push.timeout:1800000}") long emitterTimeout) {
+        this.realtimeRecords = requireNonNull(realtimeRecords);
+        this.objectMapper = requireNonNull(objectMapper);
+        this.changes = new ConcurrentIntObjectMap<Object>(4096);
+        this.subscribers = ConcurrentHashMap.newKeySet();
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "realtime-push");
+            t.setDaemon(true);
+            return t;
+        });
+        this.emitterTimeout = emitterTimeout;
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(emitterTimeout));
+    }
+
+    public SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        // registered before the snapshot is taken, so nothing between the two is missed
+        subscribers.add(subscriber);
+        senders.execute(() -> {
+            if (send(subscriber, SNAPSHOT_EVENT, Map.of("updated", realtimeRecords.values(), "removed", List.of())))
+                drain(subscriber);
+        });
+        return emitter;
+    }
+
+    public void updated(TrackingRecord record) {
+        if (!subscribers.isEmpty())
+            changes.put(record.getAddressICAO(), record);
+    }
+
+    public void removed(TrackingRecord record) {
+        if (!subscribers.isEmpty())
+            changes.put(record.getAddressICAO(), REMOVED);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${adsbrecorder.realtime.push.interval:1000}")
+    public void tick() {
+        if (changes.isEmpty())
+            return;
+        Map<Integer, Object> tickChanges = new HashMap<Integer, Object>();
+        changes.forEach((icao, change) -> {
+            tickChanges.put(icao, change);
+            // keeps a newer change that came in meanwhile for the next tick
+            changes.remove(icao, change);
+        });
+        SharedDelta shared = new SharedDelta(tickChanges);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.merge(shared))
+                senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        Object delta;
+        while ((delta = subscriber.take()) != null) {
+            if (!send(subscriber, DELTA_EVENT, delta))
+                return;
+        }
+    }
+
+    private boolean send(Subscriber subscriber, String event, Object data) {
+        try {
+            String json = data instanceof SharedDelta ? ((SharedDelta) data).json() : objectMapper.writeValueAsString(data);
+            subscriber.emitter.send(SseEmitter.event().name(event).data(json, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // gone, or completed by a timeout
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private Map<String, Object> toDelta(Map<Integer, Object> changes) {
+        List<Object> updated = new ArrayList<Object>();
+        List<Integer> removed = new ArrayList<Integer>();
+        changes.forEach((icao, change) -> {
+            if (change == REMOVED) {
+                removed.add(icao);
+            } else {
+                updated.add(change);
+            }
+        });
+        return Map.of("updated", updated, "removed", removed);
+    }
+
+    /**
+     * Changes of one tick, serialized once for all subscribers that are up to date
+     */
+    private class SharedDelta {
+        final Map<Integer, Object> changes;
+        String json;
+
+        SharedDelta(Map<Integer, Object> changes) {
+            this.changes = changes;
+        }
+
+        synchronized String json() throws JsonProcessingException {
+            if (json == null)
+                json = objectMapper.writeValueAsString(toDelta(changes));
+            return json;
+        }
+    }
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        Map<Integer, Object> pending;
+        // set while pending holds exactly the changes of this one tick
+        SharedDelta shared;
+        boolean sending;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.pending = new HashMap<Integer, Object>();
+            this.sending = true; // until the snapshot is out
+        }
+
+        /**
+         * @return true if the caller has to start sending
+         */
+        synchronized boolean merge(SharedDelta delta) {
+            shared = pending.isEmpty() ? delta : null;
+            pending.putAll(delta.changes);
+            if (sending)
+                return false;
+            sending = true;
+            return true;
+        }
+
+        /**
+         * @return the next delta to send, null when there is nothing left and sending stops
+         */
+        synchronized Object take() {
+            if (pending.isEmpty()) {
+                sending = false;
+                return null;
+            }
+            Object delta = shared != null ? shared : toDelta(pending);
+            pending = new HashMap<Integer, Object>();
+            shared = null;
+            return delta;
+        }
+    }
+}
@@ -49,6 +49,6 @@ public class RealtimeDataAuthenticationAdapter extends TokenAuthenticationAdapte
 
     @Override
     protected Collection<String> permitAllURLs() {
-        return List.of(GET_REALTIME_DATA);
+        return List.of(GET_REALTIME_DATA, GET_REALTIME_STREAM, GET_REALTIME_TRAILS);
     }
 }
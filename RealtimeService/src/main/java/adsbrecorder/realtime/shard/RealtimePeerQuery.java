@@ -0,0 +1,125 @@
+package adsbrecorder.realtime.shard;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import adsbrecorder.realtime.RealtimeServiceMappings;
+import adsbrecorder.realtime.trail.RecentTrail;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+/**
+ * Scatter-gather over the statically configured peers of a sharded RealtimeService.
+ * Peers are asked for their local aircraft only, so a query never fans out twice.
+ */
+@Component
+public class RealtimePeerQuery implements RealtimeServiceMappings {
+
+    public final static String LOCAL_PARAM = "local";
+
+    private List<String> peers;
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+
+    @Autowired
+    public RealtimePeerQuery(RestTemplateBuilder restTemplateBuilder,
+            @Value("${adsbrecorder.realtime.sharding.peers:}") String peers,
+            @Value("${adsbrecorder.realtime.sharding.peer_timeout:2000}") long peerTimeout) {
+        this.peers = Arrays.stream(peers.split(","))
+                .map(String::trim)
+                .filter(peer -> !peer.isEmpty())
+                .collect(Collectors.toList());
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(peerTimeout))
+                .setReadTimeout(Duration.ofMillis(peerTimeout))
+                .build();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "realtime-peer-query");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public boolean hasPeers() {
+        return !peers.isEmpty();
+    }
+
+    /**
+     * Run the query on every peer and merge with the local result. An aircraft reported by more than one
+     * instance, as happens while a partition moves, is taken from the latest record.
+     * Peers that fail or time out are left out.
+     */
+    public Collection<TrackingRecord> gather(Collection<TrackingRecord> local, MultiValueMap<String, String> queryParams) {
+        Map<Integer, TrackingRecord> merged = new HashMap<Integer, TrackingRecord>();
+        local.forEach(record -> merged.merge(record.getAddressICAO(), record, this::latest));
+        scatter(GET_REALTIME_DATA, queryParams, TrackingRecord[].class).forEach(records ->
+                Arrays.stream(records).forEach(record -> merged.merge(record.getAddressICAO(), record, this::latest)));
+        return merged.values();
+    }
+
+    /**
+     * Same as {@link #gather(Collection, MultiValueMap)} for recent trails
+     */
+    public Collection<RecentTrail> gatherTrails(Collection<RecentTrail> local, MultiValueMap<String, String> queryParams) {
+        Map<Integer, RecentTrail> merged = new HashMap<Integer, RecentTrail>();
+        local.forEach(trail -> merged.merge(trail.getAddressICAO(), trail, this::latest));
+        scatter(GET_REALTIME_TRAILS, queryParams, RecentTrail[].class).forEach(trails ->
+                Arrays.stream(trails).forEach(trail -> merged.merge(trail.getAddressICAO(), trail, this::latest)));
+        return merged.values();
+    }
+
+    private <T> List<T[]> scatter(String path, MultiValueMap<String, String> queryParams, Class<T[]> type) {
+        List<CompletableFuture<T[]>> futures = new ArrayList<CompletableFuture<T[]>>(peers.size());
+        for (String peer : peers) {
+            String uri = UriComponentsBuilder.fromHttpUrl(peer)
+                    .path(path)
+                    .queryParams(queryParams)
+                    .replaceQueryParam(LOCAL_PARAM, "true")
+                    .toUriString();
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return restTemplate.getForObject(uri, type);
+                } catch (RestClientException e) {
+                    System.err.println("Realtime peer " + peer + " failed: " + e.getMessage());
+                    return null;
+                }
+            }, executor));
+        }
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .filter(result -> result != null)
+                .collect(Collectors.toList());
+    }
+
+    private TrackingRecord latest(TrackingRecord a, TrackingRecord b) {
+        return a.getLastTimeSeen() >= b.getLastTimeSeen() ? a : b;
+    }
+
+    private RecentTrail latest(RecentTrail a, RecentTrail b) {
+        return a.getLastTimeSeen() >= b.getLastTimeSeen() ? a : b;
+    }
+}
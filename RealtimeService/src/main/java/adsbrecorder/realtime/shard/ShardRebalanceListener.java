@@ -0,0 +1,131 @@
+package adsbrecorder.realtime.shard;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+import adsbrecorder.realtime.trail.RecentTrailStore;
+import adsbrecorder.realtime.push.RealtimeDeltaPublisher;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+
+/**
+ * Keeps the realtime cache of a sharded instance in step with its RealtimeData partitions.
+ * A newly assigned partition is replayed from one retention period back, so the instance picks up
+ * every aircraft still live in it. State of a revoked partition is dropped, without interleaving,
+ * once the partition has not come back within a grace period, eager rebalancing revokes everything first.
+ */
+@Component
+public class ShardRebalanceListener implements ConsumerAwareRebalanceListener, ListOfTopics {
+
+    private RealtimeRecordCache realtimeRecords;
+    private RealtimeDeltaPublisher realtimeDeltaPublisher;
+    private KinematicEstimator kinematicEstimator;
+    private RecentTrailStore recentTrails;
+    private Set<Integer> ownedPartitions;
+    private Map<Integer, Long> revokedPartitions;
+    private volatile int partitionCount;
+    private long inactiveRetention;
+    private long revokeGrace;
+
+    @Autowired
+    public ShardRebalanceListener(RealtimeRecordCache realtimeRecords, RealtimeDeltaPublisher realtimeDeltaPublisher,
+            KinematicEstimator kinematicEstimator, RecentTrailStore recentTrails,
+            @Value("${adsbrecorder.inactive_retention:60000}") long inactiveRetention,
+            @Value("${adsbrecorder.realtime.sharding.revoke_grace:30000}") long revokeGrace) {
+        this.realtimeRecords = requireNonNull(realtimeRecords);
+        this.realtimeDeltaPublisher = requireNonNull(realtimeDeltaPublisher);
+        this.kinematicEstimator = requireNonNull(kinematicEstimator);
+        this.recentTrails = requireNonNull(recentTrails);
+        this.inactiveRetention = inactiveRetention;
+        this.revokeGrace = revokeGrace;
+        this.ownedPartitions = ConcurrentHashMap.newKeySet();
+        this.revokedPartitions = new ConcurrentHashMap<Integer, Long>();
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        final long now = System.currentTimeMillis();
+        partitions.stream()
+            .filter(tp -> REALTIME_DATA.equals(tp.topic()))
+            .forEach(tp -> {
+                ownedPartitions.remove(tp.partition());
+                revokedPartitions.put(tp.partition(), now);
+            });
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitionCount = consumer.partitionsFor(REALTIME_DATA).size();
+        final long from = System.currentTimeMillis() - inactiveRetention;
+        Map<TopicPartition, Long> replay = new HashMap<TopicPartition, Long>();
+        for (TopicPartition tp : partitions) {
+            if (!REALTIME_DATA.equals(tp.topic()))
+                continue;
+            // handed straight back after a revoke, the state is still here
+            boolean keptState = revokedPartitions.remove(tp.partition()) != null;
+            if (ownedPartitions.add(tp.partition()) && !keptState)
+                replay.put(tp, from);
+        }
+        if (replay.isEmpty())
+            return;
+        Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(replay);
+        offsets.forEach((tp, offset) -> {
+            if (offset != null) {
+                consumer.seek(tp, offset.offset());
+                System.err.println("Replay " + tp + " from offset " + offset.offset());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${adsbrecorder.realtime.wheel_tick:1000}")
+    public void dropRevokedState() {
+        if (revokedPartitions.isEmpty() || partitionCount == 0)
+            return;
+        final long oldest = System.currentTimeMillis() - revokeGrace;
+        Set<Integer> lost = new HashSet<Integer>();
+        revokedPartitions.forEach((partition, revokedAt) -> {
+            if (revokedAt < oldest)
+                lost.add(partition);
+        });
+        if (lost.isEmpty())
+            return;
+        final int partitions = partitionCount;
+        int dropped = realtimeRecords.removeIf(
+                record -> lost.contains(PartitionKeys.partitionOf(record.getAddressICAO(), partitions)),
+                record -> {
+                    kinematicEstimator.remove(record.getAddressICAO());
+                    recentTrails.remove(record.getAddressICAO());
+                    realtimeDeltaPublisher.removed(record);
+                });
+        lost.forEach(revokedPartitions::remove);
+        System.err.println("Dropped " + dropped + " aircraft of revoked partitions " + lost);
+    }
+
+    /**
+     * @return true if the aircraft belongs to a partition revoked within the grace period, another instance
+     * may own it by now and interleaves it when it expires there
+     */
+    public boolean isRevoked(int addressICAO) {
+        final int partitions = partitionCount;
+        if (revokedPartitions.isEmpty() || partitions == 0)
+            return false;
+        return revokedPartitions.containsKey(PartitionKeys.partitionOf(addressICAO, partitions));
+    }
+}
@@ -0,0 +1,41 @@
+package adsbrecorder.realtime.snapshot;
+
+/**
+ * Realtime records or trails at one version, already encoded as JSON and gzipped JSON
+ */
+public class EncodedSnapshot {
+
+    private final long version;
+    private final String etag;
+    private final byte[] json;
+    private final byte[] gzip;
+
+    EncodedSnapshot(long version, String etag, byte[] json, byte[] gzip) {
+        this.version = version;
+        this.etag = etag;
+        this.json = json;
+        this.gzip = gzip;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * @return shared bytes, not to be modified
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * @return shared bytes, not to be modified
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+}
@@ -0,0 +1,89 @@
+package adsbrecorder.realtime.snapshot;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.trail.RecentTrailStore;
+
+/**
+ * Encodes the full realtime collection and the recent trails at most once per tick, however many clients poll them
+ */
+@Component
+public class RealtimeSnapshotEncoder {
+
+    private RealtimeRecordCache realtimeRecords;
+    private RecentTrailStore recentTrails;
+    private ObjectMapper objectMapper;
+    // a new id per process, so that ETags of a restarted instance never match old ones
+    private String epoch;
+    private volatile EncodedSnapshot current;
+    private volatile EncodedSnapshot currentTrails;
+
+    @Autowired
+    public RealtimeSnapshotEncoder(RealtimeRecordCache realtimeRecords, RecentTrailStore recentTrails,
+            ObjectMapper objectMapper) {
+        this.realtimeRecords = requireNonNull(realtimeRecords);
+        this.recentTrails = requireNonNull(recentTrails);
+        this.objectMapper = requireNonNull(objectMapper);
+        this.epoch = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    /**
+     * @return the latest snapshot, built now if none exists yet
+     */
+    public EncodedSnapshot current() {
+        EncodedSnapshot snapshot = current;
+        if (snapshot == null) {
+            encode();
+            snapshot = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the latest trails of all aircraft, built now if none exists yet
+     */
+    public EncodedSnapshot currentTrails() {
+        EncodedSnapshot snapshot = currentTrails;
+        if (snapshot == null) {
+            encode();
+            snapshot = currentTrails;
+        }
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${adsbrecorder.realtime.push.interval:1000}")
+    public synchronized void encode() {
+        // versions are read before the data, a change in between only causes one extra encoding next tick
+        final long version = realtimeRecords.getVersion();
+        if (current == null || current.getVersion() != version)
+            current = encode(version, "", realtimeRecords.values());
+        final long trailsVersion = recentTrails.getVersion();
+        if (currentTrails == null || currentTrails.getVersion() != trailsVersion)
+            currentTrails = encode(trailsVersion, "t", recentTrails.trails());
+    }
+
+    private EncodedSnapshot encode(long version, String prefix, Object value) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(json);
+            }
+            return new EncodedSnapshot(version, "\"" + epoch + "-" + prefix + version + "\"", json, out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package adsbrecorder.realtime.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Date;
+import java.util.function.Consumer;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+/**
+ * Memory-mapped file of fixed 80 byte tracking record slots in two regions.
+ * A checkpoint is written into the inactive region, forced to disk and only then made active
+ * through the header, so a crash half way through a checkpoint leaves the previous one intact.
+ */
+public class RealtimeSnapshotFile implements Closeable {
+
+    public final static int SLOT_SIZE = 80;
+
+    private final static int MAGIC = 0x41445352; // "ADSR"
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 48;
+    private final static int FLIGHT_LENGTH = 8;
+    private final static int ID_LENGTH = 12;
+    private final static int FLAG_ID = 1;
+    private final static int FLAG_RECORD_DATE = 2;
+
+    // header offsets
+    private final static int H_MAGIC = 0, H_VERSION = 4, H_SLOT_SIZE = 8, H_SLOTS = 12, H_ACTIVE = 16;
+    private final static int H_COUNT = 20; // int per region
+    private final static int H_TIME = 32;  // long per region
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+
+    /**
+     * Open or create the file, a file with a different layout is started over
+     * @param slots records per region, checkpoints of more aircraft are cut off
+     */
+    public RealtimeSnapshotFile(Path path, int slots) throws IOException {
+        this.slots = slots;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long size = HEADER_SIZE + 2L * slots * SLOT_SIZE;
+        boolean fresh = channel.size() != size;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (!fresh && (buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != VERSION
+                || buffer.getInt(H_SLOT_SIZE) != SLOT_SIZE || buffer.getInt(H_SLOTS) != slots))
+            fresh = true;
+        if (fresh) {
+            for (int i = 0; i < HEADER_SIZE; i += 4)
+                buffer.putInt(i, 0);
+            buffer.putInt(H_MAGIC, MAGIC);
+            buffer.putInt(H_VERSION, VERSION);
+            buffer.putInt(H_SLOT_SIZE, SLOT_SIZE);
+            buffer.putInt(H_SLOTS, slots);
+            buffer.force();
+        }
+    }
+
+    /**
+     * @return number of records written
+     */
+    public synchronized int write(Collection<TrackingRecord> records, long time) {
+        final int region = 1 - buffer.getInt(H_ACTIVE);
+        int count = 0;
+        for (TrackingRecord record : records) {
+            if (count == slots)
+                break;
+            writeSlot(slotOffset(region, count++), record);
+        }
+        buffer.force();
+        buffer.putInt(H_COUNT + 4 * region, count);
+        buffer.putLong(H_TIME + 8 * region, time);
+        buffer.putInt(H_ACTIVE, region);
+        buffer.force();
+        return count;
+    }
+
+    /**
+     * @return time of the last complete checkpoint, 0 if there is none
+     */
+    public synchronized long read(Consumer<TrackingRecord> action) {
+        final int region = buffer.getInt(H_ACTIVE);
+        final int count = Math.min(slots, buffer.getInt(H_COUNT + 4 * region));
+        for (int i = 0; i < count; i++)
+            action.accept(readSlot(slotOffset(region, i)));
+        return buffer.getLong(H_TIME + 8 * region);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slotOffset(int region, int slot) {
+        return HEADER_SIZE + (region * slots + slot) * SLOT_SIZE;
+    }
+
+    private void writeSlot(int offset, TrackingRecord record) {
+        byte[] id = idBytes(record.getId());
+        int flags = (id == null ? 0 : FLAG_ID) | (record.getRecordDate() == null ? 0 : FLAG_RECORD_DATE);
+        buffer.putInt(offset, record.getAddressICAO());
+        buffer.putInt(offset + 4, record.getAltitude());
+        buffer.putDouble(offset + 8, record.getLatitude());
+        buffer.putDouble(offset + 16, record.getLongitude());
+        buffer.putInt(offset + 24, record.getVelocity());
+        buffer.putInt(offset + 28, record.getHeading());
+        buffer.putInt(offset + 32, record.getVerticalRate());
+        buffer.putInt(offset + 36, flags);
+        buffer.putLong(offset + 40, record.getLastTimeSeen());
+        buffer.putLong(offset + 48, record.getRecordDate() == null ? 0L : record.getRecordDate().getTime());
+        byte[] flight = record.getFlight() == null ? new byte[0] : record.getFlight().getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < FLIGHT_LENGTH; i++)
+            buffer.put(offset + 56 + i, i < flight.length ? flight[i] : 0);
+        for (int i = 0; i < ID_LENGTH; i++)
+            buffer.put(offset + 64 + i, id == null ? 0 : id[i]);
+    }
+
+    private TrackingRecord readSlot(int offset) {
+        TrackingRecord record = new TrackingRecord();
+        int flags = buffer.getInt(offset + 36);
+        record.setAddressICAO(buffer.getInt(offset));
+        record.setAltitude(buffer.getInt(offset + 4));
+        record.setLatitude(buffer.getDouble(offset + 8));
+        record.setLongitude(buffer.getDouble(offset + 16));
+        record.setVelocity(buffer.getInt(offset + 24));
+        record.setHeading(buffer.getInt(offset + 28));
+        record.setVerticalRate(buffer.getInt(offset + 32));
+        record.setLastTimeSeen(buffer.getLong(offset + 40));
+        if ((flags & FLAG_RECORD_DATE) != 0)
+            record.setRecordDate(new Date(buffer.getLong(offset + 48)));
+        int length = 0;
+        while (length < FLIGHT_LENGTH && buffer.get(offset + 56 + length) != 0)
+            length++;
+        if (length > 0) {
+            byte[] flight = new byte[length];
+            for (int i = 0; i < length; i++)
+                flight[i] = buffer.get(offset + 56 + i);
+            record.setFlight(new String(flight, StandardCharsets.US_ASCII));
+        }
+        if ((flags & FLAG_ID) != 0) {
+            byte[] id = new byte[ID_LENGTH];
+            for (int i = 0; i < ID_LENGTH; i++)
+                id[i] = buffer.get(offset + 64 + i);
+            record.setId(new BigInteger(1, id));
+        }
+        return record;
+    }
+
+    // ids are ObjectIds as numbers, anything that does not fit into 12 bytes is left out
+    private static byte[] idBytes(BigInteger id) {
+        if (id == null || id.signum() < 0 || id.bitLength() > ID_LENGTH * 8)
+            return null;
+        byte[] bytes = id.toByteArray();
+        byte[] fixed = new byte[ID_LENGTH];
+        int length = Math.min(bytes.length, ID_LENGTH);
+        System.arraycopy(bytes, bytes.length - length, fixed, ID_LENGTH - length, length);
+        return fixed;
+    }
+}
@@ -0,0 +1,82 @@
+package adsbrecorder.realtime.snapshot;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+
+/**
+ * Checkpoints the realtime cache periodically and on shutdown, and restores it before the Kafka
+ * listeners start, so a restarted instance keeps deriving heading and speed from the previous records
+ */
+@Component
+public class RealtimeSnapshotTask {
+
+    private RealtimeRecordCache realtimeRecords;
+    private KinematicEstimator kinematicEstimator;
+    private RealtimeSnapshotFile snapshotFile;
+
+    // empty disables checkpoints
+    @Value("${adsbrecorder.realtime.snapshot.file:}")
+    private String file;
+
+    @Value("${adsbrecorder.realtime.snapshot.slots:16384}")
+    private int slots;
+
+    @Value("${adsbrecorder.inactive_retention:60000}")
+    private long inactiveRetention;
+
+    // sharded instances rebuild from their partitions instead, they may not own what they had before
+    @Value("${adsbrecorder.realtime.sharding.enabled:false}")
+    private boolean sharding;
+
+    @Autowired
+    public RealtimeSnapshotTask(RealtimeRecordCache realtimeRecords, KinematicEstimator kinematicEstimator) {
+        this.realtimeRecords = requireNonNull(realtimeRecords);
+        this.kinematicEstimator = requireNonNull(kinematicEstimator);
+    }
+
+    @PostConstruct
+    public void restore() throws IOException {
+        if (file.isEmpty())
+            return;
+        snapshotFile = new RealtimeSnapshotFile(Paths.get(file), slots);
+        if (sharding)
+            return;
+        final long oldest = System.currentTimeMillis() - inactiveRetention;
+        int[] counts = new int[2];
+        double[] kinematics = new double[3];
+        long time = snapshotFile.read(record -> {
+            long seen = record.getRecordDate() == null ? record.getLastTimeSeen() : record.getRecordDate().getTime();
+            if (seen > oldest && realtimeRecords.get(record.getAddressICAO()) == null) {
+                realtimeRecords.put(record);
+                // seeds the track, the first report after the restart has an estimate again
+                kinematicEstimator.update(record.getAddressICAO(), record.getLatitude(), record.getLongitude(),
+                        record.getAltitude(), record.getLastTimeSeen(), kinematics);
+                counts[0]++;
+            } else {
+                counts[1]++;
+            }
+        });
+        if (time > 0L)
+            System.err.println(String.format("Restored %d aircraft from checkpoint at %d, %d too old", counts[0], time, counts[1]));
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${adsbrecorder.realtime.snapshot.interval:10000}")
+    public void checkpoint() {
+        if (snapshotFile != null)
+            snapshotFile.write(realtimeRecords.values(), System.currentTimeMillis());
+    }
+}
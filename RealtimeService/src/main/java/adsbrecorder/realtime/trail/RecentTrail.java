@@ -0,0 +1,71 @@
+package adsbrecorder.realtime.trail;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Recent positions of one aircraft, oldest first, as parallel arrays
+ */
+public class RecentTrail {
+
+    private int addressICAO;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int[] altitudes;
+    private long[] times;
+
+    public RecentTrail() {
+    }
+
+    public RecentTrail(int addressICAO, int length) {
+        this.addressICAO = addressICAO;
+        this.latitudes = new double[length];
+        this.longitudes = new double[length];
+        this.altitudes = new int[length];
+        this.times = new long[length];
+    }
+
+    public int getAddressICAO() {
+        return addressICAO;
+    }
+
+    public void setAddressICAO(int addressICAO) {
+        this.addressICAO = addressICAO;
+    }
+
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    public void setLatitudes(double[] latitudes) {
+        this.latitudes = latitudes;
+    }
+
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    public void setLongitudes(double[] longitudes) {
+        this.longitudes = longitudes;
+    }
+
+    public int[] getAltitudes() {
+        return altitudes;
+    }
+
+    public void setAltitudes(int[] altitudes) {
+        this.altitudes = altitudes;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public void setTimes(long[] times) {
+        this.times = times;
+    }
+
+    @JsonIgnore
+    public long getLastTimeSeen() {
+        return times.length == 0 ? 0L : times[times.length - 1];
+    }
+}
@@ -0,0 +1,176 @@
+package adsbrecorder.realtime.trail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.common.utils.ConcurrentIntLongMap;
+
+/**
+ * The last positions of every live aircraft, in ring buffers that are slices of a few primitive arrays
+ * allocated once. Latitude and longitude are packed into one long as 1e-7 degrees.
+ * An aircraft holds its slot until it is removed, when all slots are taken new aircraft get no trail.
+ */
+@Component
+public class RecentTrailStore {
+
+    private final static double SCALE = 1e7;
+    // ICAO addresses are 24 bits
+    private final static int NO_OWNER = -1;
+    private final static int LOCK_STRIPES = 64;
+    private final static long NO_SLOT = -1L;
+
+    private final int length;
+    private final long[] positions;
+    private final int[] altitudes;
+    private final long[] times;
+    private final int[] heads;
+    private final int[] counts;
+    private final int[] owners;
+    private final Object[] locks;
+    private final ConcurrentIntLongMap slots;
+    private final int[] freeSlots;
+    private int freeCount;
+    private final AtomicLong version;
+
+    @Autowired
+    public RecentTrailStore(@Value("${adsbrecorder.realtime.trail.length:64}") int length,
+            @Value("${adsbrecorder.realtime.trail.max_aircraft:8192}") int maxAircraft) {
+        if (length < 1 || maxAircraft < 1)
+            throw new IllegalArgumentException("Trail length and capacity must be positive");
+        this.length = length;
+        this.positions = new long[length * maxAircraft];
+        this.altitudes = new int[length * maxAircraft];
+        this.times = new long[length * maxAircraft];
+        this.heads = new int[maxAircraft];
+        this.counts = new int[maxAircraft];
+        this.owners = new int[maxAircraft];
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+        this.slots = new ConcurrentIntLongMap(NO_SLOT, maxAircraft);
+        this.freeSlots = new int[maxAircraft];
+        for (int i = 0; i < maxAircraft; i++) {
+            owners[i] = NO_OWNER;
+            freeSlots[i] = maxAircraft - 1 - i;
+        }
+        this.freeCount = maxAircraft;
+        this.version = new AtomicLong();
+    }
+
+    /**
+     * Add a position to the trail of an aircraft. Positions older than the latest one are dropped,
+     * and so are repeats of the latest position.
+     * @return false if the position was dropped
+     */
+    public boolean append(int addressICAO, double latitude, double longitude, int altitude, long time) {
+        final long position = pack(latitude, longitude);
+        while (true) {
+            final int slot = (int) slots.computeIfAbsent(addressICAO, this::allocate);
+            if (slot < 0)
+                return false;
+            synchronized (locks[slot % LOCK_STRIPES]) {
+                // removed between the lookup and the lock, the slot may already belong to another aircraft
+                if (owners[slot] != addressICAO)
+                    continue;
+                final int base = slot * length;
+                if (counts[slot] > 0) {
+                    final int last = base + (heads[slot] + length - 1) % length;
+                    if (times[last] > time || (positions[last] == position && altitudes[last] == altitude))
+                        return false;
+                }
+                final int index = base + heads[slot];
+                positions[index] = position;
+                altitudes[index] = altitude;
+                times[index] = time;
+                heads[slot] = (heads[slot] + 1) % length;
+                if (counts[slot] < length)
+                    counts[slot]++;
+            }
+            version.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * @return a copy of the trail, oldest position first, or null for an unknown aircraft
+     */
+    public RecentTrail trail(int addressICAO) {
+        final int slot = (int) slots.get(addressICAO);
+        if (slot < 0)
+            return null;
+        synchronized (locks[slot % LOCK_STRIPES]) {
+            if (owners[slot] != addressICAO)
+                return null;
+            final int count = counts[slot];
+            final int base = slot * length;
+            final int first = (heads[slot] + length - count) % length;
+            RecentTrail trail = new RecentTrail(addressICAO, count);
+            for (int i = 0; i < count; i++) {
+                final int index = base + (first + i) % length;
+                trail.getLatitudes()[i] = (positions[index] >> 32) / SCALE;
+                trail.getLongitudes()[i] = (int) positions[index] / SCALE;
+                trail.getAltitudes()[i] = altitudes[index];
+                trail.getTimes()[i] = times[index];
+            }
+            return trail;
+        }
+    }
+
+    public List<RecentTrail> trails() {
+        List<RecentTrail> trails = new ArrayList<RecentTrail>(slots.size());
+        slots.forEach((addressICAO, slot) -> {
+            RecentTrail trail = trail(addressICAO);
+            if (trail != null)
+                trails.add(trail);
+        });
+        return trails;
+    }
+
+    public void remove(int addressICAO) {
+        final int slot = (int) slots.remove(addressICAO);
+        if (slot < 0)
+            return;
+        synchronized (locks[slot % LOCK_STRIPES]) {
+            owners[slot] = NO_OWNER;
+            counts[slot] = 0;
+            heads[slot] = 0;
+        }
+        synchronized (freeSlots) {
+            freeSlots[freeCount++] = slot;
+        }
+        version.incrementAndGet();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return a number that changes whenever a trail changes
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private long allocate(int addressICAO) {
+        int slot;
+        synchronized (freeSlots) {
+            if (freeCount == 0)
+                return NO_SLOT;
+            slot = freeSlots[--freeCount];
+        }
+        synchronized (locks[slot % LOCK_STRIPES]) {
+            owners[slot] = addressICAO;
+        }
+        return slot;
+    }
+
+    private static long pack(double latitude, double longitude) {
+        return ((long) (int) Math.round(latitude * SCALE) << 32) | ((int) Math.round(longitude * SCALE) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,75 @@
+package adsbrecorder.realtime.test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+
+/**
+ * Cost of one estimator update, spread over a few thousand aircraft reporting twice a second.
+ * Run the main method with the test classpath, e.g. java -cp ... org.openjdk.jmh.Main KinematicEstimatorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(KinematicEstimatorBenchmark.AIRCRAFT)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KinematicEstimatorBenchmark {
+
+    final static int AIRCRAFT = 4096;
+
+    private KinematicEstimator estimator;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] out;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        estimator = new KinematicEstimator(30.0, 25.0, 3.0, 1.0, 60000L);
+        Random random = new Random(1L);
+        latitudes = new double[AIRCRAFT];
+        longitudes = new double[AIRCRAFT];
+        for (int i = 0; i < AIRCRAFT; i++) {
+            latitudes[i] = random.nextDouble() * 120.0 - 60.0;
+            longitudes[i] = random.nextDouble() * 360.0 - 180.0;
+        }
+        out = new double[3];
+        now = 1_560_000_000_000L;
+    }
+
+    @Benchmark
+    public double update() {
+        now += 500L;
+        double sum = 0.0;
+        for (int i = 0; i < AIRCRAFT; i++) {
+            latitudes[i] += 0.0005;
+            if (estimator.update(i, latitudes[i], longitudes[i], 35000, now, out))
+                sum += out[KinematicEstimator.SPEED];
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KinematicEstimatorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,189 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.common.utils.GeoMathUtils;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public class TestKinematicEstimator implements GeoMathUtils {
+
+    private final static int ICAO = 0x7C6DB8;
+    private final static double METERS_PER_DEG_LAT = EARTH_RADIUS * DEG_TO_RAD;
+
+    @Test
+    public void testAccuracyAgainstTwoPoint() {
+        List<Report> track = track(new Random(42L));
+        KinematicEstimator estimator = new KinematicEstimator(30.0, 25.0, 3.0, 1.0, 60000L);
+        double[] out = new double[3];
+        double[] kalman = new double[3], twoPoint = new double[3];
+        int samples = 0;
+        TrackingRecord prev = null;
+        for (int i = 0; i < track.size(); i++) {
+            Report report = track.get(i);
+            TrackingRecord record = report.record;
+            boolean estimated = estimator.update(ICAO, record.getLatitude(), record.getLongitude(),
+                    record.getAltitude(), record.getLastTimeSeen(), out);
+            // same timestamp as the previous report, the two-point method divides by zero there
+            if (prev != null && prev.getLastTimeSeen() == record.getLastTimeSeen()) {
+                assertTrue(estimated);
+                for (double v : out)
+                    assertTrue(Double.isFinite(v));
+                continue;
+            }
+            if (i >= 20 && prev != null) {
+                samples++;
+                accumulate(kalman, report, out[KinematicEstimator.SPEED], out[KinematicEstimator.HEADING],
+                        out[KinematicEstimator.VERTICAL_RATE]);
+                accumulate(twoPoint, report, mpsToKnots(calcGroundSpeed(prev, record)), calcHeading(prev, record),
+                        calcVerticalRate(prev, record));
+            }
+            prev = record;
+        }
+        for (int k = 0; k < 3; k++) {
+            kalman[k] = Math.sqrt(kalman[k] / samples);
+            twoPoint[k] = Math.sqrt(twoPoint[k] / samples);
+            assertTrue(Double.isFinite(kalman[k]));
+            // vertical rate lags the steps in and out of the climb, horizontally the gain is larger
+            assertTrue(kalman[k] * (k == 2 ? 2.0 : 3.0) < twoPoint[k], "kalman " + kalman[k] + " two-point " + twoPoint[k]);
+        }
+        assertTrue(kalman[0] < 10.0, "speed rms " + kalman[0]);
+        assertTrue(kalman[1] < 5.0, "heading rms " + kalman[1]);
+        assertTrue(kalman[2] < 300.0, "vertical rate rms " + kalman[2]);
+    }
+
+    @Test
+    public void testDeadReckoning() {
+        List<Report> track = track(new Random(7L));
+        KinematicEstimator estimator = new KinematicEstimator(30.0, 25.0, 3.0, 1.0, 60000L);
+        double[] out = new double[3];
+        for (Report report : track) {
+            TrackingRecord record = report.record;
+            estimator.update(ICAO, record.getLatitude(), record.getLongitude(),
+                    record.getAltitude(), record.getLastTimeSeen(), out);
+        }
+        // the track ends flying straight, due west and level
+        Report last = track.get(track.size() - 1);
+        long ahead = last.record.getLastTimeSeen() + 10000L;
+        assertTrue(estimator.position(ICAO, ahead, out));
+        double expectedLongitude = last.longitude - 10.0 * last.speed
+                / (METERS_PER_DEG_LAT * Math.cos(DEG_TO_RAD * last.latitude));
+        double error = calcDistance(last.latitude, expectedLongitude,
+                out[KinematicEstimator.LATITUDE], out[KinematicEstimator.LONGITUDE]);
+        assertTrue(error < 150.0, "dead reckoning error " + error);
+        assertEquals(last.altitude, out[KinematicEstimator.ALTITUDE], 100.0);
+    }
+
+    @Test
+    public void testAntimeridian() {
+        KinematicEstimator estimator = new KinematicEstimator(30.0, 25.0, 3.0, 1.0, 60000L);
+        double[] out = new double[3];
+        // 250 kt due east along the equator, across 180 degrees
+        final double step = 250.0 / 1.94384 / METERS_PER_DEG_LAT;
+        double longitude = 179.98;
+        for (long time = 0L; time <= 20_000L; time += 1000L) {
+            estimator.update(ICAO, 0.0, longitude, 10000, time, out);
+            longitude += step;
+            if (longitude >= 180.0)
+                longitude -= 360.0;
+        }
+        assertEquals(250.0, out[KinematicEstimator.SPEED], 5.0);
+        assertEquals(90.0, out[KinematicEstimator.HEADING], 2.0);
+        assertTrue(estimator.position(ICAO, 20_000L, out));
+        assertEquals(longitude - step, out[KinematicEstimator.LONGITUDE], 0.001);
+    }
+
+    @Test
+    public void testTrackLifecycle() {
+        KinematicEstimator estimator = new KinematicEstimator(30.0, 25.0, 3.0, 1.0, 60000L);
+        double[] out = new double[3];
+        assertFalse(estimator.update(ICAO, -33.9, 151.2, 10000, 1000L, out));
+        assertFalse(estimator.velocity(ICAO, out));
+        assertTrue(estimator.update(ICAO, -33.9, 151.201, 10000, 2000L, out));
+        // late reports leave the estimate alone, long gaps start over
+        assertTrue(estimator.update(ICAO, -33.9, 151.3, 10000, 1500L, out));
+        assertTrue(estimator.update(ICAO, -33.9, 151.202, 10000, 3000L, out));
+        assertFalse(estimator.update(ICAO, -33.9, 151.5, 10000, 70000L, out));
+        assertEquals(1, estimator.size());
+        estimator.remove(ICAO);
+        assertEquals(0, estimator.size());
+        assertFalse(estimator.position(ICAO, 70000L, out));
+    }
+
+    private static void accumulate(double[] sums, Report report, double speed, double heading, double verticalRate) {
+        double dh = Math.abs(heading - report.heading) % 360.0;
+        dh = Math.min(dh, 360.0 - dh);
+        double ds = speed - report.speed * 1.94384;
+        double dv = verticalRate - report.verticalRate / FOOT_TO_METER * 60.0;
+        sums[0] += ds * ds;
+        sums[1] += dh * dh;
+        sums[2] += dv * dv;
+    }
+
+    /**
+     * A 250 kt departure: north, a climbing standard rate turn to the west, then level westbound.
+     * Positions carry 10 m of noise, altitudes are quantized to 25 ft as in ADS-B,
+     * timestamps are receive times off by up to 50 ms, and every 15th report arrives twice.
+     */
+    private static List<Report> track(Random random) {
+        List<Report> track = new ArrayList<Report>();
+        double latitude = -33.95, longitude = 151.18, altitude = 3000.0 * FOOT_TO_METER;
+        double heading = 0.0, speed = 250.0 / 1.94384;
+        long time = 1_560_000_000_000L;
+        final double step = 0.5;
+        for (int i = 0; i < 600; i++) {
+            double t = i * step;
+            double turnRate = t >= 60.0 && t < 90.0 ? -3.0 : 0.0;
+            double climb = t >= 60.0 && t < 120.0 ? 2000.0 * FOOT_TO_METER / 60.0 : 0.0;
+            heading = (heading + turnRate * step + 360.0) % 360.0;
+            double north = speed * Math.cos(DEG_TO_RAD * heading) * step;
+            double east = speed * Math.sin(DEG_TO_RAD * heading) * step;
+            latitude += north / METERS_PER_DEG_LAT;
+            longitude += east / (METERS_PER_DEG_LAT * Math.cos(DEG_TO_RAD * latitude));
+            altitude += climb * step;
+            long seen = time + Math.round(t * 1000.0) + random.nextInt(101) - 50;
+            Report report = new Report(latitude, longitude, altitude / FOOT_TO_METER, heading, speed, climb);
+            report.record = noisy(random, report, seen);
+            track.add(report);
+            if (i % 15 == 14) {
+                Report again = new Report(latitude, longitude, altitude / FOOT_TO_METER, heading, speed, climb);
+                again.record = noisy(random, report, seen);
+                track.add(again);
+            }
+        }
+        return track;
+    }
+
+    private static TrackingRecord noisy(Random random, Report report, long seen) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(ICAO);
+        double north = random.nextGaussian() * 10.0, east = random.nextGaussian() * 10.0;
+        record.setLatitude(report.latitude + north / METERS_PER_DEG_LAT);
+        record.setLongitude(report.longitude + east / (METERS_PER_DEG_LAT * Math.cos(DEG_TO_RAD * report.latitude)));
+        record.setAltitude((int) Math.round(report.altitude / 25.0) * 25);
+        record.setLastTimeSeen(seen);
+        return record;
+    }
+
+    private static class Report {
+        final double latitude, longitude, altitude, heading, speed, verticalRate;
+        TrackingRecord record;
+
+        Report(double latitude, double longitude, double altitude, double heading, double speed, double verticalRate) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+            this.heading = heading;
+            this.speed = speed;
+            this.verticalRate = verticalRate;
+        }
+    }
+}
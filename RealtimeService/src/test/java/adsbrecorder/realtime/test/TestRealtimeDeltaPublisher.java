@@ -0,0 +1,138 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.push.RealtimeDeltaPublisher;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public class TestRealtimeDeltaPublisher {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testSnapshotThenDeltas() throws Exception {
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        cache.put(record(1, 1000L, 10.0));
+        RealtimeDeltaPublisher publisher = new RealtimeDeltaPublisher(cache, objectMapper, 2, 60_000L);
+        CapturingEmitter emitter = new CapturingEmitter(null);
+        publisher.subscribe(emitter);
+
+        JsonNode snapshot = emitter.next();
+        assertEquals(1, snapshot.get("updated").size());
+        assertEquals(1, snapshot.get("updated").get(0).get("addressICAO").asInt());
+
+        TrackingRecord second = record(2, 2000L, 20.0);
+        publisher.updated(second);
+        publisher.removed(record(1, 1000L, 10.0));
+        publisher.tick();
+        JsonNode delta = emitter.next();
+        assertEquals(2, delta.get("updated").get(0).get("addressICAO").asInt());
+        assertEquals(List.of(1), List.of(delta.get("removed").get(0).asInt()));
+
+        // nothing changed, nothing sent
+        publisher.tick();
+        assertEquals(null, emitter.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSlowSubscriberIsConflated() throws Exception {
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        RealtimeDeltaPublisher publisher = new RealtimeDeltaPublisher(cache, objectMapper, 2, 60_000L);
+        CountDownLatch release = new CountDownLatch(1);
+        CapturingEmitter slow = new CapturingEmitter(release);
+        CapturingEmitter fast = new CapturingEmitter(null);
+        publisher.subscribe(slow);
+        publisher.subscribe(fast);
+        slow.next();
+        fast.next();
+
+        // the slow subscriber is stuck in its first delta while more ticks happen
+        publisher.updated(record(7, 1000L, 1.0));
+        publisher.tick();
+        assertTrue(slow.blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 50; i++) {
+            publisher.updated(record(7, i * 1000L, i));
+            publisher.updated(record(8, i * 1000L, i));
+            publisher.tick();
+        }
+        // the fast subscriber keeps up, possibly merging a few ticks too, and ends at the latest positions
+        JsonNode last;
+        do {
+            last = fast.next();
+        } while (last.get("updated").size() < 2 || last.get("updated").get(0).get("latitude").asDouble() != 50.0);
+        release.countDown();
+
+        JsonNode first = slow.next();
+        assertEquals(1.0, first.get("updated").get(0).get("latitude").asDouble());
+        // every missed tick folded into one event with the latest position of each aircraft
+        JsonNode merged = slow.next();
+        assertEquals(2, merged.get("updated").size());
+        merged.get("updated").forEach(record -> assertEquals(50.0, record.get("latitude").asDouble()));
+        assertEquals(null, slow.events.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, publisher.getSubscriberCount());
+    }
+
+    private static TrackingRecord record(int icao, long time, double latitude) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setLatitude(latitude);
+        record.setLongitude(latitude);
+        record.setLastTimeSeen(time);
+        record.setRecordDate(new Date(time));
+        return record;
+    }
+
+    private class CapturingEmitter extends SseEmitter {
+        final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release;
+        int sent;
+
+        CapturingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            builder.build().forEach(part -> {
+                if (part.getData() instanceof String && !((String) part.getData()).startsWith("event:")
+                        && !((String) part.getData()).startsWith("\n"))
+                    sb.append(part.getData());
+            });
+            events.add(sb.toString());
+            // hold the second event, the first one after the snapshot
+            if (release != null && ++sent == 2) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+
+        JsonNode next() throws Exception {
+            String event = events.poll(5, TimeUnit.SECONDS);
+            if (event == null)
+                throw new AssertionError("no event");
+            return objectMapper.readTree(event);
+        }
+    }
+}
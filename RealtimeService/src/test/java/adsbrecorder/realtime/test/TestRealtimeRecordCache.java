@@ -0,0 +1,172 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public class TestRealtimeRecordCache {
+
+    @Test
+    public void testExpiry() {
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        List<TrackingRecord> expired = new ArrayList<TrackingRecord>();
+        TrackingRecord a = record(1, 100_000L);
+        TrackingRecord b = record(2, 100_000L);
+        assertNull(cache.put(a));
+        assertNull(cache.put(b));
+        assertEquals(0, cache.expire(150_000L, expired::add));
+        // b is updated and lives on, a expires
+        TrackingRecord b2 = record(2, 130_000L);
+        assertSame(b, cache.put(b2));
+        assertEquals(1, cache.expire(160_000L, expired::add));
+        assertEquals(List.of(a), expired);
+        assertNull(cache.get(1));
+        assertSame(b2, cache.get(2));
+        assertEquals(0, cache.expire(189_000L, expired::add));
+        assertEquals(1, cache.expire(190_000L, expired::add));
+        assertEquals(0, cache.size());
+        // a long pause skips over whole revolutions
+        cache.put(record(3, 200_000L));
+        assertEquals(1, cache.expire(10_000_000L, expired::add));
+    }
+
+    @Test
+    public void testConcurrentUpdatesAndExpiry() throws InterruptedException {
+        final int aircraft = 2000;
+        final int writers = 4;
+        final long retention = 200L;
+        final RealtimeRecordCache cache = new RealtimeRecordCache(retention, 10L, 21, 1.0);
+        final AtomicLong clock = new AtomicLong(1_000_000L);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        // last record put per aircraft, each aircraft is owned by one writer like a Kafka partition
+        final AtomicReferenceArray<TrackingRecord> latest = new AtomicReferenceArray<TrackingRecord>(aircraft);
+        // records are compared by identity, equal records of the same aircraft and time are still distinct updates
+        final Map<TrackingRecord, Boolean> expired = Collections.synchronizedMap(new IdentityHashMap<TrackingRecord, Boolean>());
+        final AtomicLong duplicates = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(writers);
+
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200_000; i++) {
+                    int icao = random.nextInt(aircraft / writers) * writers + writer;
+                    TrackingRecord record = record(icao, clock.get());
+                    cache.put(record);
+                    latest.set(icao, record);
+                }
+                done.countDown();
+            }).start();
+        }
+        Thread expirer = new Thread(() -> {
+            while (running.get()) {
+                cache.expire(clock.addAndGet(3L), record -> {
+                    if (expired.put(record, Boolean.TRUE) != null)
+                        duplicates.incrementAndGet();
+                });
+            }
+        });
+        expirer.start();
+        done.await();
+        running.set(false);
+        expirer.join();
+
+        assertEquals(0L, duplicates.get());
+        long now = clock.get();
+        for (int icao = 0; icao < aircraft; icao++) {
+            TrackingRecord last = latest.get(icao);
+            if (last == null)
+                continue;
+            TrackingRecord cached = cache.get(icao);
+            // the last update is either still live or was expired as it is, never silently dropped
+            assertTrue(cached == last || expired.containsKey(last),
+                    "lost update of aircraft " + icao);
+            if (cached == null)
+                assertTrue(last.getRecordDate().getTime() + retention <= now);
+        }
+        // everything goes eventually
+        cache.expire(now + retention + 1000L, record -> expired.put(record, Boolean.TRUE));
+        assertEquals(0, cache.size());
+        for (int icao = 0; icao < aircraft; icao++) {
+            if (latest.get(icao) != null)
+                assertTrue(expired.containsKey(latest.get(icao)));
+        }
+    }
+
+    @Test
+    public void testRemoveIf() {
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        List<TrackingRecord> dropped = new ArrayList<TrackingRecord>();
+        for (int icao = 0; icao < 10; icao++)
+            cache.put(record(icao, 100_000L, 1.0, 1.0));
+        assertEquals(5, cache.removeIf(record -> record.getAddressICAO() % 2 == 0, dropped::add));
+        assertEquals(5, dropped.size());
+        assertEquals(5, cache.queryBox(0.0, 0.0, 2.0, 2.0).size());
+        // dropped aircraft are not expired again when their slot comes up
+        List<TrackingRecord> expired = new ArrayList<TrackingRecord>();
+        assertEquals(5, cache.expire(200_000L, expired::add));
+        expired.forEach(record -> assertEquals(1, record.getAddressICAO() % 2));
+    }
+
+    @Test
+    public void testSpatialQueries() {
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        TrackingRecord melbourne = record(1, 100_000L, -37.67, 144.84);
+        TrackingRecord sydney = record(2, 100_000L, -33.94, 151.18);
+        TrackingRecord fiji = record(3, 100_000L, -17.75, 179.9);
+        TrackingRecord samoa = record(4, 100_000L, -13.83, -171.99);
+        List.of(melbourne, sydney, fiji, samoa).forEach(cache::put);
+
+        assertEquals(Set.of(melbourne), Set.copyOf(cache.queryBox(-39.0, 143.0, -36.0, 146.0)));
+        assertEquals(Set.of(melbourne, sydney), Set.copyOf(cache.queryBox(-40.0, 140.0, -30.0, 155.0)));
+        // across the antimeridian
+        assertEquals(Set.of(fiji, samoa), Set.copyOf(cache.queryBox(-20.0, 175.0, -10.0, -170.0)));
+        assertEquals(Set.of(melbourne), Set.copyOf(cache.queryRadius(-37.81, 144.96, 50_000.0)));
+        // Melbourne to Sydney is about 700 km
+        assertEquals(Set.of(melbourne, sydney), Set.copyOf(cache.queryRadius(-37.81, 144.96, 750_000.0)));
+        assertEquals(Set.of(fiji), Set.copyOf(cache.queryRadius(-17.75, -179.9, 50_000.0)));
+        assertEquals(4, cache.queryBox(-90.0, -180.0, 90.0, 180.0).size());
+
+        // moving and expiring keep the index in step
+        TrackingRecord moved = record(1, 110_000L, -33.9, 151.2);
+        cache.put(moved);
+        assertTrue(cache.queryBox(-39.0, 143.0, -36.0, 146.0).isEmpty());
+        assertEquals(Set.of(moved, sydney), Set.copyOf(cache.queryRadius(-33.9, 151.2, 20_000.0)));
+        cache.expire(165_000L, record -> {});
+        assertEquals(List.of(moved), cache.queryRadius(-33.9, 151.2, 20_000.0));
+    }
+
+    private static TrackingRecord record(int icao, long time, double latitude, double longitude) {
+        TrackingRecord record = record(icao, time);
+        record.setLatitude(latitude);
+        record.setLongitude(longitude);
+        return record;
+    }
+
+    private static TrackingRecord record(int icao, long time) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setLastTimeSeen(time);
+        record.setRecordDate(new Date(time));
+        return record;
+    }
+}
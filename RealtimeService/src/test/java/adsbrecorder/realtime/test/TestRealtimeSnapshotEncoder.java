@@ -0,0 +1,57 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.snapshot.EncodedSnapshot;
+import adsbrecorder.realtime.snapshot.RealtimeSnapshotEncoder;
+import adsbrecorder.realtime.trail.RecentTrailStore;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public class TestRealtimeSnapshotEncoder {
+
+    @Test
+    public void testEncodeOncePerVersion() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        RealtimeRecordCache cache = new RealtimeRecordCache(60_000L, 1_000L, 61, 1.0);
+        RealtimeSnapshotEncoder encoder = new RealtimeSnapshotEncoder(cache, new RecentTrailStore(8, 16), objectMapper);
+        cache.put(record(1, 1000L));
+
+        EncodedSnapshot first = encoder.current();
+        JsonNode json = objectMapper.readTree(first.getJson());
+        assertEquals(1, json.size());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.getGzip()))) {
+            assertArrayEquals(first.getJson(), in.readAllBytes());
+        }
+
+        // nothing changed, the same snapshot is kept
+        encoder.encode();
+        assertSame(first, encoder.current());
+
+        cache.put(record(2, 2000L));
+        encoder.encode();
+        EncodedSnapshot second = encoder.current();
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals(2, objectMapper.readTree(second.getJson()).size());
+    }
+
+    private static TrackingRecord record(int icao, long time) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setLastTimeSeen(time);
+        record.setRecordDate(new Date(time));
+        return record;
+    }
+}
@@ -0,0 +1,70 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.realtime.snapshot.RealtimeSnapshotFile;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public class TestRealtimeSnapshotFile {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path path = Files.createTempFile("realtime", ".snapshot");
+        try {
+            TrackingRecord full = record(0x7C6DB8, "QFA401");
+            full.setId(new BigInteger("5d3d7e7b8a1f2c0001a2b3c4", 16));
+            TrackingRecord bare = record(0xABCDEF, null);
+            try (RealtimeSnapshotFile file = new RealtimeSnapshotFile(path, 4)) {
+                assertEquals(0L, file.read(record -> {}));
+                assertEquals(2, file.write(List.of(full, bare), 1000L));
+            }
+            List<TrackingRecord> restored = new ArrayList<TrackingRecord>();
+            try (RealtimeSnapshotFile file = new RealtimeSnapshotFile(path, 4)) {
+                assertEquals(1000L, file.read(restored::add));
+                assertEquals(List.of(full, bare), restored);
+                assertNull(restored.get(1).getId());
+                assertNull(restored.get(1).getFlight());
+
+                // the newer checkpoint wins, and slots cut off at capacity
+                List<TrackingRecord> many = new ArrayList<TrackingRecord>();
+                for (int i = 0; i < 6; i++)
+                    many.add(record(i, "T" + i));
+                assertEquals(4, file.write(many, 2000L));
+                restored.clear();
+                assertEquals(2000L, file.read(restored::add));
+                assertEquals(many.subList(0, 4), restored);
+            }
+            // another layout starts over
+            try (RealtimeSnapshotFile file = new RealtimeSnapshotFile(path, 8)) {
+                assertEquals(0L, file.read(record -> {}));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static TrackingRecord record(int icao, String flight) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setFlight(flight);
+        record.setLatitude(-37.659);
+        record.setLongitude(144.8301);
+        record.setAltitude(3025);
+        record.setVelocity(215);
+        record.setHeading(34);
+        record.setVerticalRate(-1024);
+        record.setLastTimeSeen(1564300800123L);
+        record.setRecordDate(new Date(1564300800456L));
+        return record;
+    }
+}
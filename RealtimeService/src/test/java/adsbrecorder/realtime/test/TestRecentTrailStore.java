@@ -0,0 +1,58 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.realtime.trail.RecentTrail;
+import adsbrecorder.realtime.trail.RecentTrailStore;
+
+public class TestRecentTrailStore {
+
+    @Test
+    public void testRingBuffer() {
+        RecentTrailStore store = new RecentTrailStore(4, 2);
+        assertNull(store.trail(0x7C6DB8));
+        for (int i = 0; i < 6; i++)
+            assertTrue(store.append(0x7C6DB8, -33.9461234 + i * 0.01, 151.1771234 - i * 0.01, 1000 * i, 1000L * i));
+        RecentTrail trail = store.trail(0x7C6DB8);
+        assertEquals(0x7C6DB8, trail.getAddressICAO());
+        assertArrayEquals(new long[] { 2000L, 3000L, 4000L, 5000L }, trail.getTimes());
+        assertArrayEquals(new int[] { 2000, 3000, 4000, 5000 }, trail.getAltitudes());
+        assertEquals(-33.9261234, trail.getLatitudes()[0], 1e-7);
+        assertEquals(151.1271234, trail.getLongitudes()[3], 1e-7);
+
+        // late and repeated positions are dropped
+        long version = store.getVersion();
+        assertFalse(store.append(0x7C6DB8, -33.0, 151.0, 0, 4500L));
+        assertFalse(store.append(0x7C6DB8, -33.9461234 + 0.05, 151.1771234 - 0.05, 5000, 6000L));
+        assertEquals(version, store.getVersion());
+        assertEquals(4, store.trail(0x7C6DB8).getTimes().length);
+    }
+
+    @Test
+    public void testSlotsAreReused() {
+        RecentTrailStore store = new RecentTrailStore(4, 2);
+        assertTrue(store.append(1, 1.0, 1.0, 0, 1000L));
+        assertTrue(store.append(2, -1.0, -179.9999999, 0, 1000L));
+        assertFalse(store.append(3, 3.0, 3.0, 0, 1000L));
+        assertEquals(-179.9999999, store.trail(2).getLongitudes()[0], 1e-9);
+
+        store.remove(1);
+        assertNull(store.trail(1));
+        assertTrue(store.append(3, 3.0, 3.0, 0, 2000L));
+        assertEquals(1, store.trail(3).getTimes().length);
+        assertEquals(2, store.size());
+        List<Integer> icaos = new ArrayList<Integer>();
+        store.trails().forEach(trail -> icaos.add(trail.getAddressICAO()));
+        icaos.sort(null);
+        assertEquals(List.of(2, 3), icaos);
+    }
+}
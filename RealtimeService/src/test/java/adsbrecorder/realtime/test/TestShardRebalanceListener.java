@@ -0,0 +1,217 @@
+package adsbrecorder.realtime.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import adsbrecorder.realtime.RealtimeServiceMappings;
+import adsbrecorder.realtime.cache.RealtimeRecordCache;
+import adsbrecorder.realtime.kinematics.KinematicEstimator;
+import adsbrecorder.realtime.push.RealtimeDeltaPublisher;
+import adsbrecorder.realtime.shard.RealtimePeerQuery;
+import adsbrecorder.realtime.shard.ShardRebalanceListener;
+import adsbrecorder.realtime.trail.RecentTrailStore;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+
+public class TestShardRebalanceListener implements ListOfTopics {
+
+    private final static int PARTITIONS = 6;
+    private final static long RETENTION = 60_000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RealtimeRecordCache cache;
+    private Map<TopicPartition, Long> seeks;
+    private long replayedFrom;
+    private Consumer<?, ?> consumer;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new RealtimeRecordCache(RETENTION, 1_000L, 61, 1.0);
+        seeks = new HashMap<TopicPartition, Long>();
+        replayedFrom = Long.MAX_VALUE;
+        consumer = consumer();
+    }
+
+    @Test
+    public void testPartitionOfMatchesProducer() {
+        Node node = new Node(0, "localhost", 9092);
+        Cluster cluster = new Cluster("test", List.of(node), partitionInfos(node), Set.of(), Set.of());
+        DefaultPartitioner partitioner = new DefaultPartitioner();
+        for (int icao = 0; icao < 0x1000000; icao += 4099) {
+            String key = String.valueOf(icao);
+            int expected = partitioner.partition(REALTIME_DATA, key, key.getBytes(StandardCharsets.UTF_8), null, null, cluster);
+            assertEquals(expected, PartitionKeys.partitionOf(icao, PARTITIONS));
+        }
+        partitioner.close();
+    }
+
+    @Test
+    public void testReplayOnAssign() {
+        ShardRebalanceListener listener = listener(RETENTION);
+        final long before = System.currentTimeMillis() - RETENTION;
+        listener.onPartitionsAssigned(consumer, List.of(realtime(0), realtime(1),
+                new TopicPartition(INTERLEAVING_RECORDS, 2)));
+        assertEquals(Map.of(realtime(0), 100L, realtime(1), 101L), seeks);
+        // handed straight back within the grace period, the state is kept and not replayed
+        seeks.clear();
+        listener.onPartitionsRevokedBeforeCommit(consumer, List.of(realtime(1)));
+        listener.onPartitionsAssigned(consumer, List.of(realtime(1), realtime(2)));
+        assertEquals(Map.of(realtime(2), 102L), seeks);
+        assertTrue(before <= replayedFrom);
+    }
+
+    @Test
+    public void testRevokedStateDroppedAfterGrace() throws InterruptedException {
+        ShardRebalanceListener kept = listener(RETENTION);
+        kept.onPartitionsAssigned(consumer, List.of(realtime(0), realtime(1)));
+        final int revokedICAO = icaoInPartition(1);
+        final int ownedICAO = icaoInPartition(0);
+        cache.put(record(revokedICAO));
+        cache.put(record(ownedICAO));
+        kept.onPartitionsRevokedBeforeCommit(consumer, List.of(realtime(1)));
+        // no longer interleaved here, the new owner does that
+        assertTrue(kept.isRevoked(revokedICAO));
+        assertFalse(kept.isRevoked(ownedICAO));
+        kept.dropRevokedState();
+        assertEquals(2, cache.size());
+
+        ShardRebalanceListener dropping = listener(0L);
+        dropping.onPartitionsAssigned(consumer, List.of(realtime(0), realtime(1)));
+        dropping.onPartitionsRevokedBeforeCommit(consumer, List.of(realtime(1)));
+        Thread.sleep(5L);
+        dropping.dropRevokedState();
+        assertNull(cache.get(revokedICAO));
+        assertEquals(ownedICAO, cache.get(ownedICAO).getAddressICAO());
+        assertFalse(dropping.isRevoked(revokedICAO));
+    }
+
+    @Test
+    public void testGatherMergesPeers() throws IOException {
+        TrackingRecord newer = record(2, 3000L);
+        TrackingRecord older = record(2, 2000L);
+        TrackingRecord remote = record(3, 1500L);
+        List<String> queries = new ArrayList<String>();
+        HttpServer peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext(RealtimeServiceMappings.GET_REALTIME_DATA, exchange -> {
+            queries.add(exchange.getRequestURI().getQuery());
+            byte[] body = objectMapper.writeValueAsBytes(List.of(older, remote));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // nothing listens on the port of the second peer any more
+        HttpServer gone = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final int gonePort = gone.getAddress().getPort();
+        gone.stop(0);
+        peer.start();
+        try {
+            RealtimePeerQuery query = new RealtimePeerQuery(new RestTemplateBuilder(),
+                    "http://localhost:" + peer.getAddress().getPort() + ", http://localhost:" + gonePort, 2000L);
+            LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<String, String>();
+            params.add("bbox", "150,-35,152,-33");
+            Collection<TrackingRecord> merged = query.gather(List.of(record(1, 1000L), newer), params);
+            Map<Integer, Long> byICAO = merged.stream()
+                    .collect(Collectors.toMap(TrackingRecord::getAddressICAO, TrackingRecord::getLastTimeSeen));
+            assertEquals(Map.of(1, 1000L, 2, 3000L, 3, 1500L), byICAO);
+            assertEquals(List.of("bbox=150,-35,152,-33&local=true"), queries);
+            query.stop();
+        } finally {
+            peer.stop(0);
+        }
+    }
+
+    private ShardRebalanceListener listener(long revokeGrace) {
+        return new ShardRebalanceListener(cache, new RealtimeDeltaPublisher(cache, objectMapper, 2, RETENTION),
+                new KinematicEstimator(30.0, 25.0, 3.0, 1.0, RETENTION), new RecentTrailStore(8, 16),
+                RETENTION, revokeGrace);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<?, ?> consumer() {
+        return (Consumer<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Consumer.class},
+                (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "partitionsFor":
+                return partitionInfos(null);
+            case "offsetsForTimes":
+                Map<TopicPartition, OffsetAndTimestamp> offsets = new HashMap<TopicPartition, OffsetAndTimestamp>();
+                ((Map<TopicPartition, Long>) args[0]).forEach((tp, time) -> {
+                    replayedFrom = Math.min(replayedFrom, time);
+                    offsets.put(tp, new OffsetAndTimestamp(100L + tp.partition(), time));
+                });
+                return offsets;
+            case "seek":
+                seeks.put((TopicPartition) args[0], (Long) args[1]);
+                return null;
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static List<PartitionInfo> partitionInfos(Node node) {
+        List<PartitionInfo> infos = new ArrayList<PartitionInfo>();
+        for (int i = 0; i < PARTITIONS; i++)
+            infos.add(new PartitionInfo(REALTIME_DATA, i, node, new Node[] {node}, new Node[] {node}));
+        return infos;
+    }
+
+    private static TopicPartition realtime(int partition) {
+        return new TopicPartition(REALTIME_DATA, partition);
+    }
+
+    private static int icaoInPartition(int partition) {
+        int icao = 0x7C0000;
+        while (PartitionKeys.partitionOf(icao, PARTITIONS) != partition)
+            icao++;
+        return icao;
+    }
+
+    private static TrackingRecord record(int icao) {
+        return record(icao, System.currentTimeMillis());
+    }
+
+    private static TrackingRecord record(int icao, long time) {
+        TrackingRecord record = new TrackingRecord();
+        record.setAddressICAO(icao);
+        record.setLatitude(-33.9);
+        record.setLongitude(151.2);
+        record.setAltitude(12000);
+        record.setLastTimeSeen(time);
+        return record;
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
         "adsbrecorder.receiver",
         "adsbrecorder.receiver.controller",
         "adsbrecorder.receiver.service",
+        "adsbrecorder.receiver.sbs1",
         "adsbrecorder.client.service",
         "adsbrecorder.user.service",
         "adsbrecorder.receiver.security"})
@@ -8,7 +8,9 @@ import javax.sql.DataSource;
 
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,6 +19,10 @@ import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -29,9 +35,12 @@ import org.springframework.transaction.PlatformTransactionManager;
 import com.mongodb.MongoClient;
 
 import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
 import adsbrecorder.receiver.kafka.ListOfTopics;
 import adsbrecorder.receiver.kafka.TrackingRecordSerializer;
+import adsbrecorder.receiver.kafka.VelocityUpdateSerializer;
 
+@EnableKafka
 @Configuration
 public class ReceiverServiceConfiguration implements ListOfTopics {
 
@@ -41,6 +50,12 @@ public class ReceiverServiceConfiguration implements ListOfTopics {
     @Value(value = "${kafka.bootstrapAddress}")
     private String bootstrapAddress;
 
+    @Value(value = "${kafka.binaryTopics:}")
+    private String binaryTopics;
+
+    @Value(value = "${kafka.partitions:1}")
+    private int partitions;
+
     @Value(value = "${mongodb.address}")
     private String mongodbAddress;
 
@@ -93,7 +108,33 @@ public class ReceiverServiceConfiguration implements ListOfTopics {
 
     @Bean
     public NewTopic topicRealtimeData() {
-         return new NewTopic(REALTIME_DATA, 1, (short) 1);
+         return new NewTopic(REALTIME_DATA, partitions, (short) 1);
+    }
+
+    @Bean
+    public NewTopic topicVelocityData() {
+         return new NewTopic(VELOCITY_DATA, partitions, (short) 1);
+    }
+
+    @Bean
+    public NewTopic topicPrincipalInvalidation() {
+         return new NewTopic(PRINCIPAL_INVALIDATION, 1, (short) 1);
+    }
+
+    @Bean
+    public ConsumerFactory<String, String> principalInvalidationConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> principalInvalidationContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(principalInvalidationConsumerFactory());
+        return factory;
     }
 
     @Bean
@@ -102,6 +143,7 @@ public class ReceiverServiceConfiguration implements ListOfTopics {
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TrackingRecordSerializer.class);
+        configProps.put(TrackingRecordSerializer.BINARY_TOPICS_CONFIG, binaryTopics);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
@@ -109,4 +151,19 @@ public class ReceiverServiceConfiguration implements ListOfTopics {
     public KafkaTemplate<String, TrackingRecord> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
+
+    @Bean
+    public ProducerFactory<String, VelocityUpdate> velocityUpdateProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, VelocityUpdateSerializer.class);
+        configProps.put(VelocityUpdateSerializer.BINARY_TOPICS_CONFIG, binaryTopics);
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+
+    @Bean
+    public KafkaTemplate<String, VelocityUpdate> velocityUpdateKafkaTemplate() {
+        return new KafkaTemplate<>(velocityUpdateProducerFactory());
+    }
 }
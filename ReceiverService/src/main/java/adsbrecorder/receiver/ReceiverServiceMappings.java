@@ -3,5 +3,7 @@ package adsbrecorder.receiver;
 public interface ReceiverServiceMappings {
 
     String ADD_NEW_RECORDS = "/api/receiver/record/new";
+    String ADD_NEW_RECORDS_STREAM = "/api/receiver/record/stream";
+    String ADD_RAW_FRAMES = "/api/receiver/frames";
     String ADD_VELOCITY_UPDATES = "/api/receiver/velo/new";
 }
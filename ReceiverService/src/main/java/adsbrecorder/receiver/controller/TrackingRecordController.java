@@ -2,65 +2,202 @@ package adsbrecorder.receiver.controller;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
 
+import adsbrecorder.client.entity.RemoteReceiver;
 import adsbrecorder.receiver.ReceiverServiceMappings;
 import adsbrecorder.receiver.entity.TrackingRecord;
 import adsbrecorder.receiver.entity.VelocityUpdate;
-import adsbrecorder.receiver.kafka.ListOfTopics;
-import adsbrecorder.receiver.service.TrackingRecordService;
-import adsbrecorder.receiver.service.VelocityUpdateService;
+import adsbrecorder.receiver.kafka.BinaryRecordCodec;
+import adsbrecorder.receiver.kafka.BinaryRecordFormat;
+import adsbrecorder.receiver.service.BatchSequence;
+import adsbrecorder.receiver.service.BatchSequenceService;
+import adsbrecorder.receiver.service.IngestBufferService;
+import adsbrecorder.receiver.service.RawFrameIngestResult;
+import adsbrecorder.receiver.service.RawFrameIngestService;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.VelocityUpdateIngestService;
 
 @RestController
-public class TrackingRecordController implements ReceiverServiceMappings, ListOfTopics {
+public class TrackingRecordController implements ReceiverServiceMappings {
 
-    private TrackingRecordService trackingRecordService;
-    private VelocityUpdateService velocityUpdateService;
-    private KafkaTemplate<String, TrackingRecord> kafkaTemplate;
+    private TrackingRecordIngestService trackingRecordIngestService;
+    private VelocityUpdateIngestService velocityUpdateIngestService;
+    private RawFrameIngestService rawFrameIngestService;
+    private IngestBufferService ingestBufferService;
+    private BatchSequenceService batchSequenceService;
+    private BinaryRecordCodec binaryRecordCodec;
 
     @Autowired
-    public TrackingRecordController(TrackingRecordService trackingRecordService,
-            VelocityUpdateService velocityUpdateService,
-            KafkaTemplate<String, TrackingRecord> kafkaTemplate) {
-        this.trackingRecordService = requireNonNull(trackingRecordService);
-        this.velocityUpdateService = requireNonNull(velocityUpdateService);
-        this.kafkaTemplate = requireNonNull(kafkaTemplate);
+    public TrackingRecordController(TrackingRecordIngestService trackingRecordIngestService,
+            VelocityUpdateIngestService velocityUpdateIngestService,
+            RawFrameIngestService rawFrameIngestService,
+            IngestBufferService ingestBufferService,
+            BatchSequenceService batchSequenceService) {
+        this.trackingRecordIngestService = requireNonNull(trackingRecordIngestService);
+        this.velocityUpdateIngestService = requireNonNull(velocityUpdateIngestService);
+        this.rawFrameIngestService = requireNonNull(rawFrameIngestService);
+        this.ingestBufferService = requireNonNull(ingestBufferService);
+        this.batchSequenceService = requireNonNull(batchSequenceService);
+        this.binaryRecordCodec = new BinaryRecordCodec();
     }
 
     @PostMapping(ADD_VELOCITY_UPDATES)
-    public Map<String, String> createVelocityUpdates(@RequestBody List<VelocityUpdate> updates) {
+    public Map<String, String> createVelocityUpdates(@RequestBody List<VelocityUpdate> updates,
+            @RequestHeader(value = BatchSequenceService.BATCH_SEQUENCE_HEADER, required = false) String batchSequence) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        updates = velocityUpdateService.batchCreateVelocityUpdates(updates,
-                String.valueOf(auth.getPrincipal()),
-                String.valueOf(auth.getCredentials()));
+        RemoteReceiver receiver = sourceReceiver(auth);
+        BatchSequence sequence = batchSequence(batchSequence);
+        if (sequence != null && !batchSequenceService.acquire(receiver, BatchSequenceService.VELOCITY_UPDATES, sequence)) {
+            return Map.of("velocityUpdated", "0",
+                    "source", String.valueOf(auth.getPrincipal()),
+                    "duplicateBatch", "true");
+        }
+        try {
+            updates = velocityUpdateIngestService.ingest(updates, receiver);
+        } catch (RuntimeException e) {
+            if (sequence != null)
+                batchSequenceService.release(receiver, BatchSequenceService.VELOCITY_UPDATES, sequence);
+            throw e;
+        }
         return Map.of("velocityUpdated", String.valueOf(updates.size()),
                 "source", String.valueOf(auth.getPrincipal()));
     }
 
+    @PostMapping(value = ADD_VELOCITY_UPDATES, consumes = BinaryRecordFormat.MEDIA_TYPE)
+    public Map<String, String> createVelocityUpdatesBinary(@RequestBody byte[] body,
+            @RequestHeader(value = BatchSequenceService.BATCH_SEQUENCE_HEADER, required = false) String batchSequence) {
+        try {
+            return createVelocityUpdates(binaryRecordCodec.decodeVelocityUpdates(body), batchSequence);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @PostMapping(ADD_NEW_RECORDS)
-    public Map<String, String> createNewTrackingRecord(@RequestBody List<TrackingRecord> records) {
+    public ResponseEntity<Map<String, String>> createNewTrackingRecord(@RequestBody List<TrackingRecord> records,
+            @RequestHeader(value = BatchSequenceService.BATCH_SEQUENCE_HEADER, required = false) String batchSequence) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        RemoteReceiver receiver = sourceReceiver(auth);
+        BatchSequence sequence = batchSequence(batchSequence);
+        if (sequence != null && !batchSequenceService.acquire(receiver, BatchSequenceService.TRACKING_RECORDS, sequence)) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(IngestBufferService.QUEUE_DEPTH_HEADER, String.valueOf(ingestBufferService.getQueueDepth()))
+                    .body(Map.of("recordsCreated", "0",
+                                 "source", String.valueOf(auth.getPrincipal()),
+                                 "duplicateBatch", "true"));
+        }
+        int accepted = ingestBufferService.offer(records, receiver);
+        String queueDepth = String.valueOf(ingestBufferService.getQueueDepth());
+        if (accepted < 0) {
+            if (sequence != null)
+                batchSequenceService.release(receiver, BatchSequenceService.TRACKING_RECORDS, sequence);
+            return bufferFull(auth);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(IngestBufferService.QUEUE_DEPTH_HEADER, queueDepth)
+                .body(Map.of("recordsCreated", String.valueOf(accepted),
+                             "source", String.valueOf(auth.getPrincipal())));
+    }
+
+    @PostMapping(value = ADD_NEW_RECORDS, consumes = BinaryRecordFormat.MEDIA_TYPE)
+    public ResponseEntity<Map<String, String>> createNewTrackingRecordBinary(@RequestBody byte[] body,
+            @RequestHeader(value = BatchSequenceService.BATCH_SEQUENCE_HEADER, required = false) String batchSequence) {
+        try {
+            return createNewTrackingRecord(binaryRecordCodec.decodeTrackingRecords(body), batchSequence);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Streamed uploads are written as they arrive rather than through the ingest buffer: part of the body is
+     * stored before the rest is read, so they cannot be turned away halfway, and a slow write holds up the reading,
+     * which pushes back on the receiver through TCP. They are turned away up front while the buffer is full,
+     * since the database is then behind for everyone.
+     */
+    @PostMapping(value = ADD_NEW_RECORDS_STREAM, consumes = {
+            TrackingRecordIngestService.NDJSON_MEDIA_TYPE,
+            MediaType.APPLICATION_STREAM_JSON_VALUE})
+    public ResponseEntity<Map<String, String>> streamNewTrackingRecords(HttpServletRequest request) throws IOException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        records = records.stream().filter(record ->
-             Math.abs(record.getLatitude()) > 0.0
-          && Math.abs(record.getLongitude()) > 0.0
-          && Math.abs(record.getAltitude()) > 0.0).collect(Collectors.toList());
-        if (records.size() > 0) {
-            records = trackingRecordService.batchCreateTrackingRecord(records,
-                    String.valueOf(auth.getPrincipal()),
-                    String.valueOf(auth.getCredentials()));
-            records.forEach(record -> kafkaTemplate.send(REALTIME_DATA, record));
+        if (ingestBufferService.isFull())
+            return bufferFull(auth);
+        final long created;
+        try {
+            created = trackingRecordIngestService.ingestStream(request.getInputStream(), sourceReceiver(auth));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("source", String.valueOf(auth.getPrincipal()),
+                                 "message", String.valueOf(e.getOriginalMessage())));
         }
-        return Map.of("recordsCreated", String.valueOf(records.size()),
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(Map.of("recordsCreated", String.valueOf(created),
+                             "source", String.valueOf(auth.getPrincipal())));
+    }
+
+    // streamed as well, see streamNewTrackingRecords
+    @PostMapping(value = ADD_RAW_FRAMES, consumes = RawFrameIngestService.AVR_MEDIA_TYPE)
+    public ResponseEntity<Map<String, String>> addAVRFrames(HttpServletRequest request) throws IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (ingestBufferService.isFull())
+            return bufferFull(auth);
+        return ResponseEntity.ok(rawFrameResult(auth, rawFrameIngestService.ingestAVR(request.getInputStream(),
+                sourceReceiver(auth))));
+    }
+
+    @PostMapping(value = ADD_RAW_FRAMES, consumes = RawFrameIngestService.BEAST_MEDIA_TYPE)
+    public ResponseEntity<Map<String, String>> addBeastFrames(HttpServletRequest request) throws IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (ingestBufferService.isFull())
+            return bufferFull(auth);
+        return ResponseEntity.ok(rawFrameResult(auth, rawFrameIngestService.ingestBeast(request.getInputStream(),
+                sourceReceiver(auth))));
+    }
+
+    private ResponseEntity<Map<String, String>> bufferFull(Authentication auth) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestBufferService.getRetryAfterSeconds()))
+                .header(IngestBufferService.QUEUE_DEPTH_HEADER, String.valueOf(ingestBufferService.getQueueDepth()))
+                .body(Map.of("recordsCreated", "0",
+                             "source", String.valueOf(auth.getPrincipal())));
+    }
+
+    private BatchSequence batchSequence(String header) {
+        try {
+            return BatchSequence.parse(header);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private RemoteReceiver sourceReceiver(Authentication auth) {
+        return (RemoteReceiver) auth.getDetails();
+    }
+
+    private Map<String, String> rawFrameResult(Authentication auth, RawFrameIngestResult result) {
+        return Map.of("framesRead", String.valueOf(result.getFramesRead()),
+                      "recordsCreated", String.valueOf(result.getRecordsCreated()),
+                      "velocityUpdated", String.valueOf(result.getVelocityUpdated()),
                       "source", String.valueOf(auth.getPrincipal()));
     }
 }
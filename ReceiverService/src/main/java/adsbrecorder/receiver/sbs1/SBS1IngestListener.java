@@ -0,0 +1,328 @@
+package adsbrecorder.receiver.sbs1;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.common.auth.ListOfAuthorities;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.security.ReceiverTokenAuthenticationFilter;
+import adsbrecorder.receiver.service.IngestBufferService;
+import adsbrecorder.receiver.service.VelocityUpdateIngestService;
+
+/**
+ * Accepts SBS-1 (BaseStation, port 30003 format) streams over plain TCP.
+ * The first line of a connection must be "AUTH &lt;receiver token&gt;", every following line is a SBS-1 message.
+ * Messages are assembled into tracking records per connection and saved in micro-batches.
+ * Tracking records go through the ingest buffer, velocity updates that fail to save are tried again with the next batch.
+ */
+@Component
+public class SBS1IngestListener implements ListOfAuthorities {
+
+    private final static String AUTH_COMMAND = "AUTH ";
+    private final static byte[] REPLY_OK = "OK\n".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] REPLY_ERR = "ERR unauthorized\n".getBytes(StandardCharsets.US_ASCII);
+
+    private IngestBufferService ingestBufferService;
+    private VelocityUpdateIngestService velocityUpdateIngestService;
+    private ReceiverTokenAuthenticationFilter receiverTokenAuthenticationFilter;
+
+    @Value("${adsbrecorder.receiver.sbs1.enabled:false}")
+    private boolean enabled;
+
+    @Value("${adsbrecorder.receiver.sbs1.port:30003}")
+    private int port;
+
+    @Value("${adsbrecorder.receiver.sbs1.batch_size:200}")
+    private int batchSize;
+
+    @Value("${adsbrecorder.receiver.sbs1.flush_interval:1000}")
+    private long flushInterval;
+
+    @Value("${adsbrecorder.receiver.sbs1.auth_timeout:10000}")
+    private long authTimeout;
+
+    @Value("${adsbrecorder.receiver.sbs1.message_expiry:60000}")
+    private long messageExpiry;
+
+    @Value("${adsbrecorder.receiver.sbs1.max_line_length:512}")
+    private int maxLineLength;
+
+    @Value("${adsbrecorder.receiver.sbs1.writer_threads:2}")
+    private int writerThreads;
+
+    // how long a writer waits for room in a full ingest buffer before the batch is dropped
+    @Value("${adsbrecorder.receiver.sbs1.offer_timeout:30000}")
+    private long offerTimeout;
+
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private ThreadPoolExecutor writers;
+
+    @Autowired
+    public SBS1IngestListener(IngestBufferService ingestBufferService,
+            VelocityUpdateIngestService velocityUpdateIngestService,
+            ReceiverTokenAuthenticationFilter receiverTokenAuthenticationFilter) {
+        this.ingestBufferService = requireNonNull(ingestBufferService);
+        this.velocityUpdateIngestService = requireNonNull(velocityUpdateIngestService);
+        this.receiverTokenAuthenticationFilter = requireNonNull(receiverTokenAuthenticationFilter);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled)
+            return;
+        // Saving is done off the selector thread, when writers fall behind the selector thread saves itself
+        // and stops reading, which pushes back on the receivers through TCP flow control.
+        // A full ingest buffer holds up the writers the same way.
+        writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(writerThreads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "sbs1-listener");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        selector.wakeup();
+        selectorThread.join(flushInterval * 2);
+        writers.shutdown();
+        writers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        long lastFlush = System.currentTimeMillis();
+        while (running) {
+            try {
+                selector.select(flushInterval);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= flushInterval) {
+                    lastFlush = now;
+                    for (SelectionKey key : selector.keys()) {
+                        if (key.attachment() instanceof Connection)
+                            tick((Connection) key.attachment(), key, now);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("SBS-1 listener: " + e.getMessage());
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection)
+                close(key, (Connection) key.attachment());
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel));
+    }
+
+    private void read(SelectionKey key) {
+        Connection conn = (Connection) key.attachment();
+        try {
+            ByteBuffer buffer = conn.readBuffer;
+            int n = conn.channel.read(buffer);
+            if (n < 0) {
+                close(key, conn);
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    if (!processLine(conn, new String(conn.line, 0, conn.lineLength, StandardCharsets.US_ASCII).trim())) {
+                        close(key, conn);
+                        return;
+                    }
+                    conn.lineLength = 0;
+                } else if (conn.lineLength < conn.line.length) {
+                    conn.line[conn.lineLength++] = b;
+                } else {
+                    close(key, conn);
+                    return;
+                }
+            }
+            buffer.clear();
+            if (conn.pendingRecords.size() >= batchSize || conn.pendingUpdates.size() >= batchSize)
+                flush(conn);
+        } catch (IOException e) {
+            close(key, conn);
+        }
+    }
+
+    private boolean processLine(Connection conn, String line) throws IOException {
+        if (conn.receiver == null) {
+            Authentication auth = line.startsWith(AUTH_COMMAND)
+                    ? receiverTokenAuthenticationFilter.authenticate(line.substring(AUTH_COMMAND.length()).trim())
+                    : null;
+            if (auth == null || auth.getAuthorities().stream()
+                    .noneMatch(authority -> ADD_TRACKING_RECORD.equals(authority.getAuthority()))) {
+                conn.channel.write(ByteBuffer.wrap(REPLY_ERR));
+                return false;
+            }
+            conn.receiver = (RemoteReceiver) auth.getDetails();
+            conn.channel.write(ByteBuffer.wrap(REPLY_OK));
+            return true;
+        }
+        SBS1Message msg = SBS1Message.parse(line);
+        if (msg != null)
+            conn.assembler.accept(msg, System.currentTimeMillis());
+        return true;
+    }
+
+    private void tick(Connection conn, SelectionKey key, long now) {
+        if (conn.receiver == null) {
+            if (now - conn.connectedAt > authTimeout)
+                close(key, conn);
+            return;
+        }
+        conn.assembler.expire(now, messageExpiry);
+        flush(conn);
+    }
+
+    private void flush(Connection conn) {
+        for (VelocityUpdate update = conn.failedUpdates.poll(); update != null; update = conn.failedUpdates.poll())
+            conn.pendingUpdates.add(update);
+        if (conn.pendingRecords.isEmpty() && conn.pendingUpdates.isEmpty())
+            return;
+        final List<TrackingRecord> records = conn.pendingRecords;
+        final List<VelocityUpdate> updates = conn.pendingUpdates;
+        final RemoteReceiver receiver = conn.receiver;
+        conn.pendingRecords = new ArrayList<TrackingRecord>(batchSize);
+        conn.pendingUpdates = new ArrayList<VelocityUpdate>(batchSize);
+        writers.execute(() -> {
+            if (!updates.isEmpty())
+                saveUpdates(conn, updates, receiver);
+            if (!records.isEmpty())
+                offerRecords(records, receiver);
+        });
+    }
+
+    private void saveUpdates(Connection conn, List<VelocityUpdate> updates, RemoteReceiver receiver) {
+        try {
+            velocityUpdateIngestService.ingest(updates, receiver);
+        } catch (RuntimeException e) {
+            // kept for the next batch of the connection, as long as it is open and not too far behind
+            if (conn.channel.isOpen() && conn.failedUpdates.size() + updates.size() <= batchSize * 4) {
+                conn.failedUpdates.addAll(updates);
+                System.err.println("SBS-1 listener: failed to save " + updates.size() + " velocity updates from "
+                        + receiver.getRemoteReceiverName() + ", retrying: " + e.getMessage());
+            } else {
+                System.err.println("SBS-1 listener: dropped " + updates.size() + " velocity updates from "
+                        + receiver.getRemoteReceiverName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void offerRecords(List<TrackingRecord> records, RemoteReceiver receiver) {
+        final long deadline = System.currentTimeMillis() + offerTimeout;
+        try {
+            while (ingestBufferService.offer(records, receiver) < 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    System.err.println("SBS-1 listener: dropped " + records.size() + " tracking records from "
+                            + receiver.getRemoteReceiverName() + ", the ingest buffer stayed full");
+                    return;
+                }
+                Thread.sleep(Math.min(1000L, offerTimeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("SBS-1 listener: dropped " + records.size() + " tracking records from "
+                    + receiver.getRemoteReceiverName() + ", interrupted");
+        }
+    }
+
+    private void close(SelectionKey key, Connection conn) {
+        key.cancel();
+        if (conn.receiver != null)
+            flush(conn);
+        try {
+            conn.channel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer;
+        final byte[] line;
+        final long connectedAt;
+        final SBS1MessageAssembler assembler;
+        int lineLength;
+        RemoteReceiver receiver;
+        List<TrackingRecord> pendingRecords;
+        List<VelocityUpdate> pendingUpdates;
+        // filled by the writers, drained by the selector thread
+        final ConcurrentLinkedQueue<VelocityUpdate> failedUpdates;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.readBuffer = ByteBuffer.allocate(8192);
+            this.line = new byte[maxLineLength];
+            this.connectedAt = System.currentTimeMillis();
+            this.pendingRecords = new ArrayList<TrackingRecord>(batchSize);
+            this.pendingUpdates = new ArrayList<VelocityUpdate>(batchSize);
+            this.failedUpdates = new ConcurrentLinkedQueue<VelocityUpdate>();
+            this.assembler = new SBS1MessageAssembler(
+                    record -> pendingRecords.add(record),
+                    update -> pendingUpdates.add(update));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package adsbrecorder.receiver.sbs1;
+
+/**
+ * One line of a SBS-1 (BaseStation) port 30003 stream, e.g.
+ * MSG,3,1,1,7C6DB8,1,2019/07/28,10:00:00.000,2019/07/28,10:00:00.000,,3025,,,-37.659,144.8301,,,0,0,0,0
+ */
+public class SBS1Message {
+
+    public final static int ES_IDENT_AND_CATEGORY = 1;
+    public final static int ES_SURFACE_POS = 2;
+    public final static int ES_AIRBORNE_POS = 3;
+    public final static int ES_AIRBORNE_VEL = 4;
+
+    private final static int FIELD_TRANSMISSION_TYPE = 1;
+    private final static int FIELD_HEX_IDENT = 4;
+    private final static int FIELD_CALLSIGN = 10;
+    private final static int FIELD_ALTITUDE = 11;
+    private final static int FIELD_GROUND_SPEED = 12;
+    private final static int FIELD_TRACK = 13;
+    private final static int FIELD_LATITUDE = 14;
+    private final static int FIELD_LONGITUDE = 15;
+    private final static int FIELD_VERTICAL_RATE = 16;
+    private final static int MIN_FIELDS = 17;
+
+    private int transmissionType;
+    private int addressICAO;
+    private String callsign;
+    private int altitude;
+    private int groundSpeed;
+    private int track;
+    private double latitude;
+    private double longitude;
+    private int verticalRate;
+
+    private SBS1Message() {
+    }
+
+    /**
+     * @param line one SBS-1 line without line terminator
+     * @return parsed message or null if the line is not a valid MSG line
+     */
+    public static SBS1Message parse(String line) {
+        if (line == null || !line.startsWith("MSG,"))
+            return null;
+        String[] fields = line.split(",", -1);
+        if (fields.length < MIN_FIELDS)
+            return null;
+        try {
+            SBS1Message msg = new SBS1Message();
+            msg.transmissionType = Integer.parseInt(fields[FIELD_TRANSMISSION_TYPE].trim());
+            msg.addressICAO = Integer.parseInt(fields[FIELD_HEX_IDENT].trim(), 16);
+            String callsign = fields[FIELD_CALLSIGN].trim();
+            msg.callsign = callsign.isEmpty() ? null : callsign;
+            msg.altitude = (int) parseNumber(fields[FIELD_ALTITUDE]);
+            msg.groundSpeed = (int) parseNumber(fields[FIELD_GROUND_SPEED]);
+            msg.track = (int) parseNumber(fields[FIELD_TRACK]);
+            msg.latitude = parseNumber(fields[FIELD_LATITUDE]);
+            msg.longitude = parseNumber(fields[FIELD_LONGITUDE]);
+            msg.verticalRate = (int) parseNumber(fields[FIELD_VERTICAL_RATE]);
+            return msg;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double parseNumber(String field) {
+        field = field.trim();
+        return field.isEmpty() ? 0.0 : Double.parseDouble(field);
+    }
+
+    public int getTransmissionType() {
+        return transmissionType;
+    }
+
+    public int getAddressICAO() {
+        return addressICAO;
+    }
+
+    public String getCallsign() {
+        return callsign;
+    }
+
+    public int getAltitude() {
+        return altitude;
+    }
+
+    public int getGroundSpeed() {
+        return groundSpeed;
+    }
+
+    public int getTrack() {
+        return track;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getVerticalRate() {
+        return verticalRate;
+    }
+}
@@ -0,0 +1,165 @@
+package adsbrecorder.receiver.sbs1;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Merges position, velocity and identification messages of the same aircraft into tracking records,
+ * the same way JSONSBS1Message in tools/ADSBClient does. Not thread safe, use one instance per stream.
+ */
+public class SBS1MessageAssembler {
+
+    private final static int MISSING_ALL = (1 << SBS1Message.ES_IDENT_AND_CATEGORY)
+            | (1 << SBS1Message.ES_AIRBORNE_POS)
+            | (1 << SBS1Message.ES_AIRBORNE_VEL);
+
+    private final Consumer<TrackingRecord> trackingRecordConsumer;
+    private final Consumer<VelocityUpdate> velocityUpdateConsumer;
+    private final Map<Integer, PendingRecord> flights;
+    private final Map<Integer, KnownCallsign> callsigns;
+
+    public SBS1MessageAssembler(Consumer<TrackingRecord> trackingRecordConsumer,
+            Consumer<VelocityUpdate> velocityUpdateConsumer) {
+        this.trackingRecordConsumer = trackingRecordConsumer;
+        this.velocityUpdateConsumer = velocityUpdateConsumer;
+        this.flights = new HashMap<Integer, PendingRecord>();
+        this.callsigns = new HashMap<Integer, KnownCallsign>();
+    }
+
+    public void accept(SBS1Message msg, long now) {
+        final int icao = msg.getAddressICAO();
+        if (msg.getTransmissionType() == SBS1Message.ES_IDENT_AND_CATEGORY && msg.getCallsign() != null) {
+            KnownCallsign known = callsigns.get(icao);
+            if (known == null) {
+                callsigns.put(icao, new KnownCallsign(msg.getCallsign(), now));
+            } else {
+                known.lastSeen = now;
+            }
+        }
+        if (msg.getTransmissionType() == SBS1Message.ES_AIRBORNE_VEL && msg.getGroundSpeed() != 0) {
+            velocityUpdateConsumer.accept(toVelocityUpdate(msg, now));
+        }
+        PendingRecord pending = flights.get(icao);
+        if (pending == null) {
+            flights.put(icao, new PendingRecord(msg, now));
+            return;
+        }
+        pending.update(msg, now);
+        if (pending.isComplete()) {
+            flights.remove(icao);
+            KnownCallsign known = callsigns.get(icao);
+            if (known != null)
+                pending.callsign = known.callsign;
+            if (pending.hasPosition())
+                trackingRecordConsumer.accept(pending.toTrackingRecord(icao));
+        }
+    }
+
+    /**
+     * Drop incomplete records and callsigns not updated within maxAge
+     */
+    public void expire(long now, long maxAge) {
+        flights.values().removeIf(pending -> now - pending.lastUpdate > maxAge);
+        callsigns.values().removeIf(known -> now - known.lastSeen > maxAge);
+    }
+
+    private VelocityUpdate toVelocityUpdate(SBS1Message msg, long now) {
+        VelocityUpdate vu = new VelocityUpdate();
+        vu.setAddressICAO(msg.getAddressICAO());
+        vu.setVelocity(msg.getGroundSpeed());
+        vu.setHeading(msg.getTrack());
+        vu.setVerticalRate(msg.getVerticalRate());
+        vu.setLastTimeSeen(now);
+        vu.setRecordDate(new Date(now));
+        vu.setApplied(false);
+        return vu;
+    }
+
+    private static class KnownCallsign {
+        final String callsign;
+        long lastSeen;
+
+        KnownCallsign(String callsign, long lastSeen) {
+            this.callsign = callsign;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private static class PendingRecord {
+        int missing;
+        long lastUpdate;
+        String callsign;
+        int altitude;
+        double latitude;
+        double longitude;
+        int groundSpeed;
+        int track;
+        int verticalRate;
+
+        PendingRecord(SBS1Message msg, long now) {
+            this.missing = MISSING_ALL;
+            this.callsign = msg.getCallsign();
+            this.altitude = msg.getAltitude();
+            this.latitude = msg.getLatitude();
+            this.longitude = msg.getLongitude();
+            this.groundSpeed = msg.getGroundSpeed();
+            this.track = msg.getTrack();
+            this.verticalRate = msg.getVerticalRate();
+            this.missing &= ~(1 << msg.getTransmissionType());
+            this.lastUpdate = now;
+        }
+
+        void update(SBS1Message msg, long now) {
+            final int type = msg.getTransmissionType();
+            if ((missing & (1 << type)) == 0 || (MISSING_ALL & (1 << type)) == 0)
+                return;
+            switch (type) {
+            case SBS1Message.ES_AIRBORNE_POS:
+                altitude = msg.getAltitude();
+                latitude = msg.getLatitude();
+                longitude = msg.getLongitude();
+                break;
+            case SBS1Message.ES_AIRBORNE_VEL:
+                groundSpeed = msg.getGroundSpeed();
+                track = msg.getTrack();
+                verticalRate = msg.getVerticalRate();
+                break;
+            case SBS1Message.ES_IDENT_AND_CATEGORY:
+                callsign = msg.getCallsign();
+                break;
+            }
+            missing &= ~(1 << type);
+            lastUpdate = now;
+        }
+
+        boolean isComplete() {
+            return missing == 0
+                || (altitude != 0 && latitude != 0.0 && longitude != 0.0)
+                || (verticalRate != 0 && groundSpeed != 0 && track != 0);
+        }
+
+        boolean hasPosition() {
+            return Math.abs(latitude) > 0.0 && Math.abs(longitude) > 0.0 && Math.abs(altitude) > 0;
+        }
+
+        TrackingRecord toTrackingRecord(int icao) {
+            TrackingRecord record = new TrackingRecord();
+            record.setAddressICAO(icao);
+            record.setFlight(callsign);
+            record.setLatitude(latitude);
+            record.setLongitude(longitude);
+            record.setAltitude(altitude);
+            record.setVelocity(groundSpeed);
+            record.setHeading(track);
+            record.setVerticalRate(verticalRate);
+            record.setLastTimeSeen(lastUpdate);
+            record.setRecordDate(new Date(lastUpdate));
+            return record;
+        }
+    }
+}
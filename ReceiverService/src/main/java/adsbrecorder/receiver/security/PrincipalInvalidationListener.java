@@ -0,0 +1,36 @@
+package adsbrecorder.receiver.security;
+
+import static java.util.Objects.requireNonNull;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import adsbrecorder.common.auth.PrincipalChangedEvent;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+
+@Component
+public class PrincipalInvalidationListener implements ListOfTopics {
+
+    private ReceiverTokenAuthenticationFilter receiverTokenAuthenticationFilter;
+
+    @Autowired
+    public PrincipalInvalidationListener(ReceiverTokenAuthenticationFilter receiverTokenAuthenticationFilter) {
+        this.receiverTokenAuthenticationFilter = requireNonNull(receiverTokenAuthenticationFilter);
+    }
+
+    // every instance keeps its own cache, so every instance needs its own consumer group
+    @KafkaListener(topics = PRINCIPAL_INVALIDATION,
+            groupId = "#{T(java.util.UUID).randomUUID().toString()}",
+            containerFactory = "principalInvalidationContainerFactory")
+    public void onPrincipalInvalidation(ConsumerRecord<String, String> record) {
+        if (record.value() == null)
+            return;
+        if (PrincipalChangedEvent.USER.equals(record.key())) {
+            receiverTokenAuthenticationFilter.invalidateOwner(record.value());
+        } else {
+            receiverTokenAuthenticationFilter.invalidateReceiver(record.value());
+        }
+    }
+}
@@ -36,6 +36,8 @@ public class ReceiverAuthenticationAdapter extends TokenAuthenticationAdapter im
     protected Map<String, String> hasAnyAuthorityURLs() {
         return Map.of(
             ADD_NEW_RECORDS, ADD_TRACKING_RECORD,
+            ADD_NEW_RECORDS_STREAM, ADD_TRACKING_RECORD,
+            ADD_RAW_FRAMES, ADD_TRACKING_RECORD,
             ADD_VELOCITY_UPDATES, ADD_TRACKING_RECORD
         );
     }
@@ -4,13 +4,18 @@ import static java.util.Objects.requireNonNull;
 
 import java.security.Key;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import adsbrecorder.client.entity.RemoteReceiver;
 import adsbrecorder.client.service.AuthService;
 import adsbrecorder.client.service.RemoteReceiverService;
+import adsbrecorder.common.auth.PrincipalCache;
 import adsbrecorder.common.auth.TokenAuthenticationFilter;
 import adsbrecorder.user.service.UserService;
 import io.jsonwebtoken.Claims;
@@ -21,6 +26,13 @@ public class ReceiverTokenAuthenticationFilter extends TokenAuthenticationFilter
     private AuthService authService;
     private RemoteReceiverService remoteReceiverService;
     private UserService userService;
+    private PrincipalCache<RemoteReceiver> principalCache;
+
+    @Value("${adsbrecorder.receiver.principal_cache.ttl:60000}")
+    private long principalCacheTTL;
+
+    @Value("${adsbrecorder.receiver.principal_cache.max_size:1024}")
+    private int principalCacheSize;
 
     @Autowired
     public ReceiverTokenAuthenticationFilter(AuthService authService, RemoteReceiverService remoteReceiverService, UserService userService) {
@@ -29,12 +41,38 @@ public class ReceiverTokenAuthenticationFilter extends TokenAuthenticationFilter
         this.userService = requireNonNull(userService);
     }
 
+    @PostConstruct
+    public void initPrincipalCache() {
+        this.principalCache = new PrincipalCache<RemoteReceiver>(principalCacheTTL, principalCacheSize);
+    }
+
+    /**
+     * The authenticated receiver is available as the details of the returned token
+     */
     @Override
     protected Authentication tryAuthenticate(Claims claims) {
-        RemoteReceiver receiver = remoteReceiverService.findRemoteReceiver(claims.getSubject());
-        // Inherit authorities from owner
-        receiver.setOwner(userService.authorize(receiver.getOwner()));
-        return receiver.toAuthenticationToken();
+        final long now = System.currentTimeMillis();
+        final String cacheKey = PrincipalCache.key(claims.getId(), claims.getSubject());
+        RemoteReceiver receiver = principalCache.get(cacheKey, now);
+        if (receiver == null) {
+            receiver = remoteReceiverService.findRemoteReceiver(claims.getSubject());
+            // Inherit authorities from owner
+            receiver.setOwner(userService.authorize(receiver.getOwner()));
+            if (receiver.toAuthenticationToken().isAuthenticated())
+                principalCache.put(cacheKey, receiver, now);
+        }
+        UsernamePasswordAuthenticationToken authToken = receiver.toAuthenticationToken();
+        authToken.setDetails(receiver);
+        return authToken;
+    }
+
+    public void invalidateReceiver(String remoteReceiverName) {
+        principalCache.invalidateIf(receiver -> remoteReceiverName.equals(receiver.getRemoteReceiverName()));
+    }
+
+    public void invalidateOwner(String username) {
+        principalCache.invalidateIf(receiver -> receiver.getOwner() != null
+                && username.equals(receiver.getOwner().getUsername()));
     }
 
     @Override
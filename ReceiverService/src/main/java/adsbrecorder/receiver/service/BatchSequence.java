@@ -0,0 +1,49 @@
+package adsbrecorder.receiver.service;
+
+/**
+ * Value of the {@link BatchSequenceService#BATCH_SEQUENCE_HEADER}, "epoch:sequence" or a bare sequence number.
+ * The epoch is any token the receiver picks anew whenever its sequence numbers start over, e.g. at startup.
+ * Only batches with an epoch are deduplicated, a bare sequence number cannot tell a restart from a retry.
+ */
+public class BatchSequence {
+
+    public final static String NO_EPOCH = "";
+
+    private final String epoch;
+    private final long sequence;
+
+    public BatchSequence(String epoch, long sequence) {
+        this.epoch = epoch == null ? NO_EPOCH : epoch;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return null if the header is absent
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public static BatchSequence parse(String header) {
+        if (header == null)
+            return null;
+        int colon = header.lastIndexOf(':');
+        try {
+            return colon < 0
+                    ? new BatchSequence(NO_EPOCH, Long.parseLong(header.trim()))
+                    : new BatchSequence(header.substring(0, colon).trim(), Long.parseLong(header.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed " + BatchSequenceService.BATCH_SEQUENCE_HEADER + ": " + header);
+        }
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return epoch.isEmpty() ? String.valueOf(sequence) : epoch + ":" + sequence;
+    }
+}
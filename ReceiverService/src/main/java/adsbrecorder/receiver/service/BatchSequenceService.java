@@ -0,0 +1,28 @@
+package adsbrecorder.receiver.service;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+
+/**
+ * Remembers recently seen batch sequence numbers per receiver so that retried uploads
+ * can be acknowledged without being written again
+ */
+public interface BatchSequenceService {
+
+    String BATCH_SEQUENCE_HEADER = "X-Batch-Sequence";
+
+    String TRACKING_RECORDS = "records";
+    String VELOCITY_UPDATES = "velocity";
+
+    /**
+     * Claim a sequence number of a batch stream of the receiver, a new epoch starts the stream over,
+     * a sequence number without an epoch is always taken as new
+     * @return true if the batch is new and should be written, false if it is a replay
+     */
+    boolean acquire(RemoteReceiver sourceReceiver, String stream, BatchSequence sequence);
+
+    /**
+     * Give back a sequence number claimed by {@link #acquire} when the batch could not be written,
+     * so that the next retry is accepted
+     */
+    void release(RemoteReceiver sourceReceiver, String stream, BatchSequence sequence);
+}
@@ -0,0 +1,28 @@
+package adsbrecorder.receiver.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public interface DuplicateSuppressionService {
+
+    /**
+     * Drop records another receiver already reported for the same aircraft, position and time,
+     * the dropped records only count towards the "also seen" coverage statistics of the receiver
+     * @return records to be saved, in their original order
+     */
+    List<TrackingRecord> suppressDuplicates(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver);
+
+    /**
+     * Forget records returned by {@link #suppressDuplicates} that could not be saved,
+     * so that the receiver can send them again
+     */
+    void forget(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver);
+
+    /**
+     * @return number of records of the receiver suppressed since the last coverage flush
+     */
+    long getPendingAlsoSeen(Long remoteReceiverID);
+}
@@ -0,0 +1,35 @@
+package adsbrecorder.receiver.service;
+
+import java.util.Collection;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+/**
+ * Write-behind buffer between the ingest endpoints and MongoDB / Kafka
+ */
+public interface IngestBufferService {
+
+    String QUEUE_DEPTH_HEADER = "X-Ingest-Queue-Depth";
+
+    /**
+     * Queue valid records for writing, all or nothing
+     * @return number of records queued, -1 if the buffer has no room for them
+     */
+    int offer(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver);
+
+    /**
+     * @return true if the buffer has no room left, uploads written around the buffer should wait as well
+     */
+    boolean isFull();
+
+    /**
+     * @return number of records waiting to be written
+     */
+    int getQueueDepth();
+
+    /**
+     * @return estimated seconds until the buffer has drained enough to accept new records
+     */
+    long getRetryAfterSeconds();
+}
@@ -0,0 +1,37 @@
+package adsbrecorder.receiver.service;
+
+/**
+ * What an upload of raw frames amounted to
+ */
+public class RawFrameIngestResult {
+
+    public final static RawFrameIngestResult NONE = new RawFrameIngestResult(0L, 0L, 0L);
+
+    private final long framesRead;
+    private final long recordsCreated;
+    private final long velocityUpdated;
+
+    public RawFrameIngestResult(long framesRead, long recordsCreated, long velocityUpdated) {
+        this.framesRead = framesRead;
+        this.recordsCreated = recordsCreated;
+        this.velocityUpdated = velocityUpdated;
+    }
+
+    public RawFrameIngestResult plus(RawFrameIngestResult other) {
+        return new RawFrameIngestResult(framesRead + other.framesRead,
+                recordsCreated + other.recordsCreated,
+                velocityUpdated + other.velocityUpdated);
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    public long getRecordsCreated() {
+        return recordsCreated;
+    }
+
+    public long getVelocityUpdated() {
+        return velocityUpdated;
+    }
+}
@@ -0,0 +1,22 @@
+package adsbrecorder.receiver.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+
+public interface RawFrameIngestService {
+
+    String AVR_MEDIA_TYPE = "text/plain";
+    String BEAST_MEDIA_TYPE = "application/octet-stream";
+
+    /**
+     * Decode AVR text frames, one "*...;" frame per line, and save the resulting records
+     */
+    RawFrameIngestResult ingestAVR(InputStream in, RemoteReceiver sourceReceiver) throws IOException;
+
+    /**
+     * Decode a Beast binary stream and save the resulting records
+     */
+    RawFrameIngestResult ingestBeast(InputStream in, RemoteReceiver sourceReceiver) throws IOException;
+}
@@ -0,0 +1,35 @@
+package adsbrecorder.receiver.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+
+public interface TrackingRecordIngestService {
+
+    String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    List<TrackingRecord> ingest(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver);
+
+    /**
+     * Read newline-delimited JSON tracking records from the stream and save them in micro-batches
+     * while the body is still arriving
+     * @param in request body
+     * @param sourceReceiver the uploading receiver
+     * @return number of records saved
+     * @throws IOException if the stream cannot be read or contains malformed JSON, the micro-batches
+     * completed before stay saved and the records read since are discarded
+     */
+    long ingestStream(InputStream in, RemoteReceiver sourceReceiver) throws IOException;
+
+    default boolean isValidTrackingRecord(TrackingRecord record) {
+        return record != null
+            && record.getAddressICAO() >= 0 && record.getAddressICAO() <= 0xFFFFFF
+            && Math.abs(record.getLatitude()) > 0.0
+            && Math.abs(record.getLongitude()) > 0.0
+            && Math.abs(record.getAltitude()) > 0.0;
+    }
+}
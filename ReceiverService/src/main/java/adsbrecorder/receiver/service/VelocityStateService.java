@@ -0,0 +1,22 @@
+package adsbrecorder.receiver.service;
+
+import java.util.Collection;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+/**
+ * Last known velocity vector of every aircraft seen recently, used to complete tracking records
+ * before they are first written
+ */
+public interface VelocityStateService {
+
+    void update(Collection<VelocityUpdate> updates);
+
+    /**
+     * Copy velocity, heading and vertical rate into records that have none, when a velocity vector
+     * of the same aircraft close enough in time is known. Records carrying a velocity update the state.
+     * @return number of records filled
+     */
+    int fillMissingVelocity(Collection<TrackingRecord> records);
+}
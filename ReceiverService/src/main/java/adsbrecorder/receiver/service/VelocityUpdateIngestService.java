@@ -0,0 +1,21 @@
+package adsbrecorder.receiver.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+
+public interface VelocityUpdateIngestService {
+
+    /**
+     * Update the velocity state, save the updates and, when enabled, publish the saved ones for streaming interleaving
+     * @return saved updates
+     */
+    List<VelocityUpdate> ingest(Collection<VelocityUpdate> updates, RemoteReceiver sourceReceiver);
+
+    default boolean isValidVelocityUpdate(VelocityUpdate update) {
+        return update != null
+            && update.getAddressICAO() >= 0 && update.getAddressICAO() <= 0xFFFFFF;
+    }
+}
@@ -0,0 +1,37 @@
+package adsbrecorder.receiver.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.service.BatchSequence;
+import adsbrecorder.receiver.service.BatchSequenceService;
+
+@Service
+public class BatchSequenceServiceImpl implements BatchSequenceService {
+
+    private Map<String, BatchSequenceWindow> windows;
+
+    public BatchSequenceServiceImpl() {
+        this.windows = new ConcurrentHashMap<String, BatchSequenceWindow>();
+    }
+
+    @Override
+    public boolean acquire(RemoteReceiver sourceReceiver, String stream, BatchSequence sequence) {
+        return windows.computeIfAbsent(windowKey(sourceReceiver, stream), key -> new BatchSequenceWindow())
+                .mark(sequence.getEpoch(), sequence.getSequence());
+    }
+
+    @Override
+    public void release(RemoteReceiver sourceReceiver, String stream, BatchSequence sequence) {
+        BatchSequenceWindow window = windows.get(windowKey(sourceReceiver, stream));
+        if (window != null)
+            window.unmark(sequence.getEpoch(), sequence.getSequence());
+    }
+
+    private String windowKey(RemoteReceiver sourceReceiver, String stream) {
+        return sourceReceiver.getRemoteReceiverID() + ":" + stream;
+    }
+}
@@ -0,0 +1,72 @@
+package adsbrecorder.receiver.service.impl;
+
+import adsbrecorder.receiver.service.BatchSequence;
+
+/**
+ * Sliding anti-replay window over batch sequence numbers: a high-water mark plus a bitmap
+ * of the 64 sequence numbers below it. A new epoch starts the window over, and so does a sequence number
+ * below the window, since no retry comes from that far back and it is a receiver counting from the start again.
+ * Bare sequence numbers are not deduplicated: without an epoch a receiver that restarted early
+ * would land inside the window and have its new batches taken for replays.
+ */
+public class BatchSequenceWindow {
+
+    public final static int SIZE = Long.SIZE;
+
+    private String epoch;
+    private long highWaterMark;
+    private long seen;
+    private boolean empty;
+
+    public BatchSequenceWindow() {
+        this.epoch = BatchSequence.NO_EPOCH;
+        this.empty = true;
+    }
+
+    /**
+     * @return true if the sequence number has not been seen before in the epoch and is now marked,
+     * always true without an epoch
+     */
+    public synchronized boolean mark(String epoch, long sequence) {
+        if (BatchSequence.NO_EPOCH.equals(epoch))
+            return true;
+        if (!this.epoch.equals(epoch)) {
+            this.epoch = epoch;
+            empty = true;
+        }
+        if (empty || sequence > highWaterMark) {
+            long shift = empty ? SIZE : sequence - highWaterMark;
+            seen = shift >= SIZE ? 0L : seen << shift;
+            seen |= 1L;
+            highWaterMark = sequence;
+            empty = false;
+            return true;
+        }
+        long offset = highWaterMark - sequence;
+        if (offset >= SIZE) {
+            seen = 1L;
+            highWaterMark = sequence;
+            return true;
+        }
+        long bit = 1L << offset;
+        if ((seen & bit) != 0L)
+            return false;
+        seen |= bit;
+        return true;
+    }
+
+    /**
+     * Forget a marked sequence number, the high-water mark stays where it is
+     */
+    public synchronized void unmark(String epoch, long sequence) {
+        if (empty || !this.epoch.equals(epoch))
+            return;
+        long offset = highWaterMark - sequence;
+        if (offset >= 0 && offset < SIZE)
+            seen &= ~(1L << offset);
+    }
+
+    public synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+}
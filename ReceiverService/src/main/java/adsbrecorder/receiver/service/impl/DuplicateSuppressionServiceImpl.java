@@ -0,0 +1,142 @@
+package adsbrecorder.receiver.service.impl;
+
+import static java.util.Objects.requireNonNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.service.DuplicateSuppressionService;
+
+@Service
+public class DuplicateSuppressionServiceImpl implements DuplicateSuppressionService {
+
+    public final static String COVERAGE_COLLECTION = "receiverCoverage";
+
+    private final static long UNKNOWN_RECEIVER = -1L;
+
+    private MongoTemplate mongoTemplate;
+    private TimeBucketedKeySet seen;
+    private Map<Long, LongAdder> alsoSeen;
+
+    private boolean enabled;
+    private long window;
+    private double positionTolerance;
+
+    /**
+     * @param window two reports closer than this in lastTimeSeen are the same observation,
+     * lastTimeSeen is taken no further than this from the time of arrival
+     * @param positionTolerance positions are compared after rounding to this many degrees
+     */
+    @Autowired
+    public DuplicateSuppressionServiceImpl(MongoTemplate mongoTemplate,
+            @Value("${adsbrecorder.receiver.dedup.enabled:true}") boolean enabled,
+            @Value("${adsbrecorder.receiver.dedup.window:2000}") long window,
+            @Value("${adsbrecorder.receiver.dedup.position_tolerance:0.0001}") double positionTolerance) {
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.enabled = enabled;
+        this.window = window;
+        this.positionTolerance = positionTolerance;
+        this.seen = new TimeBucketedKeySet(window, 4, 4096);
+        this.alsoSeen = new ConcurrentHashMap<Long, LongAdder>();
+    }
+
+    @Override
+    public List<TrackingRecord> suppressDuplicates(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        if (!enabled)
+            return new ArrayList<TrackingRecord>(records);
+        final long receiverID = receiverID(sourceReceiver);
+        final long now = System.currentTimeMillis();
+        List<TrackingRecord> unique = new ArrayList<TrackingRecord>(records.size());
+        long suppressed = 0L;
+        for (TrackingRecord record : records) {
+            long time = bucketTime(record, now);
+            long owner = seen.putIfAbsent(observationKey(record), time, receiverID);
+            if (owner == TimeBucketedKeySet.ABSENT) {
+                unique.add(record);
+            } else if (owner != receiverID) {
+                suppressed++;
+            }
+            // the same receiver sending the same observation twice is a resend, not coverage
+        }
+        if (suppressed > 0L && receiverID != UNKNOWN_RECEIVER)
+            alsoSeen.computeIfAbsent(receiverID, id -> new LongAdder()).add(suppressed);
+        return unique;
+    }
+
+    @Override
+    public void forget(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        if (!enabled)
+            return;
+        final long receiverID = receiverID(sourceReceiver);
+        final long now = System.currentTimeMillis();
+        for (TrackingRecord record : records) {
+            long time = bucketTime(record, now);
+            seen.remove(observationKey(record), time, receiverID);
+        }
+    }
+
+    @Override
+    public long getPendingAlsoSeen(Long remoteReceiverID) {
+        LongAdder counter = alsoSeen.get(remoteReceiverID);
+        return counter == null ? 0L : counter.sum();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${adsbrecorder.receiver.dedup.coverage_flush_interval:60000}")
+    public void flushCoverage() {
+        final Date now = new Date();
+        alsoSeen.forEach((receiverID, counter) -> {
+            long n = counter.sumThenReset();
+            if (n == 0L)
+                return;
+            try {
+                mongoTemplate.upsert(query(where("_id").is(receiverID)),
+                        new Update().inc("alsoSeen", n).set("lastUpdated", now),
+                        COVERAGE_COLLECTION);
+            } catch (RuntimeException e) {
+                counter.add(n);
+                System.err.println("Failed to update coverage of receiver " + receiverID + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static long receiverID(RemoteReceiver sourceReceiver) {
+        return sourceReceiver == null || sourceReceiver.getRemoteReceiverID() == null
+                ? UNKNOWN_RECEIVER : sourceReceiver.getRemoteReceiverID();
+    }
+
+    // a receiver clock far ahead must not move the buckets past everyone else, nor a stale one fall out of them
+    private long bucketTime(TrackingRecord record, long now) {
+        if (record.getLastTimeSeen() <= 0L)
+            return now;
+        return Math.max(now - window, Math.min(now + window, record.getLastTimeSeen()));
+    }
+
+    private long observationKey(TrackingRecord record) {
+        long lat = Math.round(record.getLatitude() / positionTolerance);
+        long lon = Math.round(record.getLongitude() / positionTolerance);
+        long key = record.getAddressICAO() & 0xFFFFFFL;
+        key = key * 0x9E3779B97F4A7C15L + lat;
+        key = key * 0x9E3779B97F4A7C15L + lon;
+        key = key * 0x9E3779B97F4A7C15L + record.getAltitude();
+        return key;
+    }
+}
@@ -0,0 +1,325 @@
+package adsbrecorder.receiver.service.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.MongoServerException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+import adsbrecorder.receiver.service.DuplicateSuppressionService;
+import adsbrecorder.receiver.service.IngestBufferService;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.VelocityStateService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Service
+public class IngestBufferServiceImpl implements IngestBufferService, ListOfTopics {
+
+    private final static int DUPLICATE_KEY = 11000;
+
+    // server errors that go away on their own: network, time limits, write conflicts, elections and shutdowns
+    private final static Set<Integer> TRANSIENT_ERRORS = Set.of(6, 7, 50, 64, 89, 91, 112, 189, 262, 9001,
+            10107, 11600, 11602, 13435, 13436);
+
+    private TrackingRecordIngestService trackingRecordIngestService;
+    private DuplicateSuppressionService duplicateSuppressionService;
+    private VelocityStateService velocityStateService;
+    private MongoTemplate mongoTemplate;
+    private KafkaTemplate<String, TrackingRecord> kafkaTemplate;
+
+    private BlockingQueue<TrackingRecord> queue;
+    private AtomicInteger queued;
+    private ExecutorService writers;
+    private volatile boolean running;
+    // records written per second, exponentially weighted
+    private volatile double drainRate;
+
+    private Timer flushTimer;
+    private Counter rejectedCounter;
+    private Counter writtenCounter;
+    private Counter retriedCounter;
+    private Counter droppedCounter;
+
+    private int queueCapacity;
+    private int writerThreads;
+    private int flushSize;
+    private long flushInterval;
+    // first wait after a failed write, doubled up to the maximum while writes keep failing
+    private long retryBackoff;
+    private long maxRetryBackoff;
+
+    @Autowired
+    public IngestBufferServiceImpl(TrackingRecordIngestService trackingRecordIngestService,
+            DuplicateSuppressionService duplicateSuppressionService,
+            VelocityStateService velocityStateService,
+            MongoTemplate mongoTemplate,
+            KafkaTemplate<String, TrackingRecord> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${adsbrecorder.receiver.ingest.queue_capacity:50000}") int queueCapacity,
+            @Value("${adsbrecorder.receiver.ingest.writer_threads:2}") int writerThreads,
+            @Value("${adsbrecorder.receiver.ingest.flush_size:500}") int flushSize,
+            @Value("${adsbrecorder.receiver.ingest.flush_interval:200}") long flushInterval,
+            @Value("${adsbrecorder.receiver.ingest.retry_backoff:500}") long retryBackoff,
+            @Value("${adsbrecorder.receiver.ingest.max_retry_backoff:30000}") long maxRetryBackoff) {
+        this.trackingRecordIngestService = requireNonNull(trackingRecordIngestService);
+        this.duplicateSuppressionService = requireNonNull(duplicateSuppressionService);
+        this.velocityStateService = requireNonNull(velocityStateService);
+        this.mongoTemplate = requireNonNull(mongoTemplate);
+        this.kafkaTemplate = requireNonNull(kafkaTemplate);
+        this.queue = new LinkedBlockingQueue<TrackingRecord>();
+        this.queued = new AtomicInteger();
+        Gauge.builder("adsbrecorder.ingest.queue.depth", queued, AtomicInteger::get)
+            .description("Tracking records waiting to be written")
+            .register(requireNonNull(meterRegistry));
+        this.flushTimer = Timer.builder("adsbrecorder.ingest.flush")
+            .description("Time to bulk insert and publish one batch")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("adsbrecorder.ingest.rejected")
+            .description("Tracking records rejected because the buffer was full")
+            .register(meterRegistry);
+        this.writtenCounter = Counter.builder("adsbrecorder.ingest.written")
+            .description("Tracking records written")
+            .register(meterRegistry);
+        this.retriedCounter = Counter.builder("adsbrecorder.ingest.retried")
+            .description("Tracking records queued again after a failed write")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("adsbrecorder.ingest.dropped")
+            .description("Tracking records dropped after a write error that retrying cannot fix")
+            .register(meterRegistry);
+        this.queueCapacity = queueCapacity;
+        this.writerThreads = writerThreads;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writers = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "ingest-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < writerThreads; i++)
+            writers.execute(this::drain);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writers.shutdown();
+        if (!writers.awaitTermination(30, TimeUnit.SECONDS))
+            System.err.println(queued.get() + " tracking records were not written before shutdown");
+    }
+
+    @Override
+    public int offer(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        List<TrackingRecord> validRecords = records.stream()
+                .filter(trackingRecordIngestService::isValidTrackingRecord)
+                .collect(Collectors.toList());
+        int n = validRecords.size();
+        int current;
+        do {
+            current = queued.get();
+            if (current + n > queueCapacity) {
+                rejectedCounter.increment(n);
+                return -1;
+            }
+        } while (!queued.compareAndSet(current, current + n));
+        // capacity is reserved before suppressing duplicates so that a rejected batch leaves no trace
+        // and can be retried as it is
+        // once queued, records are retried until written or dropped as unwritable,
+        // so their keys only have to be dropped if queueing fails
+        List<TrackingRecord> uniqueRecords = duplicateSuppressionService.suppressDuplicates(validRecords, sourceReceiver);
+        queued.addAndGet(uniqueRecords.size() - n);
+        try {
+            velocityStateService.fillMissingVelocity(uniqueRecords);
+        } catch (RuntimeException e) {
+            queued.addAndGet(-uniqueRecords.size());
+            duplicateSuppressionService.forget(uniqueRecords, sourceReceiver);
+            throw e;
+        }
+        uniqueRecords.forEach(record -> {
+            record.setSourceReceiver(sourceReceiver);
+            queue.add(record);
+        });
+        return uniqueRecords.size();
+    }
+
+    @Override
+    public boolean isFull() {
+        return queued.get() >= queueCapacity;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    @Override
+    public long getRetryAfterSeconds() {
+        double rate = drainRate;
+        if (rate < 1.0)
+            return 1L;
+        return Math.max(1L, (long) Math.ceil(queued.get() / rate));
+    }
+
+    private void drain() {
+        List<TrackingRecord> batch = new ArrayList<TrackingRecord>(flushSize);
+        long backoff = 0L;
+        while (running || !queue.isEmpty()) {
+            try {
+                TrackingRecord first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, flushSize - 1);
+                List<TrackingRecord> failed;
+                try {
+                    failed = flush(batch);
+                } catch (RuntimeException e) {
+                    // e.g. publishing failed, the retry finds the records written and publishes them again
+                    System.err.println("Failed to flush " + batch.size() + " tracking records, retrying: " + e);
+                    failed = new ArrayList<TrackingRecord>(batch);
+                }
+                queued.addAndGet(failed.size() - batch.size());
+                if (failed.isEmpty()) {
+                    backoff = 0L;
+                } else {
+                    // the receivers already have their 202, so the records stay queued until they are written
+                    retriedCounter.increment(failed.size());
+                    queue.addAll(failed);
+                    backoff = backoff == 0L ? retryBackoff : Math.min(backoff * 2L, maxRetryBackoff);
+                    Thread.sleep(backoff);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Records with an error retrying cannot fix are dropped
+     * @return records to be retried
+     */
+    private List<TrackingRecord> flush(List<TrackingRecord> batch) {
+        final long start = System.nanoTime();
+        // bulk inserts do not write generated ids back, assign them up front so they reach Kafka too,
+        // a retried record keeps its id
+        batch.forEach(record -> {
+            if (record.getId() == null)
+                record.setId(new BigInteger(new ObjectId().toHexString(), 16));
+        });
+        List<TrackingRecord> written = batch;
+        List<TrackingRecord> failed = new ArrayList<TrackingRecord>();
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, TrackingRecord.class)
+                .insert(batch)
+                .execute();
+        } catch (BulkOperationException e) {
+            // unordered, every insert without an error went through
+            Set<Integer> failedIndexes = new HashSet<Integer>();
+            Set<Integer> droppedIndexes = new HashSet<Integer>();
+            for (BulkWriteError error : e.getErrors()) {
+                // the id is taken by the same record, written by an earlier attempt
+                if (error.getCode() == DUPLICATE_KEY)
+                    continue;
+                (TRANSIENT_ERRORS.contains(error.getCode()) ? failedIndexes : droppedIndexes).add(error.getIndex());
+            }
+            // the inserts may not be durable, retrying them is safe as they come back as duplicates
+            boolean writeConcernFailed = e.getCause() instanceof BulkWriteException
+                    && ((BulkWriteException) e.getCause()).getWriteConcernError() != null;
+            written = new ArrayList<TrackingRecord>(batch.size());
+            List<TrackingRecord> dropped = new ArrayList<TrackingRecord>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (droppedIndexes.contains(i))
+                    dropped.add(batch.get(i));
+                else if (writeConcernFailed || failedIndexes.contains(i))
+                    failed.add(batch.get(i));
+                else
+                    written.add(batch.get(i));
+            }
+            if (!failed.isEmpty())
+                System.err.println("Failed to write " + failed.size() + " of " + batch.size() + " tracking records, retrying: " + e.getMessage());
+            drop(dropped, e);
+        } catch (RuntimeException e) {
+            if (!isTransient(e)) {
+                drop(batch, e);
+                return failed;
+            }
+            System.err.println("Failed to write " + batch.size() + " tracking records, retrying: " + e.getMessage());
+            failed.addAll(batch);
+            return failed;
+        }
+        written.forEach(record -> kafkaTemplate.send(REALTIME_DATA, PartitionKeys.of(record), record));
+        final long elapsed = System.nanoTime() - start;
+        flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        writtenCounter.increment(written.size());
+        double rate = written.size() * 1e9 / Math.max(elapsed, 1L) * writerThreads;
+        drainRate = drainRate == 0.0 ? rate : drainRate * 0.8 + rate * 0.2;
+        return failed;
+    }
+
+    private void drop(List<TrackingRecord> dropped, RuntimeException e) {
+        if (dropped.isEmpty())
+            return;
+        droppedCounter.increment(dropped.size());
+        System.err.println("Dropped " + dropped.size() + " tracking records that cannot be written: " + e.getMessage());
+        dropped.forEach(record -> System.err.println("Dropped tracking record " + record.getId()
+                + ", ICAO=" + record.getAddressICAO() + ", lastTimeSeen=" + record.getLastTimeSeen()));
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException)
+            return true;
+        Throwable cause = e instanceof DataAccessException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof MongoSocketException || cause instanceof MongoTimeoutException)
+            return true;
+        return cause instanceof MongoServerException && TRANSIENT_ERRORS.contains(((MongoServerException) cause).getCode());
+    }
+}
@@ -0,0 +1,183 @@
+package adsbrecorder.receiver.service.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.modes.BeastFrameReader;
+import adsbrecorder.modes.ModeSDecoder;
+import adsbrecorder.modes.ModeSListener;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.service.RawFrameIngestResult;
+import adsbrecorder.receiver.service.RawFrameIngestService;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.VelocityUpdateIngestService;
+
+@Service
+public class RawFrameIngestServiceImpl implements RawFrameIngestService {
+
+    private TrackingRecordIngestService trackingRecordIngestService;
+    private VelocityUpdateIngestService velocityUpdateIngestService;
+
+    // CPR decoding needs the previous frames of an aircraft, so each receiver keeps its decoder between uploads
+    private Map<String, DecoderSession> sessions;
+
+    @Value("${adsbrecorder.receiver.stream_batch_size:200}")
+    private int batchSize;
+
+    @Value("${adsbrecorder.receiver.frames.session_expiry:300000}")
+    private long sessionExpiry;
+
+    @Autowired
+    public RawFrameIngestServiceImpl(TrackingRecordIngestService trackingRecordIngestService,
+            VelocityUpdateIngestService velocityUpdateIngestService) {
+        this.trackingRecordIngestService = requireNonNull(trackingRecordIngestService);
+        this.velocityUpdateIngestService = requireNonNull(velocityUpdateIngestService);
+        this.sessions = new ConcurrentHashMap<String, DecoderSession>();
+    }
+
+    @Override
+    public RawFrameIngestResult ingestAVR(InputStream in, RemoteReceiver sourceReceiver) throws IOException {
+        final String name = sourceReceiver.getRemoteReceiverName();
+        DecoderSession session = acquire(name);
+        try {
+            synchronized (session) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+                RawFrameIngestResult saved = RawFrameIngestResult.NONE;
+                long frames = 0L;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    long now = System.currentTimeMillis();
+                    session.decoder.decodeAVR(line, now);
+                    session.lastUsed = now;
+                    frames++;
+                    if (session.isFull(batchSize))
+                        saved = saved.plus(flush(session, sourceReceiver));
+                }
+                saved = saved.plus(flush(session, sourceReceiver));
+                return new RawFrameIngestResult(frames, saved.getRecordsCreated(), saved.getVelocityUpdated());
+            }
+        } finally {
+            release(name);
+        }
+    }
+
+    @Override
+    public RawFrameIngestResult ingestBeast(InputStream in, RemoteReceiver sourceReceiver) throws IOException {
+        final String name = sourceReceiver.getRemoteReceiverName();
+        DecoderSession session = acquire(name);
+        try {
+            synchronized (session) {
+                byte[] buffer = new byte[8192];
+                RawFrameIngestResult saved = RawFrameIngestResult.NONE;
+                long frames = 0L;
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    long now = System.currentTimeMillis();
+                    frames += session.beastReader.read(buffer, 0, n, now);
+                    session.lastUsed = now;
+                    if (session.isFull(batchSize))
+                        saved = saved.plus(flush(session, sourceReceiver));
+                }
+                saved = saved.plus(flush(session, sourceReceiver));
+                return new RawFrameIngestResult(frames, saved.getRecordsCreated(), saved.getVelocityUpdated());
+            }
+        } finally {
+            release(name);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void expireSessions() {
+        final long now = System.currentTimeMillis();
+        // a session is only removed in the same map operation that sees it unused, so no upload can pick it up meanwhile
+        sessions.keySet().forEach(name -> sessions.computeIfPresent(name,
+                (key, session) -> session.users == 0 && now - session.lastUsed > sessionExpiry ? null : session));
+        sessions.values().forEach(session -> {
+            synchronized (session) {
+                session.decoder.expire(now, sessionExpiry);
+            }
+        });
+    }
+
+    private DecoderSession acquire(String name) {
+        return sessions.compute(name, (key, session) -> {
+            if (session == null)
+                session = new DecoderSession();
+            session.users++;
+            return session;
+        });
+    }
+
+    private void release(String name) {
+        sessions.computeIfPresent(name, (key, session) -> {
+            session.users--;
+            session.lastUsed = System.currentTimeMillis();
+            return session;
+        });
+    }
+
+    /**
+     * The batch is taken out of the session before it is saved, if saving fails it goes with the failed upload
+     * and the retry of the receiver decodes its frames again
+     */
+    private RawFrameIngestResult flush(DecoderSession session, RemoteReceiver sourceReceiver) {
+        final List<VelocityUpdate> updates = session.updates;
+        final List<TrackingRecord> records = session.records;
+        session.updates = new ArrayList<VelocityUpdate>();
+        session.records = new ArrayList<TrackingRecord>();
+        // velocity first, so that records of the same batch can be completed with it
+        long velocityUpdated = updates.isEmpty() ? 0L
+                : velocityUpdateIngestService.ingest(updates, sourceReceiver).size();
+        long recordsCreated = records.isEmpty() ? 0L
+                : trackingRecordIngestService.ingest(records, sourceReceiver).size();
+        return new RawFrameIngestResult(0L, recordsCreated, velocityUpdated);
+    }
+
+    private static class DecoderSession implements ModeSListener {
+        final ModeSDecoder decoder;
+        final BeastFrameReader beastReader;
+        List<TrackingRecord> records;
+        List<VelocityUpdate> updates;
+        volatile long lastUsed;
+        // uploads holding the session, only changed inside map operations on its key
+        int users;
+
+        DecoderSession() {
+            this.decoder = new ModeSDecoder(this);
+            this.beastReader = new BeastFrameReader(decoder);
+            this.records = new ArrayList<TrackingRecord>();
+            this.updates = new ArrayList<VelocityUpdate>();
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        boolean isFull(int batchSize) {
+            return records.size() >= batchSize || updates.size() >= batchSize;
+        }
+
+        @Override
+        public void onTrackingRecord(TrackingRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void onVelocityUpdate(VelocityUpdate update) {
+            updates.add(update);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package adsbrecorder.receiver.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Set of 64-bit keys grouped into a small ring of fixed-width time buckets.
+ * A key is found when it was added to the same or an adjacent bucket, so two adds
+ * less than one bucket width apart always match. Buckets are dropped wholesale
+ * when the ring wraps around, so nothing has to be expired one by one.
+ * Every key carries a 64-bit owner, typically the id of the receiver that added it first.
+ */
+public class TimeBucketedKeySet {
+
+    public final static long ABSENT = Long.MIN_VALUE;
+
+    private final static long EMPTY = 0L;
+    private final static long NO_BUCKET = Long.MIN_VALUE;
+
+    private final long bucketWidth;
+    private final int initialCapacity;
+    private final long[] bucketIds;
+    private final long[][] keys;
+    private final long[][] owners;
+    private final int[] sizes;
+    private long newestBucket;
+
+    /**
+     * @param bucketWidth width of one bucket in the time unit used by callers
+     * @param buckets number of buckets kept, at least 3
+     * @param initialCapacity initial slots per bucket, rounded up to a power of two
+     */
+    public TimeBucketedKeySet(long bucketWidth, int buckets, int initialCapacity) {
+        if (bucketWidth <= 0 || buckets < 3)
+            throw new IllegalArgumentException("bucketWidth must be positive and buckets at least 3");
+        this.bucketWidth = bucketWidth;
+        this.initialCapacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.bucketIds = new long[buckets];
+        this.keys = new long[buckets][];
+        this.owners = new long[buckets][];
+        this.sizes = new int[buckets];
+        this.newestBucket = NO_BUCKET;
+        Arrays.fill(bucketIds, NO_BUCKET);
+    }
+
+    /**
+     * Add the key unless it is already present around the given time
+     * @return {@link #ABSENT} if the key was added, otherwise the owner stored with the existing key
+     */
+    public synchronized long putIfAbsent(long key, long time, long owner) {
+        if (key == EMPTY)
+            key = 1L;
+        final long bucket = Math.floorDiv(time, bucketWidth);
+        for (long b = bucket - 1; b <= bucket + 1; b++) {
+            long existing = find(b, key);
+            if (existing != ABSENT)
+                return existing;
+        }
+        insert(bucket, key, owner);
+        return ABSENT;
+    }
+
+    /**
+     * Remove the key added around the given time, if it is still held with the given owner
+     * @return true if the key was removed
+     */
+    public synchronized boolean remove(long key, long time, long owner) {
+        if (key == EMPTY)
+            key = 1L;
+        final long bucket = Math.floorDiv(time, bucketWidth);
+        for (long b = bucket - 1; b <= bucket + 1; b++) {
+            if (delete(b, key, owner))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return number of keys held over all live buckets
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (int i = 0; i < sizes.length; i++)
+            size += sizes[i];
+        return size;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(bucketIds, NO_BUCKET);
+        Arrays.fill(sizes, 0);
+        Arrays.fill(keys, null);
+        Arrays.fill(owners, null);
+        newestBucket = NO_BUCKET;
+    }
+
+    private long find(long bucket, long key) {
+        final int idx = (int) Math.floorMod(bucket, (long) bucketIds.length);
+        if (bucketIds[idx] != bucket || sizes[idx] == 0)
+            return ABSENT;
+        final long[] table = keys[idx];
+        final int mask = table.length - 1;
+        for (int slot = mix(key) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == key)
+                return owners[idx][slot];
+        }
+        return ABSENT;
+    }
+
+    private boolean delete(long bucket, long key, long owner) {
+        final int idx = (int) Math.floorMod(bucket, (long) bucketIds.length);
+        if (bucketIds[idx] != bucket || sizes[idx] == 0)
+            return false;
+        final long[] table = keys[idx];
+        final long[] tableOwners = owners[idx];
+        final int mask = table.length - 1;
+        int hole = mix(key) & mask;
+        while (table[hole] != key || tableOwners[hole] != owner) {
+            if (table[hole] == EMPTY)
+                return false;
+            hole = (hole + 1) & mask;
+        }
+        // shift back the following keys of the run that can no longer be reached past the hole
+        for (int slot = (hole + 1) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = mix(table[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = table[slot];
+                tableOwners[hole] = tableOwners[slot];
+                hole = slot;
+            }
+        }
+        table[hole] = EMPTY;
+        sizes[idx]--;
+        return true;
+    }
+
+    private void insert(long bucket, long key, long owner) {
+        if (newestBucket != NO_BUCKET && bucket <= newestBucket - bucketIds.length)
+            return; // older than anything still kept
+        final int idx = (int) Math.floorMod(bucket, (long) bucketIds.length);
+        if (bucketIds[idx] != bucket) {
+            bucketIds[idx] = bucket;
+            sizes[idx] = 0;
+            if (keys[idx] == null) {
+                keys[idx] = new long[initialCapacity];
+                owners[idx] = new long[initialCapacity];
+            } else {
+                Arrays.fill(keys[idx], EMPTY);
+            }
+        }
+        if (newestBucket == NO_BUCKET || bucket > newestBucket)
+            newestBucket = bucket;
+        if ((sizes[idx] + 1) * 2 > keys[idx].length)
+            grow(idx);
+        put(keys[idx], owners[idx], key, owner);
+        sizes[idx]++;
+    }
+
+    private void grow(int idx) {
+        final long[] oldKeys = keys[idx];
+        final long[] oldOwners = owners[idx];
+        final long[] newKeys = new long[oldKeys.length << 1];
+        final long[] newOwners = new long[oldKeys.length << 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY)
+                put(newKeys, newOwners, oldKeys[i], oldOwners[i]);
+        }
+        keys[idx] = newKeys;
+        owners[idx] = newOwners;
+    }
+
+    private static void put(long[] table, long[] tableOwners, long key, long owner) {
+        final int mask = table.length - 1;
+        int slot = mix(key) & mask;
+        while (table[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        table[slot] = key;
+        tableOwners[slot] = owner;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,103 @@
+package adsbrecorder.receiver.service.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+import adsbrecorder.receiver.service.DuplicateSuppressionService;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.TrackingRecordService;
+import adsbrecorder.receiver.service.VelocityStateService;
+
+@Service
+public class TrackingRecordIngestServiceImpl implements TrackingRecordIngestService, ListOfTopics {
+
+    private TrackingRecordService trackingRecordService;
+    private DuplicateSuppressionService duplicateSuppressionService;
+    private VelocityStateService velocityStateService;
+    private KafkaTemplate<String, TrackingRecord> kafkaTemplate;
+    private ObjectReader trackingRecordReader;
+
+    @Value("${adsbrecorder.receiver.stream_batch_size:200}")
+    private int streamBatchSize;
+
+    @Autowired
+    public TrackingRecordIngestServiceImpl(TrackingRecordService trackingRecordService,
+            DuplicateSuppressionService duplicateSuppressionService,
+            VelocityStateService velocityStateService,
+            KafkaTemplate<String, TrackingRecord> kafkaTemplate,
+            ObjectMapper objectMapper) {
+        this.trackingRecordService = requireNonNull(trackingRecordService);
+        this.duplicateSuppressionService = requireNonNull(duplicateSuppressionService);
+        this.velocityStateService = requireNonNull(velocityStateService);
+        this.kafkaTemplate = requireNonNull(kafkaTemplate);
+        this.trackingRecordReader = requireNonNull(objectMapper).readerFor(TrackingRecord.class);
+    }
+
+    @Override
+    public List<TrackingRecord> ingest(Collection<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        List<TrackingRecord> validRecords = records.stream()
+                .filter(this::isValidTrackingRecord)
+                .collect(Collectors.toList());
+        if (validRecords.isEmpty())
+            return validRecords;
+        return saveAndPublish(validRecords, sourceReceiver);
+    }
+
+    @Override
+    public long ingestStream(InputStream in, RemoteReceiver sourceReceiver) throws IOException {
+        final int batchSize = Math.max(1, streamBatchSize);
+        long ingested = 0L;
+        List<TrackingRecord> batch = new ArrayList<TrackingRecord>(batchSize);
+        try (MappingIterator<TrackingRecord> records = trackingRecordReader.readValues(in)) {
+            while (records.hasNextValue()) {
+                TrackingRecord record = records.nextValue();
+                if (isValidTrackingRecord(record)) {
+                    batch.add(record);
+                    if (batch.size() >= batchSize) {
+                        ingested += saveAndPublish(batch, sourceReceiver).size();
+                        batch = new ArrayList<TrackingRecord>(batchSize);
+                    }
+                }
+            }
+        }
+        if (batch.size() > 0)
+            ingested += saveAndPublish(batch, sourceReceiver).size();
+        return ingested;
+    }
+
+    private List<TrackingRecord> saveAndPublish(List<TrackingRecord> records, RemoteReceiver sourceReceiver) {
+        records = duplicateSuppressionService.suppressDuplicates(records, sourceReceiver);
+        if (records.isEmpty())
+            return records;
+        List<TrackingRecord> saved;
+        try {
+            velocityStateService.fillMissingVelocity(records);
+            saved = trackingRecordService.batchCreateTrackingRecord(records, sourceReceiver);
+        } catch (RuntimeException e) {
+            // not stored, so a retry of the receiver must not be taken for a resend
+            duplicateSuppressionService.forget(records, sourceReceiver);
+            throw e;
+        }
+        saved.forEach(record -> kafkaTemplate.send(REALTIME_DATA, PartitionKeys.of(record), record));
+        return saved;
+    }
+}
@@ -0,0 +1,105 @@
+package adsbrecorder.receiver.service.impl;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import adsbrecorder.common.utils.ConcurrentIntObjectMap;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.service.VelocityStateService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Service
+public class VelocityStateServiceImpl implements VelocityStateService {
+
+    private ConcurrentIntObjectMap<VelocityState> states;
+    private Counter filledCounter;
+    private Counter missingCounter;
+
+    // a velocity vector is used for records at most this far from it in lastTimeSeen
+    @Value("${adsbrecorder.receiver.velocity_state.max_age:10000}")
+    private long maxAge;
+
+    @Autowired
+    public VelocityStateServiceImpl(MeterRegistry meterRegistry) {
+        this.states = new ConcurrentIntObjectMap<VelocityState>(4096);
+        this.filledCounter = Counter.builder("adsbrecorder.ingest.velocity.filled")
+            .description("Tracking records completed with a velocity at ingest")
+            .register(meterRegistry);
+        this.missingCounter = Counter.builder("adsbrecorder.ingest.velocity.missing")
+            .description("Tracking records written without a velocity")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void update(Collection<VelocityUpdate> updates) {
+        updates.forEach(update -> update(update.getAddressICAO(), update.getVelocity(),
+                update.getHeading(), update.getVerticalRate(), update.getLastTimeSeen()));
+    }
+
+    @Override
+    public int fillMissingVelocity(Collection<TrackingRecord> records) {
+        int filled = 0, missing = 0;
+        for (TrackingRecord record : records) {
+            if (record.getVelocity() != 0) {
+                update(record.getAddressICAO(), record.getVelocity(),
+                        record.getHeading(), record.getVerticalRate(), record.getLastTimeSeen());
+                continue;
+            }
+            VelocityState state = states.get(record.getAddressICAO());
+            if (state != null && state.fill(record, maxAge)) {
+                filled++;
+            } else {
+                missing++;
+            }
+        }
+        filledCounter.increment(filled);
+        missingCounter.increment(missing);
+        return filled;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void expireStates() {
+        final long oldest = System.currentTimeMillis() - maxAge;
+        states.removeIf(state -> state.isOlderThan(oldest));
+    }
+
+    private void update(int addressICAO, int velocity, int heading, int verticalRate, long time) {
+        states.computeIfAbsent(addressICAO, icao -> new VelocityState())
+            .update(velocity, heading, verticalRate, time);
+    }
+
+    private static class VelocityState {
+        private int velocity;
+        private int heading;
+        private int verticalRate;
+        private long time = Long.MIN_VALUE;
+
+        synchronized void update(int velocity, int heading, int verticalRate, long time) {
+            if (time < this.time)
+                return;
+            this.velocity = velocity;
+            this.heading = heading;
+            this.verticalRate = verticalRate;
+            this.time = time;
+        }
+
+        synchronized boolean fill(TrackingRecord record, long maxAge) {
+            if (time == Long.MIN_VALUE || Math.abs(record.getLastTimeSeen() - time) > maxAge)
+                return false;
+            record.setVelocity(velocity);
+            record.setHeading(heading);
+            record.setVerticalRate(verticalRate);
+            return true;
+        }
+
+        synchronized boolean isOlderThan(long oldest) {
+            return time < oldest;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package adsbrecorder.receiver.service.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.kafka.ListOfTopics;
+import adsbrecorder.receiver.kafka.PartitionKeys;
+import adsbrecorder.receiver.service.VelocityStateService;
+import adsbrecorder.receiver.service.VelocityUpdateIngestService;
+import adsbrecorder.receiver.service.VelocityUpdateService;
+
+@Service
+public class VelocityUpdateIngestServiceImpl implements VelocityUpdateIngestService, ListOfTopics {
+
+    private VelocityUpdateService velocityUpdateService;
+    private VelocityStateService velocityStateService;
+    private KafkaTemplate<String, VelocityUpdate> kafkaTemplate;
+
+    // only the streaming interleaving consumes the velocity topic
+    @Value("${adsbrecorder.receiver.publish_velocity_updates:false}")
+    private boolean publishVelocityUpdates;
+
+    @Autowired
+    public VelocityUpdateIngestServiceImpl(VelocityUpdateService velocityUpdateService,
+            VelocityStateService velocityStateService,
+            KafkaTemplate<String, VelocityUpdate> kafkaTemplate) {
+        this.velocityUpdateService = requireNonNull(velocityUpdateService);
+        this.velocityStateService = requireNonNull(velocityStateService);
+        this.kafkaTemplate = requireNonNull(kafkaTemplate);
+    }
+
+    @Override
+    public List<VelocityUpdate> ingest(Collection<VelocityUpdate> updates, RemoteReceiver sourceReceiver) {
+        updates = updates.stream()
+                .filter(this::isValidVelocityUpdate)
+                .collect(Collectors.toList());
+        velocityStateService.update(updates);
+        List<VelocityUpdate> saved = velocityUpdateService.batchCreateVelocityUpdates(updates, sourceReceiver);
+        if (publishVelocityUpdates)
+            saved.forEach(update -> kafkaTemplate.send(VELOCITY_DATA, PartitionKeys.of(update), update));
+        return saved;
+    }
+}
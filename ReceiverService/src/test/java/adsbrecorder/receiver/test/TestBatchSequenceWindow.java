@@ -0,0 +1,96 @@
+package adsbrecorder.receiver.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.receiver.service.BatchSequence;
+import adsbrecorder.receiver.service.impl.BatchSequenceWindow;
+
+public class TestBatchSequenceWindow {
+
+    private final static String EPOCH = "5f1c2a";
+
+    @Test
+    public void testReplay() {
+        BatchSequenceWindow window = new BatchSequenceWindow();
+        assertTrue(window.mark(EPOCH, 10));
+        assertFalse(window.mark(EPOCH, 10));
+        assertTrue(window.mark(EPOCH, 12));
+        // out of order but inside the window
+        assertTrue(window.mark(EPOCH, 11));
+        assertFalse(window.mark(EPOCH, 11));
+        assertEquals(12, window.getHighWaterMark());
+    }
+
+    @Test
+    public void testWindowEdge() {
+        BatchSequenceWindow window = new BatchSequenceWindow();
+        assertTrue(window.mark(EPOCH, 100));
+        assertTrue(window.mark(EPOCH, 100 + BatchSequenceWindow.SIZE - 1));
+        assertFalse(window.mark(EPOCH, 100));
+        assertTrue(window.mark(EPOCH, 101));
+        assertTrue(window.mark(EPOCH, 1000));
+        assertTrue(window.mark(EPOCH, 1001 - BatchSequenceWindow.SIZE));
+        assertFalse(window.mark(EPOCH, 1001 - BatchSequenceWindow.SIZE));
+        // below the window, counting started over
+        assertTrue(window.mark(EPOCH, 1000 - BatchSequenceWindow.SIZE));
+        assertEquals(1000 - BatchSequenceWindow.SIZE, window.getHighWaterMark());
+    }
+
+    @Test
+    public void testRestart() {
+        BatchSequenceWindow window = new BatchSequenceWindow();
+        for (long sequence = 0; sequence < 500; sequence++)
+            assertTrue(window.mark("a1", sequence));
+        // the receiver restarted with a new epoch and counts from 0 again
+        for (long sequence = 0; sequence < 10; sequence++)
+            assertTrue(window.mark("b2", sequence));
+        assertFalse(window.mark("b2", 3));
+        window.unmark("a1", 3);
+        assertFalse(window.mark("b2", 3));
+        // within the same epoch, a sequence number below the window is counting from the start again
+        BatchSequenceWindow sameEpoch = new BatchSequenceWindow();
+        for (long sequence = 0; sequence < 500; sequence++)
+            assertTrue(sameEpoch.mark(EPOCH, sequence));
+        assertTrue(sameEpoch.mark(EPOCH, 0));
+        assertTrue(sameEpoch.mark(EPOCH, 1));
+        assertFalse(sameEpoch.mark(EPOCH, 0));
+    }
+
+    @Test
+    public void testRestartWithoutEpoch() {
+        BatchSequenceWindow legacy = new BatchSequenceWindow();
+        for (long sequence = 0; sequence < 10; sequence++)
+            assertTrue(legacy.mark(BatchSequence.NO_EPOCH, sequence));
+        // restarted after 10 batches, inside what would be the window, none of the new batches may be lost
+        for (long sequence = 0; sequence < 10; sequence++)
+            assertTrue(legacy.mark(BatchSequence.NO_EPOCH, sequence));
+    }
+
+    @Test
+    public void testParse() {
+        assertNull(BatchSequence.parse(null));
+        BatchSequence sequence = BatchSequence.parse("5f1c2a:42");
+        assertEquals("5f1c2a", sequence.getEpoch());
+        assertEquals(42L, sequence.getSequence());
+        assertEquals(BatchSequence.NO_EPOCH, BatchSequence.parse("42").getEpoch());
+        assertThrows(IllegalArgumentException.class, () -> BatchSequence.parse("5f1c2a:"));
+    }
+
+    @Test
+    public void testUnmark() {
+        BatchSequenceWindow window = new BatchSequenceWindow();
+        assertTrue(window.mark(EPOCH, 5));
+        window.unmark(EPOCH, 5);
+        assertTrue(window.mark(EPOCH, 5));
+        assertTrue(window.mark(EPOCH, 6));
+        window.unmark(EPOCH, 5);
+        assertTrue(window.mark(EPOCH, 5));
+        assertFalse(window.mark(EPOCH, 6));
+    }
+}
@@ -0,0 +1,181 @@
+package adsbrecorder.receiver.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.TrackingRecordService;
+import adsbrecorder.receiver.service.VelocityStateService;
+import adsbrecorder.receiver.service.impl.DuplicateSuppressionServiceImpl;
+import adsbrecorder.receiver.service.impl.TimeBucketedKeySet;
+import adsbrecorder.receiver.service.impl.TrackingRecordIngestServiceImpl;
+import adsbrecorder.receiver.service.impl.VelocityStateServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestDuplicateSuppression {
+
+    private final static long START = 1_560_000_000_000L;
+
+    private List<TrackingRecord> stored;
+    private int failures;
+    private TrackingRecordIngestService ingestService;
+    private RemoteReceiver receiver;
+
+    @BeforeEach
+    public void setUp() {
+        stored = new ArrayList<TrackingRecord>();
+        failures = 0;
+        ingestService = new TrackingRecordIngestServiceImpl(trackingRecordService(),
+                new DuplicateSuppressionServiceImpl(mongoTemplate(), true, 2000L, 0.0001),
+                (VelocityStateService) proxy(VelocityStateService.class, args -> 0),
+                new KafkaTemplate<String, TrackingRecord>(producerFactory()),
+                new ObjectMapper());
+        receiver = new RemoteReceiver();
+        receiver.setRemoteReceiverID(7L);
+    }
+
+    @Test
+    public void testRetryAfterFailedSave() {
+        failures = 1;
+        assertThrows(DataAccessResourceFailureException.class, () -> ingestService.ingest(records(), receiver));
+        assertTrue(stored.isEmpty());
+        // the retry of the receiver is not a resend, the records were never stored
+        assertEquals(2, ingestService.ingest(records(), receiver).size());
+        assertEquals(2, stored.size());
+        assertEquals(0, ingestService.ingest(records(), receiver).size());
+        assertEquals(2, stored.size());
+    }
+
+    @Test
+    public void testRemove() {
+        TimeBucketedKeySet set = new TimeBucketedKeySet(1000L, 4, 16);
+        for (long key = 1; key <= 100; key++)
+            set.putIfAbsent(key, 10_000L, 1L);
+        assertFalse(set.remove(42L, 10_000L, 2L));
+        for (long key = 1; key <= 100; key += 2)
+            assertTrue(set.remove(key, 10_500L, 1L));
+        assertEquals(50, set.size());
+        // the keys probed past a removed one are still found
+        for (long key = 2; key <= 100; key += 2)
+            assertEquals(1L, set.putIfAbsent(key, 10_000L, 3L));
+        for (long key = 1; key <= 100; key += 2)
+            assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(key, 10_000L, 3L));
+    }
+
+    @Test
+    public void testInvalidAddressICAO() {
+        TrackingRecordIngestService ingestService = new TrackingRecordIngestServiceImpl(trackingRecordService(),
+                new DuplicateSuppressionServiceImpl(mongoTemplate(), true, 2000L, 0.0001),
+                new VelocityStateServiceImpl(new SimpleMeterRegistry()),
+                new KafkaTemplate<String, TrackingRecord>(producerFactory()),
+                new ObjectMapper());
+        List<TrackingRecord> records = records();
+        records.get(0).setAddressICAO(-1);
+        records.get(1).setAddressICAO(0x1000000);
+        assertEquals(0, ingestService.ingest(records, receiver).size());
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    public void testReceiverClockSkew() {
+        DuplicateSuppressionServiceImpl service = new DuplicateSuppressionServiceImpl(mongoTemplate(), true, 2000L, 0.0001);
+        RemoteReceiver ahead = receiver(8L);
+        RemoteReceiver other = receiver(9L);
+        final long now = System.currentTimeMillis();
+        // a receiver clock hours ahead, and a garbage timestamp
+        assertEquals(2, service.suppressDuplicates(records(now + 6L * 3600_000L, 1), ahead).size());
+        assertEquals(2, service.suppressDuplicates(records(Long.MAX_VALUE, 2), ahead).size());
+        // receivers with correct clocks still have their common observations suppressed
+        assertEquals(2, service.suppressDuplicates(records(now, 3), receiver).size());
+        assertEquals(0, service.suppressDuplicates(records(now + 500L, 3), other).size());
+        assertEquals(2, service.getPendingAlsoSeen(other.getRemoteReceiverID()));
+    }
+
+    private RemoteReceiver receiver(long remoteReceiverID) {
+        RemoteReceiver receiver = new RemoteReceiver();
+        receiver.setRemoteReceiverID(remoteReceiverID);
+        return receiver;
+    }
+
+    private List<TrackingRecord> records() {
+        return records(START, 0);
+    }
+
+    private List<TrackingRecord> records(long lastTimeSeen, int altitude) {
+        List<TrackingRecord> records = new ArrayList<TrackingRecord>();
+        for (int i = 0; i < 2; i++) {
+            TrackingRecord record = new TrackingRecord();
+            record.setAddressICAO(0x7C6B2D + i);
+            record.setLatitude(-33.9 + i);
+            record.setLongitude(151.2);
+            record.setAltitude(12000 + altitude);
+            record.setLastTimeSeen(lastTimeSeen);
+            records.add(record);
+        }
+        return records;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TrackingRecordService trackingRecordService() {
+        return (TrackingRecordService) proxy(TrackingRecordService.class, args -> {
+            if (failures > 0) {
+                failures--;
+                throw new DataAccessResourceFailureException("timed out");
+            }
+            stored.addAll((Collection<TrackingRecord>) args[0]);
+            return new ArrayList<TrackingRecord>((Collection<TrackingRecord>) args[0]);
+        });
+    }
+
+    // the coverage statistics are never flushed here, so the template is never used
+    private MongoTemplate mongoTemplate() {
+        return new MongoTemplate((MongoDbFactory) proxy(MongoDbFactory.class, null));
+    }
+
+    private ProducerFactory<String, TrackingRecord> producerFactory() {
+        Producer<?, ?> producer = (Producer<?, ?>) proxy(Producer.class,
+                args -> CompletableFuture.completedFuture(null));
+        return new ProducerFactory<String, TrackingRecord>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Producer<String, TrackingRecord> createProducer() {
+                return (Producer<String, TrackingRecord>) producer;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(Object[] args);
+    }
+
+    private static Object proxy(Class<?> type, Answer answer) {
+        return Proxy.newProxyInstance(TestDuplicateSuppression.class.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(type, args);
+            return answer == null || method.getReturnType() == void.class ? null : answer.answer(args);
+        });
+    }
+}
@@ -0,0 +1,261 @@
+package adsbrecorder.receiver.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcernError;
+
+import adsbrecorder.client.entity.RemoteReceiver;
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.service.DuplicateSuppressionService;
+import adsbrecorder.receiver.service.TrackingRecordIngestService;
+import adsbrecorder.receiver.service.VelocityStateService;
+import adsbrecorder.receiver.service.impl.IngestBufferServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestIngestBuffer {
+
+    private final static long START = 1_560_000_000_000L;
+    private final static long TIMEOUT = 10_000L;
+
+    // answers of the bulk inserts in turn, a null answer lets the insert through
+    private ConcurrentLinkedQueue<Supplier<RuntimeException>> executions;
+    private ConcurrentLinkedQueue<RuntimeException> sends;
+    private List<List<TrackingRecord>> inserts;
+    private List<TrackingRecord> published;
+    private SimpleMeterRegistry meterRegistry;
+    private IngestBufferServiceImpl buffer;
+    private RemoteReceiver receiver;
+
+    @BeforeEach
+    public void setUp() {
+        executions = new ConcurrentLinkedQueue<Supplier<RuntimeException>>();
+        sends = new ConcurrentLinkedQueue<RuntimeException>();
+        inserts = new ArrayList<List<TrackingRecord>>();
+        published = new ArrayList<TrackingRecord>();
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new IngestBufferServiceImpl(
+                (TrackingRecordIngestService) proxy(TrackingRecordIngestService.class,
+                        args -> ((TrackingRecord) args[0]).getAddressICAO() != 0),
+                (DuplicateSuppressionService) proxy(DuplicateSuppressionService.class,
+                        args -> new ArrayList<Object>((Collection<?>) args[0])),
+                (VelocityStateService) proxy(VelocityStateService.class, args -> 0),
+                mongoTemplate(),
+                new KafkaTemplate<String, TrackingRecord>(producerFactory()),
+                meterRegistry, 4, 1, 10, 10L, 1L, 4L);
+        receiver = new RemoteReceiver();
+        receiver.setRemoteReceiverID(7L);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        buffer.stop();
+    }
+
+    @Test
+    public void testOfferAndReject() throws InterruptedException {
+        // no writer is started, the records stay queued
+        buffer.start();
+        buffer.stop();
+        assertEquals(3, buffer.offer(records(3), receiver));
+        assertFalse(buffer.isFull());
+        assertEquals(-1, buffer.offer(records(2), receiver));
+        assertEquals(2.0, meterRegistry.get("adsbrecorder.ingest.rejected").counter().count());
+        List<TrackingRecord> mixed = records(2);
+        mixed.get(0).setAddressICAO(0);
+        // the invalid record takes no room
+        assertEquals(1, buffer.offer(mixed, receiver));
+        assertEquals(4, buffer.getQueueDepth());
+        assertTrue(buffer.isFull());
+    }
+
+    @Test
+    public void testRetryTransientFailure() throws InterruptedException {
+        executions.add(() -> new DataAccessResourceFailureException("timed out"));
+        List<TrackingRecord> records = records(2);
+        assertEquals(2, buffer.offer(records, receiver));
+        buffer.start();
+        awaitDrained();
+        assertEquals(2, inserts.size());
+        assertEquals(records, published);
+        assertEquals(2.0, meterRegistry.get("adsbrecorder.ingest.retried").counter().count());
+        assertEquals(2.0, meterRegistry.get("adsbrecorder.ingest.written").counter().count());
+    }
+
+    @Test
+    public void testPartialFailure() throws InterruptedException {
+        // written by an earlier attempt, interrupted by an election, too large to ever be written
+        executions.add(() -> bulkFailure(null, error(11000, 0), error(11602, 1), error(10334, 2)));
+        List<TrackingRecord> records = records(4);
+        assertEquals(4, buffer.offer(records, receiver));
+        buffer.start();
+        awaitDrained();
+        assertEquals(List.of(records.get(1)), inserts.get(1));
+        assertEquals(List.of(records.get(0), records.get(3), records.get(1)), published);
+        assertEquals(1.0, meterRegistry.get("adsbrecorder.ingest.dropped").counter().count());
+        assertEquals(3.0, meterRegistry.get("adsbrecorder.ingest.written").counter().count());
+    }
+
+    @Test
+    public void testWriteConcernFailure() throws InterruptedException {
+        // inserted but maybe not durable, the retry finds them written
+        executions.add(() -> bulkFailure(new WriteConcernError(64, "waiting for replication timed out", new BasicDBObject())));
+        executions.add(() -> bulkFailure(null, error(11000, 0), error(11000, 1)));
+        List<TrackingRecord> records = records(2);
+        assertEquals(2, buffer.offer(records, receiver));
+        buffer.start();
+        awaitDrained();
+        assertEquals(2, inserts.size());
+        assertEquals(records, published);
+        assertEquals(2.0, meterRegistry.get("adsbrecorder.ingest.written").counter().count());
+    }
+
+    @Test
+    public void testPermanentFailure() throws InterruptedException {
+        executions.add(() -> new IllegalArgumentException("cannot map"));
+        assertEquals(2, buffer.offer(records(2), receiver));
+        buffer.start();
+        awaitDrained();
+        assertEquals(1, inserts.size());
+        assertTrue(published.isEmpty());
+        assertEquals(2.0, meterRegistry.get("adsbrecorder.ingest.dropped").counter().count());
+    }
+
+    @Test
+    public void testWriterSurvivesPublishFailure() throws InterruptedException {
+        sends.add(new IllegalStateException("producer closed"));
+        List<TrackingRecord> records = records(2);
+        assertEquals(2, buffer.offer(records, receiver));
+        buffer.start();
+        awaitDrained();
+        assertEquals(records, published);
+        // the writer is still there
+        assertEquals(1, buffer.offer(records(1), receiver));
+        awaitDrained();
+        assertEquals(3, published.size());
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (buffer.getQueueDepth() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "buffer not drained");
+            Thread.sleep(5L);
+        }
+    }
+
+    private List<TrackingRecord> records(int n) {
+        List<TrackingRecord> records = new ArrayList<TrackingRecord>();
+        for (int i = 0; i < n; i++) {
+            TrackingRecord record = new TrackingRecord();
+            record.setAddressICAO(0x7C6B2D + i);
+            record.setLastTimeSeen(START + i);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static BulkWriteError error(int code, int index) {
+        return new BulkWriteError(code, "error " + code, new BasicDBObject(), index);
+    }
+
+    // the driver only creates these itself
+    private static BulkOperationException bulkFailure(WriteConcernError writeConcernError, BulkWriteError... errors) {
+        try {
+            Constructor<BulkWriteException> constructor = BulkWriteException.class.getDeclaredConstructor(
+                    BulkWriteResult.class, List.class, WriteConcernError.class, ServerAddress.class);
+            constructor.setAccessible(true);
+            BulkWriteException source = constructor.newInstance(null, List.of(errors), writeConcernError, new ServerAddress());
+            return new BulkOperationException(source.getMessage(), source);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoTemplate mongoTemplate() {
+        return new MongoTemplate((MongoDbFactory) proxy(MongoDbFactory.class, null)) {
+            @Override
+            public BulkOperations bulkOps(BulkMode mode, Class<?> entityClass) {
+                return (BulkOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {BulkOperations.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "insert":
+                        synchronized (inserts) {
+                            inserts.add(new ArrayList<TrackingRecord>((List<TrackingRecord>) args[0]));
+                        }
+                        return proxy;
+                    case "execute":
+                        Supplier<RuntimeException> failure = executions.poll();
+                        if (failure != null)
+                            throw failure.get();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerFactory<String, TrackingRecord> producerFactory() {
+        Producer<?, ?> producer = (Producer<?, ?>) proxy(Producer.class, args -> {
+            RuntimeException failure = sends.poll();
+            if (failure != null)
+                throw failure;
+            synchronized (published) {
+                published.add(((ProducerRecord<String, TrackingRecord>) args[0]).value());
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        return new ProducerFactory<String, TrackingRecord>() {
+            @Override
+            public Producer<String, TrackingRecord> createProducer() {
+                return (Producer<String, TrackingRecord>) producer;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(Object[] args);
+    }
+
+    private static Object proxy(Class<?> type, Answer answer) {
+        return Proxy.newProxyInstance(TestIngestBuffer.class.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(type, args);
+            return answer == null || method.getReturnType() == void.class ? null : answer.answer(args);
+        });
+    }
+}
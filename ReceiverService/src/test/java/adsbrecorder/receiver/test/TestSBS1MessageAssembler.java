@@ -0,0 +1,63 @@
+package adsbrecorder.receiver.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.receiver.entity.TrackingRecord;
+import adsbrecorder.receiver.entity.VelocityUpdate;
+import adsbrecorder.receiver.sbs1.SBS1Message;
+import adsbrecorder.receiver.sbs1.SBS1MessageAssembler;
+
+public class TestSBS1MessageAssembler {
+
+    private final static String IDENT = "MSG,1,1,1,7C6DB8,1,2019/07/28,10:00:00.000,2019/07/28,10:00:00.000,QFA401  ,,,,,,,,,,,0";
+    private final static String POSITION = "MSG,3,1,1,7C6DB8,1,2019/07/28,10:00:00.100,2019/07/28,10:00:00.100,,3025,,,-37.659,144.8301,,,0,0,0,0";
+    private final static String VELOCITY = "MSG,4,1,1,7C6DB8,1,2019/07/28,10:00:00.200,2019/07/28,10:00:00.200,,,215,34,,,-1024,,,,,0";
+
+    @Test
+    public void testParse() {
+        SBS1Message msg = SBS1Message.parse(POSITION);
+        assertEquals(SBS1Message.ES_AIRBORNE_POS, msg.getTransmissionType());
+        assertEquals(0x7C6DB8, msg.getAddressICAO());
+        assertEquals(3025, msg.getAltitude());
+        assertEquals(-37.659, msg.getLatitude(), 1e-9);
+        assertEquals(144.8301, msg.getLongitude(), 1e-9);
+        assertEquals("QFA401", SBS1Message.parse(IDENT).getCallsign());
+        assertEquals(-1024, SBS1Message.parse(VELOCITY).getVerticalRate());
+        assertNull(SBS1Message.parse("STA,,1,1,7C6DB8"));
+        assertNull(SBS1Message.parse("MSG,3,1,1,ZZZZZZ,1,,,,,,,,,,,,,,,,"));
+    }
+
+    @Test
+    public void testAssemble() {
+        List<TrackingRecord> records = new ArrayList<TrackingRecord>();
+        List<VelocityUpdate> updates = new ArrayList<VelocityUpdate>();
+        SBS1MessageAssembler assembler = new SBS1MessageAssembler(records::add, updates::add);
+        assembler.accept(SBS1Message.parse(IDENT), 1000L);
+        assembler.accept(SBS1Message.parse(POSITION), 1100L);
+        assertEquals(1, records.size());
+        TrackingRecord record = records.get(0);
+        assertEquals("QFA401", record.getFlight());
+        assertEquals(3025, record.getAltitude());
+        assertEquals(1100L, record.getLastTimeSeen());
+
+        // velocity only completes a record without a position, which is dropped
+        assembler.accept(SBS1Message.parse(IDENT), 1150L);
+        assembler.accept(SBS1Message.parse(VELOCITY), 1200L);
+        assertEquals(1, records.size());
+        assertEquals(1, updates.size());
+        assertEquals(215, updates.get(0).getVelocity());
+        assertEquals(34, updates.get(0).getHeading());
+
+        assembler.accept(SBS1Message.parse(POSITION), 2000L);
+        assembler.expire(100000L, 60000L);
+        assembler.accept(SBS1Message.parse(POSITION), 100001L);
+        assertTrue(records.size() == 1);
+    }
+}
@@ -0,0 +1,44 @@
+package adsbrecorder.receiver.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import adsbrecorder.receiver.service.impl.TimeBucketedKeySet;
+
+public class TestTimeBucketedKeySet {
+
+    @Test
+    public void testWithinWindow() {
+        TimeBucketedKeySet set = new TimeBucketedKeySet(1000L, 4, 16);
+        assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(42L, 10_900L, 1L));
+        assertEquals(1L, set.putIfAbsent(42L, 10_950L, 2L));
+        // adjacent buckets on both sides
+        assertEquals(1L, set.putIfAbsent(42L, 11_800L, 3L));
+        assertEquals(1L, set.putIfAbsent(42L, 9_100L, 3L));
+        assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(43L, 10_950L, 2L));
+        assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(0L, 10_950L, 2L));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    public void testExpiry() {
+        TimeBucketedKeySet set = new TimeBucketedKeySet(1000L, 4, 16);
+        set.putIfAbsent(42L, 10_000L, 1L);
+        assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(42L, 12_000L, 2L));
+        // the bucket of 10s is reused for 14s, so the first key is gone
+        set.putIfAbsent(7L, 14_000L, 1L);
+        assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(42L, 9_500L, 3L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testGrow() {
+        TimeBucketedKeySet set = new TimeBucketedKeySet(1000L, 3, 16);
+        for (long key = 1; key <= 10_000; key++)
+            assertEquals(TimeBucketedKeySet.ABSENT, set.putIfAbsent(key, 5_000L, key));
+        for (long key = 1; key <= 10_000; key++)
+            assertEquals(key, set.putIfAbsent(key, 5_500L, -1L));
+        assertEquals(10_000, set.size());
+    }
+}
@@ -26,6 +26,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
         "adsbrecorder.user.entity"})
 @PropertySource(value = {
         "application.properties",
+        "kafka.properties",
         "mariadb.properties",
         "userauth.properties",
         "misc.properties"})
@@ -5,6 +5,7 @@ import static java.util.Objects.requireNonNull;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,34 +14,44 @@ import org.springframework.web.bind.annotation.RestController;
 
 import adsbrecorder.common.aop.annotation.PathEntity;
 import adsbrecorder.common.aop.annotation.RequestEntity;
+import adsbrecorder.common.auth.PrincipalChangedEvent;
 import adsbrecorder.user.UserServiceMappings;
 import adsbrecorder.user.entity.Role;
 import adsbrecorder.user.entity.User;
+import adsbrecorder.user.entity.UserRole;
 import adsbrecorder.user.service.UserRoleService;
 
 @RestController
 public class RoleController implements UserServiceMappings {
 
     private UserRoleService userRoleService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public RoleController(UserRoleService userRoleService) {
+    public RoleController(UserRoleService userRoleService, ApplicationEventPublisher eventPublisher) {
         this.userRoleService = requireNonNull(userRoleService);
+        this.eventPublisher = requireNonNull(eventPublisher);
     }
 
     @PostMapping(ROLE_ASSIGNED_USERS)
     public ResponseEntity<Object> assignRoleToUser(@PathEntity("role") Role role,
             @RequestEntity("user") User user) {
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(userRoleService.assignRoleToUser(role, user));
+        UserRole userRole = userRoleService.assignRoleToUser(role, user);
+        userChanged(user);
+        return ResponseEntity.status(HttpStatus.CREATED).body(userRole);
     }
 
     @DeleteMapping(ROLE_ASSIGNED_USERS)
     public ResponseEntity<Object> removeRoleFromUser(@PathEntity("role") Role role,
             @RequestEntity("user") User user) {
         userRoleService.removeRoleFromUser(role, user);
+        userChanged(user);
         return ResponseEntity.status(HttpStatus.OK)
             .body(Map.of("message",
                 String.format("Role %s has been removed from user %s", role.getRoleName(), user.getUsername())));
     }
+
+    private void userChanged(User user) {
+        eventPublisher.publishEvent(new PrincipalChangedEvent(this, PrincipalChangedEvent.USER, user.getUsername()));
+    }
 }
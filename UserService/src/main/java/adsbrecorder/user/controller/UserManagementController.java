@@ -11,6 +11,7 @@ import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,9 +21,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import adsbrecorder.common.aop.annotation.PathEntity;
+import adsbrecorder.common.auth.PrincipalChangedEvent;
 import adsbrecorder.user.UserServiceMappings;
 import adsbrecorder.user.entity.Authority;
 import adsbrecorder.user.entity.User;
+import adsbrecorder.user.entity.UserAuthority;
 import adsbrecorder.user.service.AuthorityService;
 import adsbrecorder.user.service.RoleService;
 import adsbrecorder.user.service.UserService;
@@ -33,12 +36,15 @@ public class UserManagementController implements UserServiceMappings {
     private UserService userService;
     private RoleService roleService;
     private AuthorityService authorityService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserManagementController(UserService userService, RoleService roleService, AuthorityService authorityService) {
+    public UserManagementController(UserService userService, RoleService roleService, AuthorityService authorityService,
+            ApplicationEventPublisher eventPublisher) {
         this.userService = requireNonNull(userService);
         this.roleService = requireNonNull(roleService);
         this.authorityService = requireNonNull(authorityService);
+        this.eventPublisher = requireNonNull(eventPublisher);
     }
 
     @GetMapping(LIST_OF_USERS)
@@ -84,9 +90,11 @@ public class UserManagementController implements UserServiceMappings {
                 return Stream.empty();
             return Stream.of(auth);
         }).collect(Collectors.toSet());
+        Set<UserAuthority> assigned = this.authorityService.assignAuthoritiesToUser(user, authorities);
+        eventPublisher.publishEvent(new PrincipalChangedEvent(this, PrincipalChangedEvent.USER, user.getUsername()));
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(Map.of("userId", user.getUserId(),
-                             "authorities", this.authorityService.assignAuthoritiesToUser(user, authorities)));
+                             "authorities", assigned));
     }
 
     @GetMapping(VIEW_USER_UNASSIGNED_AUTHORITIES)